@@ -2,7 +2,8 @@
  * @file DashboardPage.jsx
  * @description This page displays a list of all volunteer applications for administrators.
  *
- * It fetches the list of volunteers from the API and displays them in a table.
+ * It fetches the list of volunteers from the API one page at a time and displays
+ * them in a table, with a "Load more" button that fetches the next page.
  * Admins can view the status of each application and have options to "Approve" or
  * "Reject" pending applications. The component handles the API calls for these
  * actions and updates the list upon completion.
@@ -35,30 +36,41 @@ const getStatusBadge = (status) => {
  */
 const DashboardPage = () => {
   const [volunteers, setVolunteers] = useState([]);
+  const [nextPageUrl, setNextPageUrl] = useState(null);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [error, setError] = useState('');
 
   /**
-   * Fetches the list of volunteers from the server and updates the state.
+   * Fetches the first page of volunteers from the server and replaces the list.
    */
   const fetchVolunteers = async () => {
     try {
       const response = await getVolunteers();
-      // The API response might be paginated by DRF, so check for a 'results' key.
-      if (response.data && Array.isArray(response.data.results)) {
-        setVolunteers(response.data.results);
-      } else if (Array.isArray(response.data)) {
-        // Handle non-paginated response
-        setVolunteers(response.data);
-      } else {
-        console.error("Unexpected API response format:", response.data);
-        setVolunteers([]);
-      }
+      setVolunteers(response.data.results);
+      setNextPageUrl(response.data.next);
     } catch (err) {
       setError('Failed to fetch volunteers. You may need to log in again.');
       console.error(err);
     }
   };
 
+  /**
+   * Fetches the next page of volunteers and appends it to the list.
+   */
+  const loadMore = async () => {
+    setLoadingMore(true);
+    try {
+      const response = await getVolunteers(nextPageUrl);
+      setVolunteers(prevVolunteers => [...prevVolunteers, ...response.data.results]);
+      setNextPageUrl(response.data.next);
+    } catch (err) {
+      setError('Failed to fetch more volunteers.');
+      console.error(err);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   // The useEffect hook runs once when the component mounts to fetch initial data.
   useEffect(() => {
     fetchVolunteers();
@@ -169,6 +181,13 @@ const DashboardPage = () => {
                     </tbody>
                 </table>
             </div>
+            {nextPageUrl && (
+                <div className="text-center">
+                    <button className="btn btn-outline-secondary" onClick={loadMore} disabled={loadingMore}>
+                        {loadingMore ? 'Loading...' : 'Load more'}
+                    </button>
+                </div>
+            )}
         </div>
       </div>
     </div>
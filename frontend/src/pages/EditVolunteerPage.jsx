@@ -9,7 +9,7 @@
  */
 import React, { useState, useEffect } from 'react';
 import { useParams, useNavigate } from 'react-router-dom';
-import { getVolunteers, updateVolunteer } from '../services/api';
+import { getVolunteer, updateVolunteer } from '../services/api';
 
 /**
  * The main component for the volunteer edit page.
@@ -34,18 +34,15 @@ const EditVolunteerPage = () => {
   useEffect(() => {
     const fetchVolunteer = async () => {
       try {
-        // We get the volunteer from the general list and find the one with the matching ID.
-        const response = await getVolunteers();
-        const allVolunteers = response.data.results || response.data;
-        const currentVolunteer = allVolunteers.find(v => v.id.toString() === id);
-
-        if (currentVolunteer) {
-          setVolunteer(currentVolunteer);
-        } else {
+        // The list is paginated, so the volunteer is fetched from its own endpoint.
+        const response = await getVolunteer(id);
+        setVolunteer(response.data);
+      } catch (err) {
+        if (err.response && err.response.status === 404) {
           setError('Volunteer not found.');
+        } else {
+          setError('Failed to fetch volunteer data.');
         }
-      } catch (err) {
-        setError('Failed to fetch volunteer data.');
         console.error(err);
       } finally {
         setLoading(false);
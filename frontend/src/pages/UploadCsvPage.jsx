@@ -3,11 +3,17 @@
  * @description This component provides a page for administrators to upload a CSV file of volunteers for batch creation.
  *
  * It features a file input and an upload button. On submission, it sends the
- * selected CSV file to the backend API. It displays success and error messages
- * returned from the server.
+ * selected CSV file to the backend API, which accepts it as a background import
+ * job. The page then polls the job's progress until it has finished, and
+ * displays the final counts and any row errors returned from the server.
  */
-import React, { useState } from 'react';
-import { uploadCsv } from '../services/api';
+import React, { useState, useEffect } from 'react';
+import { uploadCsv, getImportJob } from '../services/api';
+
+// How often to poll the import job's progress, in milliseconds.
+const POLL_INTERVAL_MS = 1000;
+// After failed polls, wait up to this long before trying again.
+const MAX_POLL_INTERVAL_MS = 10000;
 
 /**
  * The main component for the CSV upload page.
@@ -18,6 +24,45 @@ const UploadCsvPage = () => {
   const [file, setFile] = useState(null);
   const [message, setMessage] = useState('');
   const [error, setError] = useState('');
+  // The import job returned by the server, refreshed while it is running.
+  const [job, setJob] = useState(null);
+  // Consecutive failed polls; a failure reschedules the poll with a longer delay.
+  const [pollFailures, setPollFailures] = useState(0);
+
+  const jobFinished = job && (job.status === 'completed' || job.status === 'failed');
+
+  // Poll the job's progress until it has finished.
+  useEffect(() => {
+    if (!job || jobFinished) {
+      return undefined;
+    }
+    const delay = Math.min(POLL_INTERVAL_MS * (pollFailures + 1), MAX_POLL_INTERVAL_MS);
+    const timer = setTimeout(async () => {
+      try {
+        const response = await getImportJob(job.id);
+        const errors = response.data.errors || [];
+        setPollFailures(0);
+        setJob(response.data);
+        if (response.data.status === 'failed') {
+          // Replace the upload's "accepted" message with the reason it failed.
+          setMessage('');
+          setError(`The import failed: ${errors.join(', ') || 'unknown error'}`);
+        } else {
+          if (response.data.status === 'completed') {
+            setMessage(`${response.data.rows_inserted} volunteers created locally. ${response.data.rows_synced} synced to HubSpot.`);
+          }
+          // Display any errors that occurred on specific rows.
+          setError(errors.length > 0 ? `Some rows could not be imported: ${errors.join(', ')}` : '');
+        }
+      } catch (err) {
+        // The job keeps running on the server, so keep polling.
+        setError('Could not fetch the progress of the import. Retrying...');
+        setPollFailures((failures) => failures + 1);
+        console.error(err);
+      }
+    }, delay);
+    return () => clearTimeout(timer);
+  }, [job, jobFinished, pollFailures]);
 
   /**
    * Handles changes to the file input element.
@@ -39,14 +84,14 @@ const UploadCsvPage = () => {
     }
     setMessage('');
     setError('');
+    setJob(null);
+    setPollFailures(0);
     try {
-      // Call the upload API function.
+      // Call the upload API function. The server answers right away with the
+      // import job, which is then polled by the effect above.
       const response = await uploadCsv(file);
       setMessage(response.data.status || 'CSV uploaded successfully!');
-      // Display any errors that occurred on specific rows.
-      if (response.data.errors && response.data.errors.length > 0) {
-        setError(`Some rows could not be imported: ${response.data.errors.join(', ')}`);
-      }
+      setJob(response.data.job);
     } catch (err) {
       // Try to get the detailed error message from the backend response.
       const errorMessage = err.response?.data?.error || 'An error occurred during the file upload.';
@@ -62,13 +107,19 @@ const UploadCsvPage = () => {
           <h1 className="text-center mb-4">Upload Volunteers CSV</h1>
           {message && <div className="alert alert-success">{message}</div>}
           {error && <div className="alert alert-danger">{error}</div>}
+          {job && !jobFinished && (
+            <div className="alert alert-info">
+              Importing... {job.rows_parsed} rows parsed, {job.rows_inserted} inserted,
+              {' '}{job.rows_synced} synced, {job.rows_failed} failed.
+            </div>
+          )}
           <form onSubmit={handleSubmit}>
             <div className="form-group mb-3">
               <label htmlFor="csv-file" className="form-label">CSV File</label>
               <input type="file" id="csv-file" className="form-control" accept=".csv" onChange={handleFileChange} required />
             </div>
             <div className="d-grid">
-              <button type="submit" className="btn btn-primary">Upload CSV</button>
+              <button type="submit" className="btn btn-primary" disabled={job && !jobFinished}>Upload CSV</button>
             </div>
           </form>
         </div>
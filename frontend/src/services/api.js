@@ -36,11 +36,22 @@ export const signup = (volunteerData) => {
 };
 
 /**
- * Fetches the list of all volunteers. Requires admin authentication.
+ * Fetches one page of volunteers, newest first. Requires admin authentication.
+ * The response contains `results` and a `next` URL for the following page.
+ * @param {string} [pageUrl] - The `next` URL of a previous page; omit it for the first page.
  * @returns {Promise} The axios promise for the request.
  */
-export const getVolunteers = () => {
-  return api.get('volunteers/');
+export const getVolunteers = (pageUrl) => {
+  return api.get(pageUrl || 'volunteers/');
+};
+
+/**
+ * Fetches a single volunteer. Requires admin authentication.
+ * @param {number|string} id - The ID of the volunteer.
+ * @returns {Promise} The axios promise for the request.
+ */
+export const getVolunteer = (id) => {
+  return api.get(`volunteers/${id}/`);
 };
 
 /**
@@ -82,6 +93,7 @@ export const updateVolunteer = (id, volunteerData) => {
 
 /**
  * Uploads a CSV file of volunteers for batch processing. Requires admin authentication.
+ * The server responds immediately with an import job that can be polled with `getImportJob`.
  * @param {File} file - The CSV file to upload.
  * @returns {Promise} The axios promise for the request.
  */
@@ -91,6 +103,15 @@ export const uploadCsv = (file) => {
   return api.post('upload-csv/', formData);
 };
 
+/**
+ * Fetches the progress of a CSV import job. Requires admin authentication.
+ * @param {number} id - The ID of the import job.
+ * @returns {Promise} The axios promise for the request.
+ */
+export const getImportJob = (id) => {
+  return api.get(`import-jobs/${id}/`);
+};
+
 /**
  * Sends a POST request to the /api/token/ endpoint to log in an admin user.
  * @param {object} credentials - An object with { username, password }.
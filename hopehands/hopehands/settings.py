@@ -11,6 +11,7 @@ https://docs.djangoproject.com/en/5.2/topics/settings/
 """
 
 import os
+import tempfile
 from pathlib import Path
 
 # --- Core Paths and Security ---
@@ -93,6 +94,25 @@ DATABASES = {
 }
 
 
+# --- Cache Configuration ---
+# https://docs.djangoproject.com/en/5.2/topics/cache/
+
+# A local-memory cache by default. Set CACHE_BACKEND to a shared cache, e.g.
+# django.core.cache.backends.redis.RedisCache with CACHE_LOCATION
+# redis://127.0.0.1:6379, so that every worker process sees the same
+# volunteer data version (see volunteer/caching.py).
+CACHES = {
+    "default": {
+        "BACKEND": os.environ.get('CACHE_BACKEND', 'django.core.cache.backends.locmem.LocMemCache'),
+        "LOCATION": os.environ.get('CACHE_LOCATION', ''),
+    }
+}
+
+# How long a cached API response is kept, in seconds. Entries are keyed by the
+# data version, so this only bounds how long stale versions occupy the cache.
+VOLUNTEER_RESPONSE_CACHE_TIMEOUT = int(os.environ.get('VOLUNTEER_RESPONSE_CACHE_TIMEOUT', 24 * 60 * 60))
+
+
 # --- API and Third-Party Service Configuration ---
 
 # Django REST Framework settings
@@ -102,9 +122,100 @@ REST_FRAMEWORK = {
     )
 }
 
+# The volunteer list API is cursor paginated. Clients may ask for up to
+# VOLUNTEER_API_MAX_PAGE_SIZE volunteers per page with ?page_size=.
+VOLUNTEER_API_PAGE_SIZE = int(os.environ.get('VOLUNTEER_API_PAGE_SIZE', 50))
+VOLUNTEER_API_MAX_PAGE_SIZE = int(os.environ.get('VOLUNTEER_API_MAX_PAGE_SIZE', 500))
+
+# Each worker process reloads its in-memory typeahead index from the database
+# this often (in seconds), to pick up changes made by other processes.
+TRIGRAM_INDEX_MAX_AGE = int(os.environ.get('TRIGRAM_INDEX_MAX_AGE', 300))
+
 # HubSpot API token
 HUBSPOT_PRIVATE_APP_TOKEN = os.environ.get('HUBSPOT_PRIVATE_APP_TOKEN')
 
+# The HubSpot API host. Empty means HubSpot itself; set it to e.g.
+# http://127.0.0.1:8765 to use the local stand-in (manage.py run_fake_hubspot).
+HUBSPOT_API_BASE_URL = os.environ.get('HUBSPOT_API_BASE_URL') or None
+
+# Maximum number of keep-alive connections each worker process holds open to HubSpot.
+HUBSPOT_CONNECTION_POOL_SIZE = int(os.environ.get('HUBSPOT_CONNECTION_POOL_SIZE', 10))
+
+# HubSpot rate limiting. The bucket refills at HUBSPOT_RATE_LIMIT_PER_SECOND and
+# holds at most HUBSPOT_RATE_LIMIT_BURST tokens. Its state is shared by every
+# worker process on the host through HUBSPOT_RATE_LIMIT_STATE_FILE.
+HUBSPOT_RATE_LIMIT_PER_SECOND = float(os.environ.get('HUBSPOT_RATE_LIMIT_PER_SECOND', 10))
+HUBSPOT_RATE_LIMIT_BURST = int(os.environ.get('HUBSPOT_RATE_LIMIT_BURST', 10))
+HUBSPOT_DAILY_LIMIT = int(os.environ.get('HUBSPOT_DAILY_LIMIT', 250000))
+HUBSPOT_RATE_LIMIT_STATE_FILE = os.environ.get(
+    'HUBSPOT_RATE_LIMIT_STATE_FILE',
+    os.path.join(tempfile.gettempdir(), 'hopehands_hubspot_rate_limit.json')
+)
+
+# Retries for 429 and 5xx answers, with jittered exponential backoff (seconds).
+HUBSPOT_MAX_RETRIES = int(os.environ.get('HUBSPOT_MAX_RETRIES', 5))
+HUBSPOT_BACKOFF_BASE = float(os.environ.get('HUBSPOT_BACKOFF_BASE', 0.5))
+HUBSPOT_BACKOFF_MAX = float(os.environ.get('HUBSPOT_BACKOFF_MAX', 30))
+
+# Batch calls are split into chunks of at most HUBSPOT_BATCH_SIZE inputs (HubSpot's
+# cap is 100), with up to HUBSPOT_BATCH_PARALLELISM chunks in flight at once.
+HUBSPOT_BATCH_SIZE = int(os.environ.get('HUBSPOT_BATCH_SIZE', 100))
+HUBSPOT_BATCH_PARALLELISM = int(os.environ.get('HUBSPOT_BATCH_PARALLELISM', 4))
+
+# How many pages of contacts HubspotAPI.iter_contacts fetches ahead of its caller.
+HUBSPOT_CONTACT_PREFETCH_PAGES = int(os.environ.get('HUBSPOT_CONTACT_PREFETCH_PAGES', 2))
+
+# How many times the sync_hubspot worker tries an outbox operation before marking it failed.
+HUBSPOT_SYNC_MAX_ATTEMPTS = int(os.environ.get('HUBSPOT_SYNC_MAX_ATTEMPTS', 5))
+
+# How long the sync_hubspot worker lets an update wait, so further edits to the
+# same volunteer in that window are sent to HubSpot as one batch input.
+HUBSPOT_SYNC_COALESCE_SECONDS = float(os.environ.get('HUBSPOT_SYNC_COALESCE_SECONDS', 2))
+
+# The sync_hubspot worker claims a batch, then calls HubSpot outside any database
+# transaction. A claim older than HUBSPOT_SYNC_LEASE_SECONDS belongs to a worker
+# that died, and is taken over; it must outlast a batch's retries and backoff.
+HUBSPOT_SYNC_LEASE_SECONDS = int(os.environ.get('HUBSPOT_SYNC_LEASE_SECONDS', 600))
+
+# How long HubSpot contact IDs returned by upserts stay in the local email -> ID
+# cache, which lets volunteers be linked again without calling HubSpot.
+HUBSPOT_CONTACT_ID_CACHE_TIMEOUT = int(os.environ.get('HUBSPOT_CONTACT_ID_CACHE_TIMEOUT', 7 * 24 * 3600))
+
+# Incremental pulls of HubSpot changes (pull_hubspot_changes). Each pull re-reads
+# HUBSPOT_PULL_OVERLAP_SECONDS before its watermark, because HubSpot's search
+# index can surface a change a little after its modification time, and reads
+# at most HUBSPOT_PULL_MAX_PAGES pages of 100 contacts.
+HUBSPOT_PULL_OVERLAP_SECONDS = int(os.environ.get('HUBSPOT_PULL_OVERLAP_SECONDS', 60))
+HUBSPOT_PULL_MAX_PAGES = int(os.environ.get('HUBSPOT_PULL_MAX_PAGES', 50))
+
+# HubSpot webhooks (api/hubspot/webhooks/). Requests are signed with the app's
+# client secret, and rejected when their timestamp is more than
+# HUBSPOT_WEBHOOK_MAX_AGE_SECONDS old. Behind a proxy, set HUBSPOT_WEBHOOK_URL to
+# the public URL HubSpot calls, since the signature covers it.
+HUBSPOT_WEBHOOK_SECRET = os.environ.get('HUBSPOT_WEBHOOK_SECRET')
+HUBSPOT_WEBHOOK_URL = os.environ.get('HUBSPOT_WEBHOOK_URL')
+HUBSPOT_WEBHOOK_MAX_AGE_SECONDS = int(os.environ.get('HUBSPOT_WEBHOOK_MAX_AGE_SECONDS', 300))
+
+
+# --- CSV Import Settings ---
+
+# Uploads are read in chunks of CSV_IMPORT_CHUNK_SIZE bytes and written to the
+# database in batches of CSV_IMPORT_BATCH_SIZE rows, which bounds peak memory.
+CSV_IMPORT_CHUNK_SIZE = int(os.environ.get('CSV_IMPORT_CHUNK_SIZE', 64 * 1024))
+CSV_IMPORT_BATCH_SIZE = int(os.environ.get('CSV_IMPORT_BATCH_SIZE', 500))
+# Only this many error messages and per-row outcomes are kept in an import report.
+CSV_IMPORT_MAX_REPORTED_ERRORS = int(os.environ.get('CSV_IMPORT_MAX_REPORTED_ERRORS', 100))
+CSV_IMPORT_MAX_REPORTED_ROWS = int(os.environ.get('CSV_IMPORT_MAX_REPORTED_ROWS', 1000))
+
+# Import jobs run on a thread pool of IMPORT_JOB_WORKERS threads per process.
+# Set IMPORT_JOB_EXECUTOR to 'inline' to run them in the request thread instead.
+IMPORT_JOB_WORKERS = int(os.environ.get('IMPORT_JOB_WORKERS', 2))
+IMPORT_JOB_EXECUTOR = os.environ.get('IMPORT_JOB_EXECUTOR', 'thread')
+# A running job reports progress after every batch. One that has been silent
+# for IMPORT_JOB_STALE_SECONDS, e.g. because its process was killed, is marked
+# failed by the run_import_jobs command.
+IMPORT_JOB_STALE_SECONDS = int(os.environ.get('IMPORT_JOB_STALE_SECONDS', 3600))
+
 
 # --- Password Validation ---
 # https://docs.djangoproject.com/en/5.2/ref/settings/#auth-password-validators
@@ -137,6 +248,10 @@ USE_TZ = True
 # https://docs.djangoproject.com/en/5.2/howto/static-files/
 STATIC_URL = "static/"
 
+# Uploaded files, such as the CSV files of pending import jobs
+MEDIA_ROOT = BASE_DIR / "media"
+MEDIA_URL = "media/"
+
 
 # --- Model and Authentication Settings ---
 
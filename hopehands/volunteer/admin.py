@@ -3,10 +3,12 @@ Configuration for the Django admin interface for the volunteer app.
 
 This file is used to register the Volunteer model with the Django admin,
 allowing administrators to view, add, edit, and delete volunteer records
-through the built-in admin dashboard.
+through the built-in admin dashboard. The HubSpot sync outbox is registered
+too, so failed syncs can be inspected, as are the sync watermarks and the
+queue of HubSpot webhook events.
 """
 from django.contrib import admin
-from .models import Volunteer
+from .models import HubspotSyncOperation, HubspotWebhookEvent, ImportJob, SyncWatermark, Volunteer
 
 @admin.register(Volunteer)
 class VolunteerAdmin(admin.ModelAdmin):
@@ -14,6 +16,49 @@ class VolunteerAdmin(admin.ModelAdmin):
     Customizes the display and behavior of the Volunteer model in the Django admin.
     """
     list_display = ('first_name', 'last_name', 'email', 'status', 'hubspot_id')
-    search_fields = ('first_name', 'last_name', 'email')
+    # Name prefix searches ('^') can use the name indexes. Email stays a
+    # substring search, so admins can still search by domain, e.g. "@gmail".
+    search_fields = ('^first_name', '^last_name', 'email')
     list_filter = ('status', 'preferred_volunteer_role')
     readonly_fields = ('hubspot_id',)
+
+
+@admin.register(HubspotSyncOperation)
+class HubspotSyncOperationAdmin(admin.ModelAdmin):
+    """
+    Shows the HubSpot sync outbox, mainly to inspect operations that failed.
+    """
+    list_display = ('id', 'operation', 'volunteer', 'hubspot_id', 'status', 'attempts', 'created_at', 'claimed_at', 'processed_at')
+    list_filter = ('status', 'operation')
+    readonly_fields = ('created_at', 'claimed_at', 'processed_at')
+
+
+@admin.register(ImportJob)
+class ImportJobAdmin(admin.ModelAdmin):
+    """
+    Shows background CSV import jobs and their progress.
+    """
+    list_display = (
+        'id', 'status', 'rows_parsed', 'rows_inserted', 'rows_synced', 'rows_failed', 'created_by', 'created_at',
+        'progress_at',
+    )
+    list_filter = ('status',)
+
+
+@admin.register(SyncWatermark)
+class SyncWatermarkAdmin(admin.ModelAdmin):
+    """
+    Shows how far incremental HubSpot pulls have read. Clearing a value makes
+    the next pull start over.
+    """
+    list_display = ('name', 'value', 'updated_at')
+
+
+@admin.register(HubspotWebhookEvent)
+class HubspotWebhookEventAdmin(admin.ModelAdmin):
+    """
+    Shows the contact changes HubSpot has pushed, and whether they were applied.
+    """
+    list_display = ('id', 'subscription_type', 'object_id', 'property_name', 'occurred_at', 'status', 'processed_at')
+    list_filter = ('status', 'subscription_type')
+    search_fields = ('^object_id',)
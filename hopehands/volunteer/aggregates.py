@@ -0,0 +1,318 @@
+# hopehands/volunteer/aggregates.py
+
+"""
+This file maintains the aggregate tables derived from volunteers:
+
+- VolunteerRoleCount, the number of volunteers per role, behind the role chart.
+- VolunteerCubeCell, the number of volunteers per combination of role,
+  availability, status and how they heard about us, behind the analytics API.
+- VolunteerActivityBucket, the number of signups, approvals and HubSpot syncs
+  per hour, behind the time-series API.
+
+Counting volunteers with GROUP BY reads every volunteer, so the counts are
+instead kept in small tables. The receivers in `signals.py` turn each insert,
+change and delete (including the CSV importer's bulk writes) into deltas per
+row of these tables, which are applied with `UPDATE ... SET count = count +
+delta` in the same transaction as the change. Reading them then costs one row
+per role, or one row per cube cell, however many volunteers there are.
+
+Activity buckets count events rather than current state: a volunteer's
+signup, first approval and first sync are each counted once, in the hour they
+happened, and stay counted if the volunteer is later deleted.
+
+The cube only stores its finest level, one cell per combination of all four
+dimensions. Coarser rollups, such as counts by status alone, are sums over the
+cells, which are few compared to volunteers.
+
+The `rebuild_*` functions recompute a table from scratch, e.g. after writes
+that bypassed the signals.
+"""
+
+from collections import Counter
+import datetime
+
+from django.db import transaction
+from django.db.models import Count, F, Sum
+
+from .caching import bump_data_version
+from .models import Volunteer, VolunteerActivityBucket, VolunteerCubeCell, VolunteerRoleCount
+
+# The analytics dimensions, by their public name, and the fields behind them.
+CUBE_DIMENSIONS = {
+    'role': 'preferred_volunteer_role',
+    'availability': 'availability',
+    'status': 'status',
+    'heard_from': 'how_did_you_hear_about_us',
+}
+CUBE_FIELDS = tuple(CUBE_DIMENSIONS.values())
+
+# The lifecycle timestamps whose first setting is counted as an activity event.
+ACTIVITY_FIELDS = {'approved': 'approved_at', 'synced': 'synced_at'}
+
+# Every field the aggregates depend on. Saves that touch none of them, and
+# volunteers loaded with any of them deferred, are ignored.
+TRACKED_FIELDS = CUBE_FIELDS + ('created_at',) + tuple(ACTIVITY_FIELDS.values())
+
+
+def _apply_deltas(model, key_fields, deltas):
+    """
+    Adds deltas to the counters of an aggregate table's rows, creating missing rows.
+
+    Args:
+        model: The aggregate model, with a unique key over `key_fields`.
+        key_fields (tuple): The fields identifying a row.
+        deltas (dict): Maps a key tuple to a dict of counter field deltas,
+                       e.g. {('Teaching',): {'count': 1}}.
+    """
+    # Rows are updated in a fixed order so concurrent transactions lock them in
+    # the same order and cannot deadlock.
+    changes = sorted((key, values) for key, values in deltas.items() if any(values.values()))
+    if not changes:
+        return
+    # INSERT IGNORE creates missing rows without failing when another
+    # transaction adds the same row concurrently.
+    model.objects.bulk_create(
+        [model(**dict(zip(key_fields, key))) for key, _ in changes], ignore_conflicts=True
+    )
+    for key, values in changes:
+        model.objects.filter(**dict(zip(key_fields, key))).update(
+            **{field: F(field) + delta for field, delta in values.items()}
+        )
+
+
+def stored_keys(volunteer):
+    """
+    Returns the aggregate keys of a volunteer as it is stored in the database.
+
+    Returns:
+        dict: The volunteer's key in each count table, by table name, and its
+              activity timestamps.
+    """
+    return {
+        'role': (volunteer.preferred_volunteer_role,),
+        'cube': cube_cell(volunteer),
+        **{field: getattr(volunteer, field) for field in ACTIVITY_FIELDS.values()},
+    }
+
+
+def cube_cell(volunteer):
+    """Returns a volunteer's cube cell. A missing 'heard from' answer is stored as ''."""
+    return tuple(getattr(volunteer, field) or '' for field in CUBE_FIELDS)
+
+
+def saved_changes(volunteers, created):
+    """
+    Returns the deltas for volunteers that were just saved, and records their
+    current keys as the stored ones.
+
+    Args:
+        volunteers (iterable): The saved Volunteer instances.
+        created (bool): Whether they were inserted rather than updated.
+
+    Returns:
+        dict: Counters of count deltas for 'role' and 'cube', and for
+              'activity', (metric, bucket_start) keys mapped to event counts
+              and lag totals.
+    """
+    deltas = {'role': Counter(), 'cube': Counter(), 'activity': {}}
+    for volunteer in volunteers:
+        current = stored_keys(volunteer)
+        # None means the stored keys are unknown, because a field was deferred
+        # when the volunteer was loaded. The volunteer is then assumed unchanged.
+        previous = getattr(volunteer, '_stored_keys', None)
+        for table in ('role', 'cube'):
+            key = current[table]
+            if created:
+                deltas[table][key] += 1
+            elif previous is not None and previous[table] != key:
+                deltas[table][previous[table]] -= 1
+                deltas[table][key] += 1
+
+        if created:
+            _add_event(deltas['activity'], 'signup', volunteer.created_at)
+        for metric, field in ACTIVITY_FIELDS.items():
+            happened_at = current[field]
+            before = None if created else (previous or current)[field]
+            if happened_at is not None and before is None:
+                lag = 0.0
+                if metric == 'synced' and volunteer.approved_at:
+                    lag = max(0.0, (happened_at - volunteer.approved_at).total_seconds())
+                _add_event(deltas['activity'], metric, happened_at, lag)
+        volunteer._stored_keys = current
+    return deltas
+
+
+def _add_event(activity, metric, happened_at, lag=0.0):
+    """Counts one event in the hourly bucket it happened in."""
+    if happened_at is None:
+        return
+    bucket_start = happened_at.astimezone(datetime.timezone.utc).replace(minute=0, second=0, microsecond=0)
+    values = activity.setdefault((metric, bucket_start), {'count': 0, 'lag_seconds': 0.0})
+    values['count'] += 1
+    values['lag_seconds'] += lag
+
+
+def deleted_changes(volunteer):
+    """Returns the deltas for a deleted volunteer. Past activity stays counted."""
+    previous = getattr(volunteer, '_stored_keys', None)
+    if previous is None:
+        return {}
+    return {table: {previous[table]: -1} for table in ('role', 'cube')}
+
+
+def apply_changes(deltas):
+    """Applies the deltas from `saved_changes` or `deleted_changes`."""
+    _apply_deltas(
+        VolunteerRoleCount, ('preferred_volunteer_role',),
+        {key: {'count': delta} for key, delta in deltas.get('role', {}).items()},
+    )
+    _apply_deltas(
+        VolunteerCubeCell, CUBE_FIELDS,
+        {key: {'count': delta} for key, delta in deltas.get('cube', {}).items()},
+    )
+    _apply_deltas(VolunteerActivityBucket, ('metric', 'bucket_start'), deltas.get('activity', {}))
+
+
+def role_counts():
+    """Returns the chart data: each role with volunteers, largest first."""
+    return (
+        VolunteerRoleCount.objects
+        .filter(count__gt=0)
+        .order_by('-count', 'preferred_volunteer_role')
+        .values('preferred_volunteer_role', 'count')
+    )
+
+
+def cube_rollup(dimensions, filters=None):
+    """
+    Counts volunteers grouped by the given dimensions.
+
+    Args:
+        dimensions (list): Public dimension names (keys of CUBE_DIMENSIONS) to
+                           group by. An empty list returns just the total.
+        filters (dict, optional): Public dimension names mapped to the value
+                                  volunteers must have.
+
+    Returns:
+        list: One dict per group with the dimension values and `count`,
+              largest first.
+    """
+    fields = [CUBE_DIMENSIONS[name] for name in dimensions]
+    lookups = {CUBE_DIMENSIONS[name]: value for name, value in (filters or {}).items()}
+    cells = VolunteerCubeCell.objects.filter(count__gt=0, **lookups)
+    if not fields:
+        return [{'count': cells.aggregate(total=Sum('count'))['total'] or 0}]
+    groups = cells.values(*fields).annotate(volunteers=Sum('count')).order_by('-volunteers', *fields)
+    return [
+        {**{name: group[CUBE_DIMENSIONS[name]] for name in dimensions}, 'count': group['volunteers']}
+        for group in groups
+    ]
+
+
+# The time-series bucket sizes. Weeks start on Monday, and all buckets are UTC.
+BUCKET_SIZES = {
+    'hour': datetime.timedelta(hours=1),
+    'day': datetime.timedelta(days=1),
+    'week': datetime.timedelta(weeks=1),
+}
+
+
+def bucket_floor(moment, bucket):
+    """Returns the start of the UTC hour, day or week that contains `moment`."""
+    moment = moment.astimezone(datetime.timezone.utc).replace(minute=0, second=0, microsecond=0)
+    if bucket != 'hour':
+        moment = moment.replace(hour=0)
+    if bucket == 'week':
+        moment -= datetime.timedelta(days=moment.weekday())
+    return moment
+
+
+def activity_series(metric, bucket, start, end):
+    """
+    Returns the number of events per bucket, with empty buckets included.
+
+    Day and week buckets are sums of the stored hourly buckets, so the query
+    reads at most one row per hour of the range, however many volunteers
+    there are.
+
+    Args:
+        metric (str): 'signup', 'approved' or 'synced'.
+        bucket (str): A key of BUCKET_SIZES.
+        start (datetime): The first bucket is the one containing `start`.
+        end (datetime): Buckets starting at or after `end` are excluded.
+
+    Returns:
+        list: One dict per bucket with `bucket_start` and `count`. Synced
+              buckets also have `average_lag_seconds` from approval to sync.
+    """
+    start = bucket_floor(start, bucket)
+    totals = {}
+    rows = (
+        VolunteerActivityBucket.objects
+        .filter(metric=metric, bucket_start__gte=start, bucket_start__lt=end)
+        .values_list('bucket_start', 'count', 'lag_seconds')
+    )
+    for bucket_start, count, lag_seconds in rows:
+        total = totals.setdefault(bucket_floor(bucket_start, bucket), [0, 0.0])
+        total[0] += count
+        total[1] += lag_seconds
+
+    series = []
+    current = start
+    while current < end:
+        count, lag_seconds = totals.get(current, (0, 0.0))
+        point = {'bucket_start': current.isoformat(), 'count': count}
+        if metric == 'synced':
+            point['average_lag_seconds'] = round(lag_seconds / count, 1) if count else None
+        series.append(point)
+        current += BUCKET_SIZES[bucket]
+    return series
+
+
+def rebuild_role_counts():
+    """Recomputes every role count from the Volunteer table."""
+    with transaction.atomic():
+        counts = Volunteer.objects.values('preferred_volunteer_role').annotate(count=Count('id')).order_by()
+        VolunteerRoleCount.objects.all().delete()
+        VolunteerRoleCount.objects.bulk_create([
+            VolunteerRoleCount(preferred_volunteer_role=row['preferred_volunteer_role'], count=row['count'])
+            for row in counts
+        ])
+        transaction.on_commit(bump_data_version)
+
+
+def rebuild_cube():
+    """Recomputes every cube cell from the Volunteer table."""
+    with transaction.atomic():
+        cells = Counter()
+        # NULL and '' answers share a cell, so they are merged here.
+        for row in Volunteer.objects.values(*CUBE_FIELDS).annotate(count=Count('id')).order_by():
+            cells[tuple(row[field] or '' for field in CUBE_FIELDS)] += row['count']
+        VolunteerCubeCell.objects.all().delete()
+        VolunteerCubeCell.objects.bulk_create(
+            [VolunteerCubeCell(count=count, **dict(zip(CUBE_FIELDS, cell))) for cell, count in cells.items()],
+            batch_size=1000,
+        )
+        transaction.on_commit(bump_data_version)
+
+
+def rebuild_activity():
+    """Recomputes every activity bucket from the volunteers' timestamps."""
+    with transaction.atomic():
+        activity = {}
+        rows = Volunteer.objects.values_list('created_at', 'approved_at', 'synced_at').iterator(chunk_size=5000)
+        for created_at, approved_at, synced_at in rows:
+            _add_event(activity, 'signup', created_at)
+            _add_event(activity, 'approved', approved_at)
+            if synced_at is not None:
+                lag = max(0.0, (synced_at - approved_at).total_seconds()) if approved_at else 0.0
+                _add_event(activity, 'synced', synced_at, lag)
+        VolunteerActivityBucket.objects.all().delete()
+        VolunteerActivityBucket.objects.bulk_create(
+            [
+                VolunteerActivityBucket(metric=metric, bucket_start=bucket_start, **values)
+                for (metric, bucket_start), values in activity.items()
+            ],
+            batch_size=1000,
+        )
+        transaction.on_commit(bump_data_version)
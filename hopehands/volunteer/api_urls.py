@@ -10,11 +10,20 @@ The following custom and explicit routes are also defined:
 - `/token/refresh/`: For refreshing an expired JWT access token.
 - `/signup/`: A public endpoint for new volunteer signups.
 - `/upload-csv/`: An admin-only endpoint for batch-uploading volunteers.
+- `/import-jobs/{id}/`: The progress of a background CSV import job.
 - `/volunteers/`: The base endpoint for the VolunteerViewSet (list, create).
 - `/volunteers/{id}/`: Standard detail endpoints (retrieve, update, delete).
 - `/volunteers/{id}/approve/`: Custom action to approve a volunteer.
 - `/volunteers/{id}/reject/`: Custom action to reject a volunteer.
+- `/volunteers/approve/`, `/volunteers/reject/`: Approve or reject many volunteers by ID or filter.
+- `/volunteers/search/?q=`: Ranked search by name, email, phone or role.
+- `/volunteers/typeahead/?q=`: Typo-tolerant typeahead served from memory.
 - `/visualizations/volunteer-roles/`: An endpoint to get aggregated data for charts.
+- `/analytics/volunteers/?group_by=`: Volunteer counts by any combination of attributes.
+- `/analytics/timeseries/?metric=&bucket=`: Signups, approvals and syncs per hour, day or week.
+- `/hubspot/pool-stats/`: HubSpot client pool metrics for the serving worker.
+- `/hubspot/rate-budget/`: The remaining HubSpot API call budget.
+- `/hubspot/webhooks/`: Signed contact change events pushed by HubSpot.
 """
 from django.urls import path, include
 from rest_framework.routers import DefaultRouter
@@ -41,6 +50,9 @@ urlpatterns = [
     # Admin URL for bulk CSV upload.
     path('upload-csv/', api_views.VolunteerCSVUploadAPIView.as_view(), name='upload-csv'),
 
+    # Admin URL for polling the progress of a CSV import job.
+    path('import-jobs/<int:pk>/', api_views.ImportJobDetailView.as_view(), name='import-job-detail'),
+
     # URL for providing data for the volunteer roles visualization
     path(
         'visualizations/volunteer-roles/',
@@ -48,6 +60,21 @@ urlpatterns = [
         name='visualization-volunteer-roles'
     ),
 
+    # URL for slicing volunteer counts by role, availability, status and source
+    path('analytics/volunteers/', api_views.VolunteerAnalyticsView.as_view(), name='analytics-volunteers'),
+
+    # URL for signups, approvals and HubSpot syncs over time
+    path('analytics/timeseries/', api_views.VolunteerTimeSeriesView.as_view(), name='analytics-timeseries'),
+
+    # URL for the HubSpot connection pool metrics of the serving worker
+    path('hubspot/pool-stats/', api_views.HubspotPoolStatsView.as_view(), name='hubspot-pool-stats'),
+
+    # URL for the remaining HubSpot API call budget
+    path('hubspot/rate-budget/', api_views.HubspotRateBudgetView.as_view(), name='hubspot-rate-budget'),
+
+    # URL HubSpot posts contact change events to, authenticated by signature
+    path('hubspot/webhooks/', api_views.HubspotWebhookView.as_view(), name='hubspot-webhooks'),
+
     # Include the URLs generated by the router. This must be last.
     path('', include(router.urls)),
 ]
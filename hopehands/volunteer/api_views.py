@@ -1,17 +1,48 @@
+import datetime
+import hashlib
+import json
+
 from rest_framework import generics, viewsets, status
 from rest_framework.decorators import action
 from rest_framework.response import Response
 from rest_framework.permissions import IsAuthenticated
 from rest_framework.views import APIView
 from rest_framework.parsers import MultiPartParser, FormParser
-import csv
-import io
-
-from django.db.models import Count
-
-from .models import Volunteer
-from .serializers import VolunteerSerializer
-from .hubspot_api import HubspotAPI
+from rest_framework.reverse import reverse
+
+from django.db import transaction
+from django.utils import timezone
+from django.utils.dateparse import parse_date, parse_datetime
+
+from .aggregates import BUCKET_SIZES, CUBE_DIMENSIONS, activity_series, bucket_floor, cube_rollup, role_counts
+from .caching import cached_response
+from .csv_import import CONFLICT_MODES
+from .jobs import submit_import_job
+from .models import ImportJob, Volunteer
+from .pagination import VolunteerCursorPagination
+from .search import search_volunteers
+from .signals import volunteers_bulk_saved
+from .trigram import prefix_matches, shared_index
+from .webhooks import record_events, verify_signature
+from .serializers import ImportJobSerializer, VolunteerSerializer
+from .hubspot_client import registry as hubspot_client_registry
+from .hubspot_ratelimit import get_governor
+from .sync import enqueue_archive, enqueue_create, enqueue_creates, enqueue_update
+
+# Result limits of the volunteer search and typeahead endpoints.
+SEARCH_DEFAULT_LIMIT = 20
+SEARCH_MAX_LIMIT = 100
+TYPEAHEAD_DEFAULT_LIMIT = 10
+TYPEAHEAD_MAX_LIMIT = 50
+TIMESERIES_METRICS = ('signup', 'approved', 'synced')
+# The number of buckets returned when no start is given, by bucket size.
+TIMESERIES_DEFAULT_BUCKETS = {'hour': 48, 'day': 30, 'week': 26}
+TIMESERIES_MAX_BUCKETS = 2000
+# The most volunteers one bulk approve or reject request may review.
+BULK_REVIEW_MAX = 1000
+# The dimensions a bulk review filter may use. Only pending volunteers are
+# reviewed, so status is not one of them.
+BULK_REVIEW_FILTERS = ('role', 'availability', 'heard_from')
 
 class VolunteerVisualizationView(APIView):
     """
@@ -23,56 +54,210 @@ class VolunteerVisualizationView(APIView):
 
     def get(self, request, format=None):
         """
-        Returns aggregated data on volunteer roles.
+        Returns aggregated data on volunteer roles, read from the maintained
+        VolunteerRoleCount table rather than counted (see `aggregates.py`).
+        The data is cached per data version (see `caching.py`) and sent with a
+        strong ETag. A client whose If-None-Match holds the current ETag gets
+        `304 Not Modified` with no body.
         """
-        role_data = (
-            Volunteer.objects
-            .values('preferred_volunteer_role')
-            .annotate(count=Count('id'))
-            .order_by('-count')
-        )
-        return Response(role_data)
+        return cached_response(request, 'volunteer-roles', lambda: list(role_counts()))
+
+class VolunteerAnalyticsView(APIView):
+    """
+    API endpoint for slicing volunteer counts by any combination of attributes.
+
+    `?group_by=role,status` returns the number of volunteers for each
+    combination of the listed dimensions: `role`, `availability`, `status` and
+    `heard_from`. Any dimension can also be used as a filter, e.g.
+    `?group_by=role&status=approved`. Without `group_by`, only the total is
+    returned. Counts are summed from the maintained VolunteerCubeCell table
+    (see `aggregates.py`) and cached with ETags like the role chart.
+    Requires admin authentication.
+    """
+    permission_classes = [IsAuthenticated]
+
+    def get(self, request, format=None):
+        """
+        Returns the counts, largest first, with the dimensions and filters used.
+        """
+        dimensions = [name.strip() for name in request.query_params.get('group_by', '').split(',') if name.strip()]
+        unknown = [name for name in dimensions if name not in CUBE_DIMENSIONS]
+        if unknown:
+            return Response(
+                {'error': f"Unknown dimensions: {', '.join(unknown)}. Choose from: {', '.join(CUBE_DIMENSIONS)}."},
+                status=status.HTTP_400_BAD_REQUEST
+            )
+        dimensions = list(dict.fromkeys(dimensions))
+        filters = {name: request.query_params[name] for name in CUBE_DIMENSIONS if name in request.query_params}
+
+        def compute():
+            return {'group_by': dimensions, 'filters': filters, 'results': cube_rollup(dimensions, filters)}
+
+        # The cache key covers the exact slice, hashed to keep it short.
+        slice_key = json.dumps([dimensions, sorted(filters.items())])
+        name = f"analytics:{hashlib.sha256(slice_key.encode('utf-8')).hexdigest()[:32]}"
+        return cached_response(request, name, compute)
+
+def _parse_moment(value):
+    """Parses an ISO 8601 date or datetime query parameter. Naive values are UTC."""
+    moment = parse_datetime(value)
+    if moment is None:
+        day = parse_date(value)
+        if day is None:
+            raise ValueError(value)
+        moment = datetime.datetime.combine(day, datetime.time())
+    if timezone.is_naive(moment):
+        moment = moment.replace(tzinfo=datetime.timezone.utc)
+    return moment
+
+class VolunteerTimeSeriesView(APIView):
+    """
+    API endpoint for volunteer activity over time.
+
+    `?metric=signup&bucket=day` returns the number of signups per UTC day.
+    `metric` is `signup`, `approved` or `synced` (first linked to a HubSpot
+    contact, with the average lag from approval), `bucket` is `hour`, `day` or
+    `week`, and the optional `start` and `end` are ISO 8601 dates or datetimes.
+    Without them, the most recent buckets up to and including the current one
+    are returned. Counts are summed from the maintained VolunteerActivityBucket
+    table (see `aggregates.py`) and cached with ETags like the role chart.
+    Requires admin authentication.
+    """
+    permission_classes = [IsAuthenticated]
+
+    def get(self, request, format=None):
+        """
+        Returns one point per bucket, oldest first, including empty buckets.
+        """
+        metric = request.query_params.get('metric', 'signup')
+        bucket = request.query_params.get('bucket', 'day')
+        if metric not in TIMESERIES_METRICS or bucket not in BUCKET_SIZES:
+            return Response(
+                {'error': f"metric must be one of {', '.join(TIMESERIES_METRICS)} "
+                          f"and bucket one of {', '.join(BUCKET_SIZES)}."},
+                status=status.HTTP_400_BAD_REQUEST
+            )
+        size = BUCKET_SIZES[bucket]
+        try:
+            if 'end' in request.query_params:
+                end = _parse_moment(request.query_params['end'])
+            else:
+                end = bucket_floor(timezone.now(), bucket) + size
+            if 'start' in request.query_params:
+                start = bucket_floor(_parse_moment(request.query_params['start']), bucket)
+            else:
+                start = bucket_floor(end - size * TIMESERIES_DEFAULT_BUCKETS[bucket], bucket)
+        except ValueError:
+            return Response({'error': "start and end must be ISO 8601 dates or datetimes."}, status=status.HTTP_400_BAD_REQUEST)
+        if end <= start:
+            return Response({'error': "end must be after start."}, status=status.HTTP_400_BAD_REQUEST)
+        if (end - start) / size > TIMESERIES_MAX_BUCKETS:
+            return Response(
+                {'error': f"The range spans more than {TIMESERIES_MAX_BUCKETS} buckets; use a larger bucket."},
+                status=status.HTTP_400_BAD_REQUEST
+            )
+
+        def compute():
+            return {
+                'metric': metric,
+                'bucket': bucket,
+                'start': start.isoformat(),
+                'end': end.isoformat(),
+                'results': activity_series(metric, bucket, start, end),
+            }
+
+        # The resolved range is part of the name, so a default range moves on
+        # to a new cache entry when a new bucket begins.
+        return cached_response(request, f"timeseries:{metric}:{bucket}:{start.timestamp():.0f}:{end.timestamp():.0f}", compute)
+
+class HubspotPoolStatsView(APIView):
+    """
+    API endpoint exposing the HubSpot client pool metrics of the worker process
+    that serves the request: registry hits/misses, connections opened and
+    requests served. Requires admin authentication.
+    """
+    permission_classes = [IsAuthenticated]
+
+    def get(self, request, format=None):
+        """
+        Returns the pool metrics for this worker process.
+        """
+        return Response(hubspot_client_registry.stats())
+
+class HubspotRateBudgetView(APIView):
+    """
+    API endpoint exposing the HubSpot call budget shared by all worker processes
+    on this host, so bulk jobs can size their work to it.
+    Requires admin authentication.
+    """
+    permission_classes = [IsAuthenticated]
+
+    def get(self, request, format=None):
+        """
+        Returns the current rate limit budget.
+        """
+        return Response(get_governor().budget())
+
+class HubspotWebhookView(APIView):
+    """
+    Endpoint HubSpot calls with contact property changes and deletions.
+
+    It carries no user authentication: requests are authenticated by their
+    HubSpot v3 signature instead (see `webhooks.py`). Events are only stored
+    here, and applied by the `process_hubspot_webhooks` worker, so HubSpot
+    gets its answer without waiting on volunteer updates.
+    """
+    authentication_classes = []
+    permission_classes = []
+
+    def post(self, request, format=None):
+        """
+        Verifies the signature and queues the events.
+        Returns `204 No Content`, `403` for a bad signature or `400` for a malformed body.
+        """
+        # The signature covers the raw body, so it is read before any parsing.
+        body = request.body
+        if not verify_signature(request, body):
+            return Response({'error': 'Invalid signature.'}, status=status.HTTP_403_FORBIDDEN)
+        try:
+            record_events(json.loads(body))
+        except ValueError as e:
+            return Response({'error': str(e)}, status=status.HTTP_400_BAD_REQUEST)
+        return Response(status=status.HTTP_204_NO_CONTENT)
 
 class VolunteerViewSet(viewsets.ModelViewSet):
     """
     API endpoint for administrators to manage volunteers.
     Provides full CRUD functionality and custom actions for approval/rejection.
-    This ViewSet also handles synchronization with HubSpot:
-    - Approving a volunteer creates a contact in HubSpot.
-    - Updating a volunteer updates the HubSpot contact.
-    - Deleting a volunteer archives the contact in HubSpot.
+    This ViewSet also queues synchronization with HubSpot through the outbox
+    (see `sync.py`), in the same transaction as the local change:
+    - Approving a volunteer queues the creation of a HubSpot contact.
+      Bulk approvals queue all of them in one INSERT, and the worker creates
+      the contacts with batch calls.
+    - Updating a volunteer queues an update of the HubSpot contact.
+    - Deleting a volunteer queues the archiving of the HubSpot contact.
+    The list is cursor paginated newest first (see `pagination.py`).
     Requires authentication.
     """
     queryset = Volunteer.objects.all().order_by('-id')
     serializer_class = VolunteerSerializer
     permission_classes = [IsAuthenticated]
+    pagination_class = VolunteerCursorPagination
 
     @action(detail=True, methods=['post'], url_path='approve')
     def approve(self, request, pk=None):
         """
         Custom action to approve a volunteer application.
-        This changes the volunteer's status to 'approved' and triggers the sync to HubSpot.
+        This changes the volunteer's status to 'approved' and queues the sync to
+        HubSpot in the same transaction. The `sync_hubspot` worker creates the
+        contact and saves the returned HubSpot ID.
         """
         volunteer = self.get_object()
         if volunteer.status == 'pending':
-            volunteer.status = 'approved'
-
-            # Sync to HubSpot upon approval
-            hubspot_api = HubspotAPI()
-            api_response = hubspot_api.create_contact(
-                email=volunteer.email,
-                first_name=volunteer.first_name,
-                last_name=volunteer.last_name,
-                phone_number=volunteer.phone_number,
-                preferred_volunteer_role=volunteer.preferred_volunteer_role,
-                availability=volunteer.availability,
-                how_did_you_hear_about_us=volunteer.how_did_you_hear_about_us,
-            )
-            # If the sync is successful, save the returned HubSpot ID
-            if api_response:
-                volunteer.hubspot_id = api_response.id
-
-            volunteer.save()
+            with transaction.atomic():
+                volunteer.status = 'approved'
+                volunteer.save()
+                enqueue_create(volunteer)
             return Response({'status': 'volunteer approved'}, status=status.HTTP_200_OK)
         else:
             return Response(
@@ -82,50 +267,36 @@ class VolunteerViewSet(viewsets.ModelViewSet):
 
     def destroy(self, request, *args, **kwargs):
         """
-        Deletes a volunteer from the local database and also archives the
-        corresponding contact in HubSpot if it exists.
+        Deletes a volunteer from the local database and, if they were synced,
+        queues the archiving of the corresponding HubSpot contact in the same
+        transaction.
         """
         volunteer = self.get_object()
 
-        # If the volunteer has a HubSpot ID, attempt to delete them from HubSpot first.
-        if volunteer.hubspot_id:
-            hubspot_api = HubspotAPI()
-            # The delete_contact method returns True on success, False on failure.
-            # We can optionally add more robust error handling here if needed.
-            hubspot_api.delete_contact(volunteer.hubspot_id)
-
-        # After handling HubSpot, proceed with the default deletion behavior.
-        return super().destroy(request, *args, **kwargs)
+        with transaction.atomic():
+            # The HubSpot ID is copied into the outbox, because the volunteer
+            # row is gone by the time the worker runs.
+            if volunteer.hubspot_id:
+                enqueue_archive(volunteer.hubspot_id)
+            return super().destroy(request, *args, **kwargs)
 
     def update(self, request, *args, **kwargs):
         """
-        Updates a volunteer's details and syncs the changes to HubSpot if the
-        volunteer has already been approved and has a HubSpot ID.
+        Updates a volunteer's details and, if the volunteer has already been
+        synced to HubSpot, queues an update of their contact in the same
+        transaction.
         """
-        # First, perform the default update behavior from the parent class.
-        # This will update the volunteer instance in the local database.
-        response = super().update(request, *args, **kwargs)
-
-        # If the update was successful (HTTP 200 OK), proceed to sync with HubSpot.
-        if response.status_code == status.HTTP_200_OK:
-            # Retrieve the updated volunteer instance.
-            volunteer = self.get_object()
-
-            # If the volunteer has a HubSpot ID, it means they have been synced before.
-            if volunteer.hubspot_id:
-                # Prepare the data for the HubSpot API call.
-                hubspot_api = HubspotAPI()
-                properties = {
-                    "email": volunteer.email,
-                    "firstname": volunteer.first_name,
-                    "lastname": volunteer.last_name,
-                    "phone": volunteer.phone_number,
-                    "preferred_volunteer_role": volunteer.preferred_volunteer_role,
-                    "availability": volunteer.availability,
-                    "how_did_you_hear_about_us": volunteer.how_did_you_hear_about_us,
-                }
-                # Call the HubSpot API to update the contact.
-                hubspot_api.update_contact(volunteer.hubspot_id, properties)
+        with transaction.atomic():
+            # First, perform the default update behavior from the parent class.
+            # This will update the volunteer instance in the local database.
+            response = super().update(request, *args, **kwargs)
+
+            # If the update was successful and the volunteer has been synced
+            # before, queue the sync of the new details.
+            if response.status_code == status.HTTP_200_OK:
+                volunteer = self.get_object()
+                if volunteer.hubspot_id:
+                    enqueue_update(volunteer)
 
         return response
 
@@ -146,6 +317,123 @@ class VolunteerViewSet(viewsets.ModelViewSet):
                 status=status.HTTP_400_BAD_REQUEST
             )
 
+    @action(detail=False, methods=['post'], url_path='approve', url_name='bulk-approve')
+    def bulk_approve(self, request):
+        """
+        Custom action to approve many pending volunteers at once.
+        See `_bulk_review` for the request body and the response.
+        """
+        return self._bulk_review(request, 'approved')
+
+    @action(detail=False, methods=['post'], url_path='reject', url_name='bulk-reject')
+    def bulk_reject(self, request):
+        """
+        Custom action to reject many pending volunteers at once.
+        See `_bulk_review` for the request body and the response.
+        """
+        return self._bulk_review(request, 'rejected')
+
+    def _bulk_review(self, request, new_status):
+        """
+        Moves pending volunteers to `new_status` with a single UPDATE and, for
+        approvals, queues their HubSpot contacts in the same transaction.
+
+        The request body holds either `ids`, a list of up to BULK_REVIEW_MAX
+        volunteer IDs, or `filter`, e.g. {"role": "Teaching"}, which selects up
+        to BULK_REVIEW_MAX pending volunteers with those attributes. The
+        response has one result per volunteer: the new status, `not_pending`
+        or `not_found`. For a filter, `has_more` tells whether matching
+        pending volunteers remain for another request.
+        """
+        ids = request.data.get('ids')
+        filters = request.data.get('filter')
+        if (ids is None) == (filters is None):
+            return Response({'error': "Provide either 'ids' or 'filter'."}, status=status.HTTP_400_BAD_REQUEST)
+        if ids is not None:
+            if not isinstance(ids, list) or not all(isinstance(pk, int) and not isinstance(pk, bool) for pk in ids):
+                return Response({'error': "'ids' must be a list of volunteer IDs."}, status=status.HTTP_400_BAD_REQUEST)
+            ids = list(dict.fromkeys(ids))
+            if len(ids) > BULK_REVIEW_MAX:
+                return Response(
+                    {'error': f"At most {BULK_REVIEW_MAX} volunteers can be reviewed per request."},
+                    status=status.HTTP_400_BAD_REQUEST
+                )
+            candidates = Volunteer.objects.filter(pk__in=ids)
+        else:
+            if not isinstance(filters, dict) or not filters or set(filters) - set(BULK_REVIEW_FILTERS):
+                return Response(
+                    {'error': f"'filter' must use some of: {', '.join(BULK_REVIEW_FILTERS)}."},
+                    status=status.HTTP_400_BAD_REQUEST
+                )
+            lookups = {CUBE_DIMENSIONS[name]: value for name, value in filters.items()}
+            matching = Volunteer.objects.filter(status='pending', **lookups)
+            candidates = matching.order_by('pk')[:BULK_REVIEW_MAX]
+
+        now = timezone.now()
+        changes = {'status': new_status, 'updated_at': now}
+        if new_status == 'approved':
+            changes['approved_at'] = now
+        with transaction.atomic():
+            # The rows stay locked until the UPDATE, so a concurrent review
+            # cannot change them in between.
+            found = list(candidates.select_for_update())
+            reviewed = [volunteer for volunteer in found if volunteer.status == 'pending']
+            if reviewed:
+                Volunteer.objects.filter(pk__in=[volunteer.pk for volunteer in reviewed]).update(**changes)
+                for volunteer in reviewed:
+                    for field, value in changes.items():
+                        setattr(volunteer, field, value)
+                volunteers_bulk_saved.send(
+                    sender=Volunteer, volunteers=reviewed, created=False, update_fields=list(changes)
+                )
+                if new_status == 'approved':
+                    enqueue_creates(reviewed)
+
+        outcomes = {volunteer.pk: 'not_pending' for volunteer in found}
+        outcomes.update({volunteer.pk: new_status for volunteer in reviewed})
+        data = {
+            'status': new_status,
+            'count': len(reviewed),
+            'results': [{'id': pk, 'result': outcomes.get(pk, 'not_found')} for pk in (ids or outcomes)],
+        }
+        if filters is not None:
+            data['has_more'] = matching.exists()
+        return Response(data, status=status.HTTP_200_OK)
+
+    @action(detail=False, methods=['get'], url_path='search')
+    def search(self, request):
+        """
+        Custom action to search volunteers by name, email, phone or role.
+        Returns up to `limit` (default 20, at most 100) volunteers matching
+        every word of `q`, best match first.
+        """
+        try:
+            limit = min(int(request.query_params.get('limit', SEARCH_DEFAULT_LIMIT)), SEARCH_MAX_LIMIT)
+        except ValueError:
+            return Response({'error': 'limit must be an integer.'}, status=status.HTTP_400_BAD_REQUEST)
+        volunteers = search_volunteers(request.query_params.get('q', ''), limit=max(limit, 1))
+        return Response(self.get_serializer(volunteers, many=True).data)
+
+    @action(detail=False, methods=['get'], url_path='typeahead')
+    def typeahead(self, request):
+        """
+        Custom action for typo-tolerant typeahead on names and emails.
+        Answers from this process's in-memory trigram index (see `trigram.py`)
+        without querying the database, returning up to `limit` (default 10, at
+        most 50) matches for `q` with their scores. While the index is still
+        loading, prefix matches from the database are returned, without scores.
+        """
+        try:
+            limit = min(int(request.query_params.get('limit', TYPEAHEAD_DEFAULT_LIMIT)), TYPEAHEAD_MAX_LIMIT)
+        except ValueError:
+            return Response({'error': 'limit must be an integer.'}, status=status.HTTP_400_BAD_REQUEST)
+        index = shared_index.get()
+        if index is None:
+            matches = prefix_matches(request.query_params.get('q', ''), limit=max(limit, 1))
+        else:
+            matches = index.search(request.query_params.get('q', ''), limit=max(limit, 1))
+        return Response(matches)
+
 class VolunteerPublicCreateView(generics.CreateAPIView):
     """
     Public API endpoint for creating a new volunteer (the signup form).
@@ -163,7 +451,10 @@ class VolunteerCSVUploadAPIView(APIView):
     """
     API endpoint for batch uploading volunteers from a CSV file.
     This process directly approves the volunteers, creates them in the local
-    database, and performs a batch sync to HubSpot.
+    database, and performs a batch sync to HubSpot. The upload is stored in an
+    ImportJob and processed in the background (see `jobs.py`), so the endpoint
+    returns immediately with the job to poll. Rows whose email already exists
+    are skipped, or updated when `on_conflict=update` is posted.
     Requires admin authentication.
     """
     permission_classes = [IsAuthenticated]
@@ -173,103 +464,33 @@ class VolunteerCSVUploadAPIView(APIView):
         if 'file' not in request.data:
             return Response({"error": "No file provided"}, status=status.HTTP_400_BAD_REQUEST)
 
-        file_obj = request.data['file']
-        try:
-            # Handle both in-memory text files (from tests) and binary files (from uploads)
-            file_content = file_obj.read()
-            if isinstance(file_content, bytes):
-                # Use 'utf-8-sig' to handle the BOM (Byte Order Mark)
-                decoded_file = file_content.decode('utf-8-sig')
-            else:
-                decoded_file = file_content
-            io_string = io.StringIO(decoded_file)
-            reader = csv.DictReader(io_string)
-
-            # Normalize the fieldnames to be lowercase and use underscores for consistency
-            if reader.fieldnames:
-                reader.fieldnames = [field.lower().replace(' ', '_').replace('?', '') for field in reader.fieldnames]
-
-            volunteers_to_create = []
-            contacts_for_hubspot = []
-            errors = []
-
-            for row in reader:
-                email = row.get('email')
-                if not email:
-                    errors.append(f"Skipping row due to missing email: {row}")
-                    continue
-
-                # Handle name, which can be in 'name' or 'first_name'/'last_name' columns
-                first_name = row.get('first_name', '')
-                last_name = row.get('last_name', '')
-                if not first_name and not last_name:
-                    name = row.get('name', '')
-                    if name:
-                        parts = name.split(' ', 1)
-                        first_name = parts[0]
-                        last_name = parts[1] if len(parts) > 1 else ''
-
-                # Get other fields using normalized keys
-                phone_number = row.get('phone_number', '')
-                preferred_volunteer_role = row.get('preferred_volunteer_role', '')
-                availability = row.get('availability', '')
-                how_did_you_hear_about_us = row.get('how_did_you_hear_about_us', '')
-
-                volunteers_to_create.append(
-                    Volunteer(
-                        first_name=first_name,
-                        last_name=last_name,
-                        email=email,
-                        phone_number=phone_number,
-                        preferred_volunteer_role=preferred_volunteer_role,
-                        availability=availability,
-                        how_did_you_hear_about_us=how_did_you_hear_about_us,
-                        status='approved'
-                    )
-                )
+        on_conflict = request.data.get('on_conflict', 'skip')
+        if on_conflict not in CONFLICT_MODES:
+            return Response(
+                {"error": f"on_conflict must be one of: {', '.join(CONFLICT_MODES)}."},
+                status=status.HTTP_400_BAD_REQUEST
+            )
 
-                contacts_for_hubspot.append({
-                    "email": email,
-                    "firstname": first_name,
-                    "lastname": last_name,
-                    "phone": phone_number,
-                    "preferred_volunteer_role": preferred_volunteer_role,
-                    "availability": availability,
-                    "how_did_you_hear_about_us": how_did_you_hear_about_us,
-                    "lifecyclestage": "lead",
-                })
-
-            if not volunteers_to_create:
-                return Response({"error": "No valid volunteer data found in CSV.", "errors": errors}, status=status.HTTP_400_BAD_REQUEST)
-
-            # Get the list of emails before creating the volunteers
-            volunteer_emails = [v.email for v in volunteers_to_create]
-            Volunteer.objects.bulk_create(volunteers_to_create)
-
-            # After bulk creating, the volunteer instances in memory don't have their IDs.
-            # We need to re-fetch them from the database to get the IDs.
-            created_volunteers_with_pks = Volunteer.objects.filter(email__in=volunteer_emails)
-            email_to_volunteer_map = {v.email: v for v in created_volunteers_with_pks}
-
-            hubspot_api = HubspotAPI()
-            hubspot_response = hubspot_api.batch_create_contacts(contacts_for_hubspot)
-
-            synced_count = 0
-            if hubspot_response and hubspot_response.status == 'COMPLETE':
-                volunteers_to_update = []
-                for contact in hubspot_response.results:
-                    volunteer = email_to_volunteer_map.get(contact.properties['email'])
-                    if volunteer:
-                        volunteer.hubspot_id = contact.id
-                        volunteers_to_update.append(volunteer)
-                        synced_count += 1
-
-                Volunteer.objects.bulk_update(volunteers_to_update, ['hubspot_id'])
-
-            return Response({
-                "status": f"{len(volunteers_to_create)} volunteers created locally. {synced_count} synced to HubSpot.",
-                "errors": errors
-            }, status=status.HTTP_201_CREATED)
-
-        except Exception as e:
-            return Response({"error": f"Failed to process CSV file: {str(e)}"}, status=status.HTTP_400_BAD_REQUEST)
+        job = ImportJob.objects.create(
+            upload=request.data['file'],
+            volunteer_status='approved',
+            sync_to_hubspot=True,
+            on_conflict=on_conflict,
+            created_by=request.user,
+        )
+        submit_import_job(job)
+        return Response({
+            "status": "CSV upload accepted for processing.",
+            "job": ImportJobSerializer(job).data,
+            "status_url": reverse('import-job-detail', kwargs={'pk': job.pk}, request=request),
+        }, status=status.HTTP_202_ACCEPTED)
+
+class ImportJobDetailView(generics.RetrieveAPIView):
+    """
+    API endpoint returning the progress of a CSV import job: its status and
+    the number of rows parsed, inserted, synced and failed so far.
+    Requires admin authentication.
+    """
+    queryset = ImportJob.objects.all()
+    serializer_class = ImportJobSerializer
+    permission_classes = [IsAuthenticated]
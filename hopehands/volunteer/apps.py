@@ -3,6 +3,7 @@ App configuration for the 'volunteer' Django app.
 
 This file defines the configuration for the volunteer application,
 including its name and the default type for auto-created primary key fields.
+It also connects the app's signal receivers when Django starts.
 """
 from django.apps import AppConfig
 
@@ -13,3 +14,7 @@ class VolunteerConfig(AppConfig):
     """
     default_auto_field = "django.db.models.BigAutoField"
     name = "volunteer"
+
+    def ready(self):
+        # Importing the module connects its receivers.
+        from . import signals  # noqa: F401
@@ -0,0 +1,90 @@
+# hopehands/volunteer/caching.py
+
+"""
+This file caches API responses derived from the Volunteer table.
+
+Cached entries are keyed by a data version: a counter kept in Django's cache
+that the receivers in `signals.py` bump whenever a volunteer write commits.
+A write therefore never has to find and delete the cached entries it makes
+stale; readers simply stop asking for the old version's keys, which then
+expire on their own.
+
+Each cached entry carries a strong ETag, the hash of its JSON rendering, so
+clients that already have the current data can be answered with
+`304 Not Modified` without a body.
+
+The counter only works across worker processes if they share a cache, so
+multi-process deployments should set CACHE_BACKEND to Redis or Memcached.
+"""
+
+import hashlib
+import json
+import time
+
+from django.conf import settings
+from django.core.cache import cache
+from django.utils.cache import get_conditional_response
+from rest_framework.response import Response
+
+VERSION_KEY = 'volunteer:data-version'
+
+
+def data_version():
+    """Returns the current volunteer data version."""
+    version = cache.get(VERSION_KEY)
+    if version is None:
+        # Start from the clock rather than 1, so a counter lost to eviction or
+        # a restart never reuses a version that clients may still hold.
+        cache.add(VERSION_KEY, int(time.time() * 1000), timeout=None)
+        version = cache.get(VERSION_KEY)
+    return version
+
+
+def bump_data_version():
+    """Marks every cached volunteer-derived response as stale."""
+    try:
+        cache.incr(VERSION_KEY)
+    except ValueError:
+        # The counter is missing, and initializing it yields a fresh version.
+        data_version()
+
+
+def cached_response_data(name, compute):
+    """
+    Returns the data for a cached response, computing it at most once per
+    data version.
+
+    Args:
+        name (str): Identifies the response, e.g. 'volunteer-roles'.
+        compute (callable): Returns the JSON-serializable data.
+
+    Returns:
+        tuple: (etag, data), where `etag` is a quoted strong ETag.
+    """
+    key = f'volunteer:response:{name}:{data_version()}'
+    entry = cache.get(key)
+    if entry is None:
+        data = compute()
+        body = json.dumps(data, sort_keys=True, separators=(',', ':')).encode('utf-8')
+        entry = (f'"{hashlib.sha256(body).hexdigest()[:32]}"', data)
+        cache.set(key, entry, timeout=settings.VOLUNTEER_RESPONSE_CACHE_TIMEOUT)
+    return entry
+
+
+def cached_response(request, name, compute):
+    """
+    Returns an API response for cached data, or `304 Not Modified` if the
+    request's If-None-Match already holds the current ETag.
+
+    Args:
+        request: The incoming request.
+        name (str): Identifies the response, see `cached_response_data`.
+        compute (callable): Returns the JSON-serializable data.
+    """
+    etag, data = cached_response_data(name, compute)
+    not_modified = get_conditional_response(request, etag=etag)
+    response = not_modified if not_modified is not None else Response(data)
+    response['ETag'] = etag
+    # Let browsers keep the data, but revalidate it on every view.
+    response['Cache-Control'] = 'private, no-cache'
+    return response
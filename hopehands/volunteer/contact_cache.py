@@ -0,0 +1,49 @@
+# hopehands/volunteer/contact_cache.py
+
+"""
+This file keeps a local cache of HubSpot contact IDs by email.
+
+Every batch upsert (see `sync.upsert_contacts`) records the contact IDs HubSpot
+returned. Volunteers that are synced again, e.g. the rows of a re-uploaded CSV
+whose earlier sync was never saved, are then linked to their contact without
+calling HubSpot at all. Entries live in the default Django cache for
+`HUBSPOT_CONTACT_ID_CACHE_TIMEOUT` seconds and are dropped when the volunteer
+is deleted, since its contact is archived then.
+"""
+
+import hashlib
+
+from django.conf import settings
+from django.core.cache import cache
+
+
+def _key(email):
+    """Returns the cache key of an email. Emails are hashed to keep keys short and safe."""
+    digest = hashlib.sha256(email.strip().lower().encode('utf-8')).hexdigest()[:32]
+    return f"hubspot-contact:{digest}"
+
+
+def cached_contact_ids(emails):
+    """
+    Looks up the contact IDs of several emails with one cache round trip.
+
+    Returns:
+        dict: Maps each lowercased email found in the cache to its contact ID.
+    """
+    keys = {_key(email): email.strip().lower() for email in emails}
+    return {keys[key]: contact_id for key, contact_id in cache.get_many(list(keys)).items()}
+
+
+def remember_contact_ids(ids_by_email):
+    """Stores contact IDs, given as a dict mapping emails to IDs."""
+    if ids_by_email:
+        cache.set_many(
+            {_key(email): str(contact_id) for email, contact_id in ids_by_email.items()},
+            settings.HUBSPOT_CONTACT_ID_CACHE_TIMEOUT,
+        )
+
+
+def forget_contact_ids(emails):
+    """Drops the cached contact IDs of the given emails."""
+    if emails:
+        cache.delete_many([_key(email) for email in emails])
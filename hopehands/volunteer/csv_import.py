@@ -0,0 +1,455 @@
+# hopehands/volunteer/csv_import.py
+
+"""
+This file implements the streaming CSV import of volunteers. It is the single
+import engine behind both the API upload (`api_views.VolunteerCSVUploadAPIView`)
+and the template upload (`views.volunteer_csv_upload`).
+
+An uploaded CSV is never read into memory as a whole. `iter_csv_rows` reads the
+upload in fixed-size byte chunks (`CSV_IMPORT_CHUNK_SIZE`), decodes them
+incrementally, and feeds complete lines to `csv.DictReader`. The
+`VolunteerImporter` then validates rows and flushes them to the database in
+bounded batches (`CSV_IMPORT_BATCH_SIZE`), so peak memory depends on the chunk
+and batch sizes only, not on the size of the file.
+"""
+
+import codecs
+import csv
+from itertools import islice
+import logging
+
+from django.conf import settings
+from django.core.exceptions import ValidationError
+from django.core.validators import validate_email
+from django.db import DataError, IntegrityError, connection, transaction
+from django.db.models import Max
+from django.utils import timezone
+
+from .models import HubspotSyncOperation, Volunteer
+from .signals import volunteers_bulk_saved
+from .sync import upsert_contacts
+
+# Standard logger for this module
+logger = logging.getLogger(__name__)
+
+# How rows whose email already exists are handled.
+CONFLICT_MODES = ('skip', 'update')
+
+# The fields an 'update' import overwrites on an existing volunteer.
+UPDATABLE_FIELDS = [
+    'first_name',
+    'last_name',
+    'phone_number',
+    'preferred_volunteer_role',
+    'availability',
+    'how_did_you_hear_about_us',
+]
+
+
+def _iter_chunks(file_obj, chunk_size):
+    """Yields the file's content in chunks of at most `chunk_size`."""
+    if hasattr(file_obj, 'chunks'):
+        # Django's UploadedFile reads in-memory and temporary files alike.
+        yield from file_obj.chunks(chunk_size)
+        return
+    while True:
+        chunk = file_obj.read(chunk_size)
+        if not chunk:
+            return
+        yield chunk
+
+
+def iter_text_lines(file_obj, chunk_size):
+    """
+    Decodes a file chunk by chunk and yields it line by line.
+
+    Bytes are decoded with an incremental 'utf-8-sig' decoder, which strips a
+    leading Byte Order Mark and copes with multi-byte characters split across
+    chunk boundaries. Lines keep their line endings, as the csv module expects.
+    """
+    decoder = codecs.getincrementaldecoder('utf-8-sig')()
+    pending = ''
+    for chunk in _iter_chunks(file_obj, chunk_size):
+        pending += decoder.decode(chunk) if isinstance(chunk, bytes) else chunk
+        lines = pending.split('\n')
+        pending = lines.pop()
+        for line in lines:
+            yield line + '\n'
+    pending += decoder.decode(b'', final=True)
+    if pending:
+        yield pending
+
+
+def normalize_fieldname(field):
+    """Normalizes a CSV header to lowercase with underscores, e.g. 'First Name' -> 'first_name'."""
+    return field.strip().lower().replace(' ', '_').replace('?', '')
+
+
+def iter_csv_rows(file_obj, chunk_size=None):
+    """
+    Streams the rows of a CSV upload as dictionaries keyed by normalized headers.
+
+    Args:
+        file_obj: The uploaded file (or any file-like object).
+        chunk_size (int, optional): Overrides `CSV_IMPORT_CHUNK_SIZE`, in bytes.
+    """
+    lines = iter_text_lines(file_obj, chunk_size or settings.CSV_IMPORT_CHUNK_SIZE)
+    reader = csv.DictReader(lines)
+    if reader.fieldnames:
+        reader.fieldnames = [normalize_fieldname(field) for field in reader.fieldnames]
+    yield from reader
+
+
+def batched(iterable, size):
+    """Yields lists of at most `size` items from the iterable."""
+    iterator = iter(iterable)
+    while True:
+        batch = list(islice(iterator, size))
+        if not batch:
+            return
+        yield batch
+
+
+def parse_row(row):
+    """
+    Maps a normalized CSV row to Volunteer field values.
+
+    Names can be given as 'first_name'/'last_name' columns or as a single
+    'name' column, which is split on the first space.
+
+    Returns:
+        tuple: (fields, error). `fields` is a dict of Volunteer field values,
+               or None if the row is missing an email or fails validation, in
+               which case `error` says why.
+    """
+    email = row.get('email')
+    if not email:
+        return None, f"Skipping row due to missing email: {row}"
+
+    first_name = row.get('first_name') or ''
+    last_name = row.get('last_name') or ''
+    if not first_name and not last_name:
+        name = row.get('name') or ''
+        if name:
+            parts = name.split(' ', 1)
+            first_name = parts[0]
+            last_name = parts[1] if len(parts) > 1 else ''
+
+    fields = {
+        'first_name': first_name,
+        'last_name': last_name,
+        'email': email.strip(),
+        'phone_number': row.get('phone_number') or '',
+        'preferred_volunteer_role': row.get('preferred_volunteer_role') or '',
+        'availability': row.get('availability') or '',
+        'how_did_you_hear_about_us': row.get('how_did_you_hear_about_us') or '',
+    }
+    error = validate_fields(fields)
+    if error:
+        return None, f"Could not create volunteer from row: {row}. Error: {error}"
+    return fields, None
+
+
+def validate_fields(fields):
+    """
+    Checks parsed values against the Volunteer model before they reach the
+    database, so one bad row is reported on its own instead of failing the
+    bulk insert of its whole batch.
+
+    Returns:
+        str or None: The first problem found, or None if the values are valid.
+    """
+    try:
+        validate_email(fields['email'])
+    except ValidationError:
+        return f"'{fields['email']}' is not a valid email address."
+    for name, value in fields.items():
+        max_length = Volunteer._meta.get_field(name).max_length
+        if value and max_length and len(value) > max_length:
+            return f"{name} is longer than {max_length} characters."
+    return None
+
+
+class ImportReport:
+    """
+    Counts the outcome of an import and keeps a per-row outcome report.
+
+    Every row ends up 'created', 'updated', 'skipped' or 'failed'. Only the
+    first `CSV_IMPORT_MAX_REPORTED_ROWS` row outcomes and the first
+    `CSV_IMPORT_MAX_REPORTED_ERRORS` error messages are kept, so a huge file
+    cannot exhaust memory; the counters always cover every row.
+    """
+    def __init__(self):
+        self.rows_parsed = 0
+        self.rows_inserted = 0
+        self.rows_updated = 0
+        self.rows_skipped = 0
+        self.rows_synced = 0
+        self.rows_failed = 0
+        self.errors = []
+        self.outcomes = []
+
+    def record(self, row_number, email, outcome, detail=''):
+        """
+        Records the outcome of one row.
+
+        Args:
+            row_number (int): The 1-based data row number (the header is row 0).
+            email (str): The row's email, if any.
+            outcome (str): 'created', 'updated', 'skipped' or 'failed'.
+            detail (str): Why the row was skipped or failed.
+        """
+        if outcome == 'created':
+            self.rows_inserted += 1
+        elif outcome == 'updated':
+            self.rows_updated += 1
+        elif outcome == 'skipped':
+            self.rows_skipped += 1
+        else:
+            self.rows_failed += 1
+            self.add_message(f"Row {row_number}: {detail}")
+        if len(self.outcomes) < settings.CSV_IMPORT_MAX_REPORTED_ROWS:
+            self.outcomes.append({'row': row_number, 'email': email, 'outcome': outcome, 'detail': detail})
+
+    def add_message(self, message):
+        """Keeps a message that is not a row outcome, e.g. a HubSpot sync error."""
+        if len(self.errors) < settings.CSV_IMPORT_MAX_REPORTED_ERRORS:
+            self.errors.append(message)
+
+    def as_dict(self):
+        """Returns the counters, errors and row outcomes, e.g. for an API response."""
+        return {
+            'rows_parsed': self.rows_parsed,
+            'rows_inserted': self.rows_inserted,
+            'rows_updated': self.rows_updated,
+            'rows_skipped': self.rows_skipped,
+            'rows_synced': self.rows_synced,
+            'rows_failed': self.rows_failed,
+            'errors': self.errors,
+            'outcomes': self.outcomes,
+        }
+
+
+class VolunteerImporter:
+    """
+    Imports volunteers from a CSV upload in bounded batches.
+
+    Rows whose email already exists are handled according to `on_conflict`:
+    'skip' leaves the existing volunteer untouched, 'update' overwrites its
+    details (but never its status or HubSpot ID) and queues a HubSpot update
+    if it has been synced. Emails repeated within the file are skipped after
+    their first occurrence in a batch.
+
+    Args:
+        status (str): The status given to newly created volunteers.
+        hubspot_api (HubspotAPI, optional): If given, every batch of new
+                                            volunteers is synced to HubSpot
+                                            right after it is inserted.
+        batch_size (int, optional): Overrides `CSV_IMPORT_BATCH_SIZE`.
+        chunk_size (int, optional): Overrides `CSV_IMPORT_CHUNK_SIZE`.
+        on_conflict (str): 'skip' or 'update'.
+        progress (callable, optional): Called with the report after every batch.
+    """
+    def __init__(self, status='approved', hubspot_api=None, batch_size=None, chunk_size=None, on_conflict='skip', progress=None):
+        if on_conflict not in CONFLICT_MODES:
+            raise ValueError(f"on_conflict must be one of {', '.join(CONFLICT_MODES)}")
+        self.status = status
+        self.hubspot_api = hubspot_api
+        self.batch_size = batch_size or settings.CSV_IMPORT_BATCH_SIZE
+        self.chunk_size = chunk_size or settings.CSV_IMPORT_CHUNK_SIZE
+        self.on_conflict = on_conflict
+        self.progress = progress
+
+    def run(self, file_obj):
+        """
+        Streams the file and imports it batch by batch.
+
+        Returns:
+            ImportReport: The counts, errors and row outcomes of the import.
+        """
+        report = ImportReport()
+        row_number = 0
+        for rows in batched(iter_csv_rows(file_obj, self.chunk_size), self.batch_size):
+            pending = []
+            for row in rows:
+                row_number += 1
+                report.rows_parsed += 1
+                fields, error = parse_row(row)
+                if error:
+                    report.record(row_number, row.get('email'), 'failed', error)
+                    continue
+                pending.append((row_number, fields))
+            if pending:
+                self._flush(pending, report)
+            if self.progress:
+                self.progress(report)
+        return report
+
+    def _flush(self, pending, report):
+        """
+        Writes one batch: new volunteers are bulk inserted, existing ones are
+        skipped or bulk updated, and new ones are synced to HubSpot if enabled.
+
+        Args:
+            pending (list): (row_number, fields) pairs of valid rows.
+            report (ImportReport): The report to record outcomes in.
+        """
+        # Emails are compared lowercased, because MySQL's default collation
+        # treats 'A@x.org' and 'a@x.org' as the same unique value.
+        first_rows = {}
+        unique = []
+        for row_number, fields in pending:
+            key = fields['email'].lower()
+            if key in first_rows:
+                report.record(row_number, fields['email'], 'skipped', f"Duplicate of row {first_rows[key]} in this file.")
+                continue
+            first_rows[key] = row_number
+            unique.append((row_number, fields))
+
+        # One bounded lookup per batch finds the rows that already exist.
+        existing = {
+            v.email.lower(): v
+            for v in Volunteer.objects.filter(email__in=[fields['email'] for _, fields in unique])
+        }
+
+        # bulk_create skips save(), so the approval time is set here.
+        now = timezone.now()
+        approved_at = now if self.status == 'approved' else None
+        to_create = []
+        to_update = []
+        # Approved volunteers whose earlier sync never saved a HubSpot ID are
+        # synced again, so re-running an upload repairs them.
+        to_relink = []
+        for row_number, fields in unique:
+            current = existing.get(fields['email'].lower())
+            if current is None:
+                to_create.append((row_number, Volunteer(status=self.status, approved_at=approved_at, **fields)))
+                continue
+            if current.status == 'approved' and not current.hubspot_id:
+                to_relink.append(current)
+            if self.on_conflict == 'update':
+                for field in UPDATABLE_FIELDS:
+                    setattr(current, field, fields[field])
+                to_update.append((row_number, current))
+            else:
+                report.record(row_number, fields['email'], 'skipped', "A volunteer with this email already exists.")
+
+        # The batch is written in one transaction. HubSpot is called after it
+        # commits, so a slow sync never holds database locks.
+        with transaction.atomic():
+            created = self._insert(to_create, report)
+            if to_update:
+                self._update(to_update, report)
+        if (created or to_relink) and self.hubspot_api is not None:
+            self._sync(created, to_relink, report)
+
+    def _insert(self, to_create, report):
+        """
+        Bulk inserts new volunteers in one statement. If the statement fails,
+        e.g. because a concurrent signup took one of the emails, the batch is
+        retried row by row so only the offending rows fail.
+
+        Returns:
+            list: The volunteers that were created.
+        """
+        if not to_create:
+            return []
+        volunteers = [v for _, v in to_create]
+        try:
+            with transaction.atomic():
+                if connection.features.can_return_rows_from_bulk_insert:
+                    # PostgreSQL, MariaDB 10.5+ and SQLite 3.35+ return the new
+                    # primary keys from the INSERT itself.
+                    Volunteer.objects.bulk_create(volunteers, batch_size=self.batch_size)
+                else:
+                    # MySQL does not, so the keys are read back with a primary
+                    # key range scan starting above the highest existing key.
+                    watermark = Volunteer.objects.aggregate(max_pk=Max('pk'))['max_pk'] or 0
+                    Volunteer.objects.bulk_create(volunteers, batch_size=self.batch_size)
+                    self._assign_pks(volunteers, watermark)
+                volunteers_bulk_saved.send(sender=Volunteer, volunteers=volunteers, created=True)
+        except (IntegrityError, DataError):
+            logger.warning("Bulk insert failed, retrying the batch row by row", exc_info=True)
+            return self._insert_row_by_row(to_create, report)
+
+        for row_number, volunteer in to_create:
+            report.record(row_number, volunteer.email, 'created')
+        return volunteers
+
+    def _assign_pks(self, volunteers, watermark):
+        """
+        Sets the primary keys of freshly inserted volunteers from the rows above
+        `watermark`. The scan reads only this batch (plus any rows inserted
+        concurrently), so its cost does not depend on the size of the table or
+        of the file. Emails not found in the range, which should not happen,
+        fall back to a lookup by email.
+        """
+        pks_by_email = {
+            email.lower(): pk
+            for pk, email in Volunteer.objects.filter(pk__gt=watermark).values_list('pk', 'email')
+        }
+        missing = []
+        for volunteer in volunteers:
+            volunteer.pk = pks_by_email.get(volunteer.email.lower())
+            if volunteer.pk is None:
+                missing.append(volunteer)
+        if missing:
+            found = dict(
+                (email.lower(), pk)
+                for pk, email in Volunteer.objects.filter(email__in=[v.email for v in missing]).values_list('pk', 'email')
+            )
+            for volunteer in missing:
+                volunteer.pk = found.get(volunteer.email.lower())
+        for volunteer in volunteers:
+            # Mark the instances as saved, as bulk_create does when it gets keys back.
+            volunteer._state.adding = False
+
+    def _insert_row_by_row(self, to_create, report):
+        """Inserts volunteers one at a time, each in its own savepoint."""
+        created = []
+        for row_number, volunteer in to_create:
+            try:
+                with transaction.atomic():
+                    volunteer.save(force_insert=True)
+            except IntegrityError as e:
+                volunteer.pk = None
+                if Volunteer.objects.filter(email=volunteer.email).exists():
+                    report.record(row_number, volunteer.email, 'skipped', "A volunteer with this email already exists.")
+                else:
+                    report.record(row_number, volunteer.email, 'failed', str(e))
+                continue
+            except DataError as e:
+                volunteer.pk = None
+                report.record(row_number, volunteer.email, 'failed', str(e))
+                continue
+            report.record(row_number, volunteer.email, 'created')
+            created.append(volunteer)
+        return created
+
+    def _update(self, to_update, report):
+        """Bulk updates existing volunteers and queues HubSpot updates for synced ones."""
+        volunteers = [v for _, v in to_update]
+        # bulk_update does not apply auto_now, so updated_at is set by hand.
+        now = timezone.now()
+        for volunteer in volunteers:
+            volunteer.updated_at = now
+        fields = UPDATABLE_FIELDS + ['updated_at']
+        Volunteer.objects.bulk_update(volunteers, fields, batch_size=self.batch_size)
+        volunteers_bulk_saved.send(sender=Volunteer, volunteers=volunteers, created=False, update_fields=fields)
+        HubspotSyncOperation.objects.bulk_create([
+            HubspotSyncOperation(volunteer=v, operation='update') for v in volunteers if v.hubspot_id
+        ])
+        for row_number, volunteer in to_update:
+            report.record(row_number, volunteer.email, 'updated')
+
+    def _sync(self, volunteers, relink, report):
+        """
+        Upserts HubSpot contacts for new volunteers, links existing unsynced
+        ones (see `sync.upsert_contacts`) and saves their IDs.
+        """
+        # The volunteers already carry their primary keys (see _insert), so the
+        # returned HubSpot IDs can be saved without reading the rows back.
+        linked, hubspot_response = upsert_contacts(self.hubspot_api, volunteers, timezone.now(), relink=relink)
+        report.rows_synced += len(linked)
+        for error in getattr(hubspot_response, 'errors', None) or []:
+            report.add_message(f"HubSpot sync error: {error['message']}")
@@ -0,0 +1,498 @@
+# hopehands/volunteer/fake_hubspot.py
+
+"""
+This file provides a local stand-in for HubSpot's CRM contacts API, for load
+and integration testing without network access.
+
+`FakeHubspotServer` is a threaded HTTP server that speaks enough of the
+`/crm/v3/objects/contacts` API for everything `HubspotAPI` does: single
+create, read, update and archive, listing with the `after` cursor, the batch
+create, upsert, update and archive endpoints, and search with filter groups,
+sorts and paging. Contacts live in memory and get numeric IDs, like HubSpot's.
+Responses use HubSpot's JSON shapes, so the real SDK deserializes them and
+the real connection pool, retries and rate governor are exercised.
+
+Point the app at it with `HUBSPOT_API_BASE_URL`, e.g. after starting it with
+`python manage.py run_fake_hubspot`. It can add latency, and fail a fraction
+of requests with 500s or with 429s carrying a Retry-After header, to see how
+the sync behaves under HubSpot's bad days. `benchmark_hubspot_sync` runs it
+in-process to measure sync throughput end to end.
+
+It enforces HubSpot's limits of 100 inputs per batch call and 10,000 results
+per search, but not its validation of property names or values.
+"""
+
+import datetime
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+import itertools
+import json
+import random
+import re
+import threading
+import time
+from collections import Counter
+from urllib.parse import parse_qs, urlsplit
+
+CONTACTS_PATH = '/crm/v3/objects/contacts'
+
+# Properties HubSpot maintains itself, returned with every contact.
+SYSTEM_PROPERTIES = ('createdate', 'lastmodifieddate', 'hs_object_id')
+# Returned when a request names no properties, as HubSpot does.
+DEFAULT_PROPERTIES = ('email', 'firstname', 'lastname')
+# Properties compared as timestamps in search filters and sorts.
+DATE_PROPERTIES = ('createdate', 'lastmodifieddate')
+
+MAX_BATCH_INPUTS = 100
+MAX_SEARCH_RESULTS = 10000
+
+
+class FakeHubspotError(Exception):
+    """An error answered to the client with HubSpot's error body."""
+    def __init__(self, status, message, category='VALIDATION_ERROR', headers=None):
+        super().__init__(message)
+        self.status = status
+        self.category = category
+        self.headers = headers or {}
+
+
+def _iso(moment):
+    return moment.isoformat(timespec='milliseconds').replace('+00:00', 'Z')
+
+
+def _millis(value):
+    """Returns a timestamp property or filter value as epoch milliseconds."""
+    if value is None or value == '':
+        return None
+    if str(value).isdigit():
+        return int(value)
+    moment = datetime.datetime.fromisoformat(str(value).replace('Z', '+00:00'))
+    return int(moment.timestamp() * 1000)
+
+
+class ContactStore:
+    """The in-memory contacts. All methods are thread-safe."""
+    def __init__(self):
+        self._lock = threading.Lock()
+        self._contacts = {}
+        self._ids_by_email = {}
+        self._next_id = itertools.count(1001)
+
+    def __len__(self):
+        return len(self._contacts)
+
+    def _now(self):
+        return datetime.datetime.now(datetime.timezone.utc)
+
+    def _create(self, properties):
+        email = (properties.get('email') or '').strip().lower()
+        if email and email in self._ids_by_email:
+            raise FakeHubspotError(409, f"Contact already exists. Existing ID: {self._ids_by_email[email]}", 'CONFLICT')
+        contact_id = str(next(self._next_id))
+        now = self._now()
+        contact = {
+            'id': contact_id,
+            'properties': {key: value for key, value in properties.items() if value is not None},
+            'createdAt': now,
+            'updatedAt': now,
+        }
+        contact['properties'].update(createdate=_iso(now), lastmodifieddate=_iso(now), hs_object_id=contact_id)
+        self._contacts[contact_id] = contact
+        if email:
+            self._ids_by_email[email] = contact_id
+        return contact
+
+    def _update(self, contact, properties):
+        old_email = (contact['properties'].get('email') or '').lower()
+        new_email = (properties.get('email') or old_email).strip().lower()
+        if new_email != old_email and new_email in self._ids_by_email:
+            raise FakeHubspotError(409, f"Contact already exists. Existing ID: {self._ids_by_email[new_email]}", 'CONFLICT')
+        for key, value in properties.items():
+            if key in SYSTEM_PROPERTIES:
+                continue
+            if value in (None, ''):
+                contact['properties'].pop(key, None)
+            else:
+                contact['properties'][key] = value
+        if new_email != old_email:
+            self._ids_by_email.pop(old_email, None)
+            self._ids_by_email[new_email] = contact['id']
+        contact['updatedAt'] = self._now()
+        contact['properties']['lastmodifieddate'] = _iso(contact['updatedAt'])
+        return contact
+
+    def _archive(self, contact_id):
+        contact = self._contacts.pop(contact_id, None)
+        if contact is not None:
+            self._ids_by_email.pop((contact['properties'].get('email') or '').lower(), None)
+        return contact
+
+    def create(self, properties):
+        with self._lock:
+            return self._create(properties)
+
+    def get(self, contact_id):
+        with self._lock:
+            return self._contacts.get(contact_id)
+
+    def update(self, contact_id, properties):
+        with self._lock:
+            contact = self._contacts.get(contact_id)
+            return self._update(contact, properties) if contact else None
+
+    def archive(self, contact_id):
+        with self._lock:
+            return self._archive(contact_id)
+
+    def batch_create(self, inputs):
+        with self._lock:
+            # HubSpot creates nothing when one of the emails already exists.
+            emails = [(item.get('properties') or {}).get('email', '').strip().lower() for item in inputs]
+            for email in filter(None, emails):
+                if email in self._ids_by_email or emails.count(email) > 1:
+                    raise FakeHubspotError(409, f"Contact already exists: {email}", 'CONFLICT')
+            return [self._create(item.get('properties') or {}) for item in inputs]
+
+    def batch_upsert(self, inputs):
+        """Returns (contact, created) pairs, matching contacts by their email ID."""
+        with self._lock:
+            results = []
+            for item in inputs:
+                if item.get('idProperty') != 'email':
+                    raise FakeHubspotError(400, "Only upserts by email are supported")
+                properties = {**(item.get('properties') or {}), 'email': item['id']}
+                contact_id = self._ids_by_email.get(str(item['id']).strip().lower())
+                if contact_id:
+                    results.append((self._update(self._contacts[contact_id], properties), False))
+                else:
+                    results.append((self._create(properties), True))
+            return results
+
+    def batch_update(self, inputs):
+        """Returns the updated contacts and the IDs that were not found."""
+        with self._lock:
+            updated, missing = [], []
+            for item in inputs:
+                contact = self._contacts.get(str(item.get('id')))
+                if contact is None:
+                    missing.append(str(item.get('id')))
+                else:
+                    updated.append(self._update(contact, item.get('properties') or {}))
+            return updated, missing
+
+    def batch_archive(self, contact_ids):
+        with self._lock:
+            for contact_id in contact_ids:
+                self._archive(contact_id)
+
+    def page(self, after, limit):
+        """Returns contacts in ID order after the cursor, and the next cursor."""
+        with self._lock:
+            ordered = sorted(self._contacts.values(), key=lambda contact: int(contact['id']))
+        if after:
+            ordered = [contact for contact in ordered if int(contact['id']) > int(after)]
+        page = ordered[:limit]
+        return page, (page[-1]['id'] if len(ordered) > limit else None)
+
+    def search(self, filter_groups, query, sorts):
+        with self._lock:
+            contacts = list(self._contacts.values())
+        if filter_groups:
+            contacts = [
+                contact for contact in contacts
+                if any(all(_matches(contact, f) for f in group.get('filters', [])) for group in filter_groups)
+            ]
+        if query:
+            token = query.lower()
+            contacts = [
+                contact for contact in contacts
+                if any(token in str(contact['properties'].get(name, '')).lower()
+                       for name in ('email', 'firstname', 'lastname', 'phone'))
+            ]
+        contacts.sort(key=lambda contact: int(contact['id']))
+        for sort in reversed(sorts or []):
+            if isinstance(sort, str):
+                sort = {'propertyName': sort.lstrip('-'), 'direction': 'DESCENDING' if sort.startswith('-') else 'ASCENDING'}
+            name = sort.get('propertyName')
+            contacts.sort(
+                key=lambda contact: _sort_value(contact, name),
+                reverse=sort.get('direction') == 'DESCENDING',
+            )
+        return contacts
+
+
+def _sort_value(contact, name):
+    value = contact['properties'].get(name)
+    if name in DATE_PROPERTIES:
+        return _millis(value) or 0
+    return str(value or '').lower()
+
+
+def _matches(contact, search_filter):
+    """Applies one search filter to a contact."""
+    name = search_filter.get('propertyName')
+    operator = search_filter.get('operator', 'EQ')
+    actual = contact['properties'].get(name)
+    if operator == 'HAS_PROPERTY':
+        return actual not in (None, '')
+    if operator == 'NOT_HAS_PROPERTY':
+        return actual in (None, '')
+    if operator in ('IN', 'NOT_IN'):
+        values = [str(value).lower() for value in search_filter.get('values', [])]
+        return (str(actual or '').lower() in values) == (operator == 'IN')
+    if actual in (None, ''):
+        return operator == 'NEQ'
+    expected = search_filter.get('value')
+    if name in DATE_PROPERTIES:
+        actual, expected = _millis(actual), _millis(expected)
+    else:
+        actual, expected = str(actual).lower(), str(expected or '').lower()
+    if operator == 'CONTAINS_TOKEN':
+        # A trailing '*' makes the token a prefix, as in HubSpot's search.
+        token = expected.rstrip('*')
+        words = [actual] + re.findall(r'[^\W_]+', actual)
+        return any(word.startswith(token) if expected.endswith('*') else word == token for word in words)
+    comparisons = {
+        'EQ': actual == expected, 'NEQ': actual != expected,
+        'GT': actual > expected, 'GTE': actual >= expected,
+        'LT': actual < expected, 'LTE': actual <= expected,
+    }
+    if operator not in comparisons:
+        raise FakeHubspotError(400, f"Unsupported filter operator: {operator}")
+    return comparisons[operator]
+
+
+def _contact_json(contact, properties=None, **extra):
+    """Serializes a contact with the requested properties, as HubSpot does."""
+    names = list(properties or DEFAULT_PROPERTIES) + list(SYSTEM_PROPERTIES)
+    return {
+        'id': contact['id'],
+        'properties': {name: contact['properties'].get(name) for name in dict.fromkeys(names)},
+        'createdAt': _iso(contact['createdAt']),
+        'updatedAt': _iso(contact['updatedAt']),
+        'archived': False,
+        **extra,
+    }
+
+
+def _batch_json(results, started_at, errors=()):
+    body = {
+        'status': 'COMPLETE',
+        'results': results,
+        'startedAt': _iso(started_at),
+        'completedAt': _iso(datetime.datetime.now(datetime.timezone.utc)),
+    }
+    if errors:
+        body.update(errors=list(errors), numErrors=len(errors))
+    return body
+
+
+class FakeHubspotHandler(BaseHTTPRequestHandler):
+    """Routes requests to the server's contact store. Connections are kept alive."""
+    protocol_version = 'HTTP/1.1'
+    server_version = 'FakeHubSpot/1.0'
+
+    def do_GET(self):
+        self._handle('GET')
+
+    def do_POST(self):
+        self._handle('POST')
+
+    def do_PATCH(self):
+        self._handle('PATCH')
+
+    def do_DELETE(self):
+        self._handle('DELETE')
+
+    def log_message(self, format, *args):
+        if self.server.verbose:
+            super().log_message(format, *args)
+
+    def _handle(self, method):
+        url = urlsplit(self.path)
+        length = int(self.headers.get('Content-Length') or 0)
+        raw_body = self.rfile.read(length) if length else b''
+        route = f"{method} {re.sub(r'/[0-9]+$', '/{id}', url.path)}"
+        try:
+            self.server.before_request(route, self.headers)
+            try:
+                body = json.loads(raw_body) if raw_body else {}
+            except ValueError:
+                raise FakeHubspotError(400, "Invalid JSON")
+            status, payload = self._dispatch(method, url.path, parse_qs(url.query), body)
+            self._respond(route, status, payload)
+        except FakeHubspotError as e:
+            payload = {
+                'status': 'error', 'message': str(e), 'correlationId': f"fake-{random.getrandbits(32):08x}",
+                'category': e.category,
+            }
+            self._respond(route, e.status, payload, e.headers)
+
+    def _respond(self, route, status, payload, headers=None):
+        self.server.record(route, status)
+        data = json.dumps(payload).encode('utf-8') if payload is not None else b''
+        self.send_response(status)
+        for name, value in (headers or {}).items():
+            self.send_header(name, value)
+        if data:
+            self.send_header('Content-Type', 'application/json;charset=utf-8')
+        self.send_header('Content-Length', str(len(data)))
+        self.end_headers()
+        self.wfile.write(data)
+
+    def _dispatch(self, method, path, query, body):
+        store = self.server.store
+        if not path.startswith(CONTACTS_PATH):
+            raise FakeHubspotError(404, f"No route for {method} {path}", 'OBJECT_NOT_FOUND')
+        rest = path[len(CONTACTS_PATH):].strip('/')
+        started_at = datetime.datetime.now(datetime.timezone.utc)
+
+        if rest.startswith('batch/') and method == 'POST':
+            inputs = body.get('inputs') or []
+            if len(inputs) > MAX_BATCH_INPUTS:
+                raise FakeHubspotError(400, f"Batch size {len(inputs)} exceeds the limit of {MAX_BATCH_INPUTS}")
+            action = rest[len('batch/'):]
+            if action == 'create':
+                return 201, _batch_json([_contact_json(contact, _names(inputs)) for contact in store.batch_create(inputs)], started_at)
+            if action == 'upsert':
+                results = [_contact_json(contact, _names(inputs), new=created) for contact, created in store.batch_upsert(inputs)]
+                return 200, _batch_json(results, started_at)
+            if action == 'update':
+                updated, missing = store.batch_update(inputs)
+                errors = [{
+                    'status': 'error', 'category': 'OBJECT_NOT_FOUND', 'message': "Could not get some CONTACT objects",
+                    'context': {'ids': missing}, 'links': {}, 'errors': [],
+                }] if missing else []
+                return (207 if missing else 200), _batch_json([_contact_json(c, _names(inputs)) for c in updated], started_at, errors)
+            if action == 'archive':
+                store.batch_archive([str(item.get('id')) for item in inputs])
+                return 204, None
+            raise FakeHubspotError(404, f"Unsupported batch action: {action}", 'OBJECT_NOT_FOUND')
+
+        if rest == 'search' and method == 'POST':
+            limit = min(int(body.get('limit') or 10), 200)
+            after = int(body.get('after') or 0)
+            if after + limit > MAX_SEARCH_RESULTS:
+                raise FakeHubspotError(400, f"Searches return at most {MAX_SEARCH_RESULTS} results")
+            matches = store.search(body.get('filterGroups'), body.get('query'), body.get('sorts'))
+            page = matches[after:after + limit]
+            payload = {'total': len(matches), 'results': [_contact_json(c, body.get('properties')) for c in page]}
+            if after + limit < len(matches):
+                payload['paging'] = {'next': {'after': str(after + limit)}}
+            return 200, payload
+
+        properties = [name for value in query.get('properties', []) for name in value.split(',') if name]
+        if rest == '':
+            if method == 'POST':
+                return 201, _contact_json(store.create(body.get('properties') or {}), list(body.get('properties') or {}))
+            if method == 'GET':
+                limit = min(int(query.get('limit', ['10'])[0]), 100)
+                page, after = store.page(query.get('after', [None])[0], limit)
+                payload = {'results': [_contact_json(contact, properties) for contact in page]}
+                if after:
+                    payload['paging'] = {'next': {'after': after, 'link': f"{CONTACTS_PATH}?after={after}"}}
+                return 200, payload
+
+        if rest.isdigit():
+            if method == 'GET':
+                contact = store.get(rest)
+            elif method == 'PATCH':
+                contact = store.update(rest, body.get('properties') or {})
+                properties = list(body.get('properties') or {})
+            elif method == 'DELETE':
+                store.archive(rest)
+                return 204, None
+            else:
+                contact = None
+            if contact is None:
+                raise FakeHubspotError(404, "Object not found. objectId are usually numeric.", 'OBJECT_NOT_FOUND')
+            return 200, _contact_json(contact, properties)
+
+        raise FakeHubspotError(404, f"No route for {method} {path}", 'OBJECT_NOT_FOUND')
+
+
+def _names(inputs):
+    """Returns the property names set by batch inputs, which HubSpot echoes back."""
+    return list(dict.fromkeys(name for item in inputs for name in (item.get('properties') or {})))
+
+
+class FakeHubspotServer(ThreadingHTTPServer):
+    """
+    A fake HubSpot contacts API on a local port.
+
+    Args:
+        address (tuple): The (host, port) to listen on. Port 0 picks a free one.
+        latency (float): Seconds added to every request.
+        jitter (float): Up to this many more seconds, drawn uniformly per request.
+        error_rate (float): The fraction of requests answered with a 500.
+        rate_limit_rate (float): The fraction of requests answered with a 429.
+        retry_after (float): The Retry-After seconds sent with each 429.
+        seed (int, optional): Seeds the fault injection, for repeatable runs.
+        verbose (bool): Log every request to stderr.
+    """
+    daemon_threads = True
+
+    def __init__(self, address=('127.0.0.1', 0), latency=0.0, jitter=0.0, error_rate=0.0,
+                 rate_limit_rate=0.0, retry_after=1.0, seed=None, verbose=False):
+        super().__init__(address, FakeHubspotHandler)
+        self.store = ContactStore()
+        self.latency = latency
+        self.jitter = jitter
+        self.error_rate = error_rate
+        self.rate_limit_rate = rate_limit_rate
+        self.retry_after = retry_after
+        self.verbose = verbose
+        self._random = random.Random(seed)
+        self._stats_lock = threading.Lock()
+        self._requests = Counter()
+        self._statuses = Counter()
+        self._thread = None
+
+    @property
+    def url(self):
+        """The base URL to use as HUBSPOT_API_BASE_URL."""
+        host, port = self.server_address[:2]
+        return f"http://{host}:{port}"
+
+    def before_request(self, route, headers):
+        """Simulates latency, authentication and faults before a request is served."""
+        with self._stats_lock:
+            delay = self.latency + self._random.uniform(0, self.jitter)
+            draw = self._random.random()
+        if delay:
+            time.sleep(delay)
+        if not (headers.get('Authorization') or '').startswith('Bearer '):
+            raise FakeHubspotError(401, "Authentication credentials not found.", 'INVALID_AUTHENTICATION')
+        if draw < self.rate_limit_rate:
+            raise FakeHubspotError(
+                429, "You have reached your secondly limit.", 'RATE_LIMITS',
+                headers={'Retry-After': f"{self.retry_after:g}"},
+            )
+        if draw < self.rate_limit_rate + self.error_rate:
+            raise FakeHubspotError(500, "Internal error (injected).", 'INTERNAL_ERROR')
+
+    def record(self, route, status):
+        with self._stats_lock:
+            self._requests[route] += 1
+            self._statuses[status] += 1
+
+    def stats(self):
+        """Returns the number of requests served per route and per status, and the contact count."""
+        with self._stats_lock:
+            return {
+                'requests': dict(self._requests),
+                'statuses': dict(self._statuses),
+                'contacts': len(self.store),
+            }
+
+    def start(self):
+        """Serves requests in a background thread. Returns the server."""
+        self._thread = threading.Thread(target=self.serve_forever, name='fake-hubspot', daemon=True)
+        self._thread.start()
+        return self
+
+    def stop(self):
+        """Stops serving and closes the listening socket."""
+        self.shutdown()
+        self.server_close()
+        if self._thread is not None:
+            self._thread.join()
@@ -8,32 +8,187 @@ code from the Django views, making the views cleaner and the HubSpot integration
 easier to manage and test.
 
 This service is used by the API views in `api_views.py` to sync approved
-volunteers with HubSpot.
+volunteers with HubSpot. The underlying HubSpot client is shared through the
+pooled registry in `hubspot_client.py`, so creating a `HubspotAPI` is cheap and
+every instance reuses the same warm connections.
+
+Every outbound call goes through `HubspotAPI._call`, which takes a token from
+the shared rate governor in `hubspot_ratelimit.py` first, and retries 429 and
+5xx answers with jittered exponential backoff, honouring HubSpot's Retry-After
+header when it is sent.
 """
 
-from django.conf import settings
-from hubspot import HubSpot
 from hubspot.crm.contacts import SimplePublicObjectInput, PublicObjectSearchRequest, Filter, FilterGroup
 from hubspot.crm.contacts.exceptions import ApiException
+from concurrent.futures import ThreadPoolExecutor, as_completed
 import logging
+import queue
+import random
+import threading
+import time
+
+from django.conf import settings
+
+from .hubspot_client import get_contacts_client
+from .hubspot_ratelimit import RateLimitExceeded, get_governor
 
 # Standard logger for this module
 logger = logging.getLogger(__name__)
 
+# HTTP statuses that are worth retrying: rate limiting and transient server errors.
+RETRYABLE_STATUSES = {429, 500, 502, 503, 504}
+
+# The most inputs HubSpot accepts in a single batch request.
+HUBSPOT_MAX_BATCH_INPUTS = 100
+
+
+class BatchResult:
+    """
+    The merged outcome of a batch operation that was sent in several chunks.
+
+    HubSpot answers a batch call with a response holding the created or updated
+    objects in `results` and, when some rows failed, per-row `errors`. This
+    class collects those across chunks, and records whole chunks that failed
+    outright. Batch archives answer with no content, so only their errors count.
+    """
+    def __init__(self):
+        self.results = []
+        self.errors = []
+        self.failed_chunks = 0
+
+    @property
+    def status(self):
+        """
+        'COMPLETE' if every row succeeded, 'PARTIAL' if some did, otherwise 'FAILED'.
+        """
+        if not self.errors:
+            return 'COMPLETE'
+        return 'PARTIAL' if self.results else 'FAILED'
+
+    def add_response(self, response):
+        """Merges one chunk's response, including per-row errors if any."""
+        if response is None:
+            return
+        self.results.extend(response.results or [])
+        for error in getattr(response, 'errors', None) or []:
+            self.errors.append({
+                'status': getattr(error, 'status', None),
+                'category': getattr(error, 'category', None),
+                'message': getattr(error, 'message', str(error)),
+                'context': getattr(error, 'context', None),
+            })
+
+    def add_failed_chunk(self, chunk, exception):
+        """Records a chunk whose request failed as a whole."""
+        self.failed_chunks += 1
+        context = {}
+        if any('properties' in item for item in chunk):
+            context['emails'] = [item.get('properties', {}).get('email') for item in chunk]
+        if all('id' in item and 'idProperty' not in item for item in chunk):
+            context['ids'] = [str(item['id']) for item in chunk]
+        self.errors.append({
+            'status': getattr(exception, 'status', None),
+            'category': 'CHUNK_FAILED',
+            'message': str(exception),
+            'context': context,
+        })
+
+    def failed_ids(self):
+        """
+        Returns the HubSpot IDs named by the errors, i.e. the contacts an update
+        or archive did not reach.
+        """
+        return {
+            str(contact_id)
+            for error in self.errors
+            for contact_id in (error['context'] or {}).get('ids') or []
+        }
+
+    def ids_by_email(self):
+        """
+        Maps each returned contact's email to its HubSpot ID. Emails are
+        lowercased, because HubSpot stores them lowercased.
+        """
+        return {
+            contact.properties['email'].lower(): contact.id
+            for contact in self.results
+            if contact.properties.get('email')
+        }
+
+    def new_ids(self):
+        """
+        Returns the HubSpot IDs of the contacts an upsert created, which HubSpot
+        flags as `new`, as opposed to existing contacts it updated.
+        """
+        return {str(contact.id) for contact in self.results if getattr(contact, 'new', False) is True}
+
 class HubspotAPI:
     """
     A wrapper class for the HubSpot API client.
     This class provides methods for all the HubSpot contact operations required by the
-    HopeHands application. It initializes the HubSpot client with the access token
-    from the Django settings.
+    HopeHands application. It uses the process-wide pooled client for the access
+    token from the Django settings.
     """
     def __init__(self):
         """
-        Initializes the HubSpot API client.
+        Looks up the pooled HubSpot contacts client.
         The access token is retrieved from the Django settings, which in turn
-        loads it from the .env file.
+        loads it from the .env file. The client is built once per worker process
+        and reused afterwards.
         """
-        self.client = HubSpot(access_token=settings.HUBSPOT_PRIVATE_APP_TOKEN)
+        self.client = get_contacts_client()
+        self.governor = get_governor()
+
+    def _call(self, api_method, *args, **kwargs):
+        """
+        Calls a HubSpot API method under the shared rate governor.
+
+        A token is taken from the governor before each attempt. Retryable
+        failures are retried up to `HUBSPOT_MAX_RETRIES` times; a 429 also puts
+        every process on hold for the Retry-After period.
+
+        Raises:
+            ApiException: If the call fails with a non-retryable status, or
+                          still fails after the last retry.
+            RateLimitExceeded: If the daily budget is used up.
+        """
+        max_retries = settings.HUBSPOT_MAX_RETRIES
+        for attempt in range(max_retries + 1):
+            self.governor.acquire()
+            try:
+                return api_method(*args, **kwargs)
+            except ApiException as e:
+                if e.status not in RETRYABLE_STATUSES or attempt == max_retries:
+                    raise
+                delay = self._retry_after(e)
+                if delay is None:
+                    # Full jitter keeps retrying workers from moving in lockstep.
+                    cap = min(settings.HUBSPOT_BACKOFF_MAX, settings.HUBSPOT_BACKOFF_BASE * (2 ** attempt))
+                    delay = random.uniform(0, cap)
+                if e.status == 429:
+                    self.governor.penalize(delay)
+                logger.warning(
+                    "HubSpot returned %s, retrying in %.2fs (attempt %s of %s)",
+                    e.status, delay, attempt + 1, max_retries
+                )
+                time.sleep(delay)
+
+    @staticmethod
+    def _retry_after(exception):
+        """Returns the Retry-After delay in seconds from an ApiException, if any."""
+        headers = getattr(exception, 'headers', None) or {}
+        value = headers.get('Retry-After')
+        try:
+            return max(0.0, float(value)) if value is not None else None
+        except (TypeError, ValueError):
+            return None
+
+    def rate_budget(self):
+        """
+        Returns the remaining HubSpot call budget shared by all processes on this
+        host. See `RateGovernor.budget` for the keys.
+        """
+        return self.governor.budget()
 
     def create_contact(self, email, first_name, last_name, phone_number, preferred_volunteer_role, availability, how_did_you_hear_about_us):
         """
@@ -65,34 +220,108 @@ class HubspotAPI:
         simple_public_object_input = SimplePublicObjectInput(properties=properties)
         try:
             # Make the API call to create the contact
-            api_response = self.client.crm.contacts.basic_api.create(
+            api_response = self._call(
+                self.client.basic_api.create,
                 simple_public_object_input_for_create=simple_public_object_input
             )
             logger.info(f"Successfully created contact in HubSpot: {api_response}")
             return api_response
-        except ApiException as e:
+        except (ApiException, RateLimitExceeded):
             # Log any exceptions that occur during the API call
             logger.error("Exception when creating contact in HubSpot", exc_info=True)
             return None
 
+    def _contact_pages(self, properties, page_size):
+        """Yields pages of contacts, following the `after` cursor until the last page."""
+        after = None
+        while True:
+            page = self._call(
+                self.client.basic_api.get_page,
+                limit=min(page_size, HUBSPOT_MAX_BATCH_INPUTS), after=after, properties=properties
+            )
+            yield page
+            next_page = page.paging.next if page.paging else None
+            if not next_page or not next_page.after:
+                return
+            after = next_page.after
+
+    def iter_contacts(self, properties=None, page_size=100, prefetch=None):
+        """
+        Lazily yields every contact in HubSpot, in ascending ID order, following
+        the `after` cursor from page to page.
+
+        Each page needs the cursor of the one before, so pages are fetched one
+        after the other, but in a background thread that runs up to `prefetch`
+        pages ahead of the caller. The next page is then usually downloaded
+        while the caller processes the current one, and memory stays bounded by
+        `prefetch` pages however many contacts there are. If the caller stops
+        early, the thread stops fetching too.
+
+        Args:
+            properties (list, optional): The contact properties to retrieve.
+                                         Fewer properties make smaller pages.
+            page_size (int): Contacts per request; HubSpot allows at most 100.
+            prefetch (int, optional): Pages fetched ahead of the caller.
+                                      Defaults to HUBSPOT_CONTACT_PREFETCH_PAGES;
+                                      0 fetches each page only when needed.
+
+        Raises:
+            ApiException, RateLimitExceeded: If a page cannot be fetched, since
+                                             a partial listing could not be
+                                             told apart from a complete one.
+        """
+        properties = properties or ["firstname", "lastname", "email", "phone"]
+        prefetch = settings.HUBSPOT_CONTACT_PREFETCH_PAGES if prefetch is None else prefetch
+        if prefetch < 1:
+            for page in self._contact_pages(properties, page_size):
+                yield from page.results
+            return
+
+        pages = queue.Queue(maxsize=prefetch)
+        stop = threading.Event()
+
+        def put(item):
+            # Waits for room in the queue, giving up once the caller has stopped.
+            while not stop.is_set():
+                try:
+                    pages.put(item, timeout=0.1)
+                    return True
+                except queue.Full:
+                    pass
+            return False
+
+        def fetch():
+            try:
+                for page in self._contact_pages(properties, page_size):
+                    if not put(page):
+                        return
+                put(None)
+            except Exception as e:
+                put(e)
+
+        threading.Thread(target=fetch, name='hubspot-contact-prefetch', daemon=True).start()
+        try:
+            while True:
+                page = pages.get()
+                if page is None:
+                    return
+                if isinstance(page, Exception):
+                    raise page
+                yield from page.results
+        finally:
+            stop.set()
+
     def get_all_contacts(self):
         """
-        Retrieves all contacts from HubSpot. Currently for utility or future use.
+        Retrieves all contacts from HubSpot, page by page (see `iter_contacts`).
 
         Returns:
             list: A list of HubSpot contact objects. Returns an empty list if
                   the API call fails.
         """
         try:
-            # Define the properties we want to retrieve for the list view
-            properties = ["firstname", "lastname", "email", "phone"]
-            # Get a page of contacts, specifying the properties
-            api_response = self.client.crm.contacts.basic_api.get_page(
-                limit=100, properties=properties
-            )
-            # The contacts are in the 'results' attribute of the response
-            return api_response.results
-        except ApiException as e:
+            return list(self.iter_contacts())
+        except (ApiException, RateLimitExceeded):
             logger.error("Exception when getting contacts from HubSpot", exc_info=True)
             return []
 
@@ -116,11 +345,12 @@ class HubspotAPI:
                 "availability", "how_did_you_hear_about_us"
             ]
             # Get the contact by its ID, specifying the properties
-            contact = self.client.crm.contacts.basic_api.get_by_id(
+            contact = self._call(
+                self.client.basic_api.get_by_id,
                 contact_id, properties=properties
             )
             return contact
-        except ApiException as e:
+        except (ApiException, RateLimitExceeded):
             logger.error(f"Exception when getting contact {contact_id} from HubSpot", exc_info=True)
             return None
 
@@ -139,12 +369,13 @@ class HubspotAPI:
         simple_public_object_input = SimplePublicObjectInput(properties=properties)
         try:
             # Make the API call to update the contact
-            api_response = self.client.crm.contacts.basic_api.update(
+            api_response = self._call(
+                self.client.basic_api.update,
                 contact_id=contact_id,
                 simple_public_object_input=simple_public_object_input
             )
             return api_response
-        except ApiException as e:
+        except (ApiException, RateLimitExceeded):
             logger.error(f"Exception when updating contact {contact_id} in HubSpot", exc_info=True)
             return None
 
@@ -161,15 +392,53 @@ class HubspotAPI:
         """
         try:
             # Archive (delete) the contact
-            self.client.crm.contacts.basic_api.archive(contact_id)
+            self._call(self.client.basic_api.archive, contact_id)
             return True
-        except ApiException as e:
+        except (ApiException, RateLimitExceeded):
             logger.error(f"Exception when deleting contact {contact_id} from HubSpot", exc_info=True)
             return False
 
+    def _run_chunked(self, inputs, send_chunk, description):
+        """
+        Splits batch inputs into chunks HubSpot accepts and sends them concurrently.
+
+        Chunks hold at most `HUBSPOT_BATCH_SIZE` inputs (HubSpot rejects more
+        than 100), and up to `HUBSPOT_BATCH_PARALLELISM` chunks are in flight at
+        once. Every attempt still goes through the rate governor, so parallel
+        chunks never exceed the shared budget.
+
+        Args:
+            inputs (list): The batch inputs, already in HubSpot's input format.
+            send_chunk (callable): Sends one chunk and returns HubSpot's response.
+            description (str): Describes the operation in log messages.
+
+        Returns:
+            BatchResult: The merged results and errors of every chunk.
+        """
+        size = min(settings.HUBSPOT_BATCH_SIZE, HUBSPOT_MAX_BATCH_INPUTS)
+        chunks = [inputs[i:i + size] for i in range(0, len(inputs), size)]
+        result = BatchResult()
+        if not chunks:
+            return result
+
+        workers = max(1, min(settings.HUBSPOT_BATCH_PARALLELISM, len(chunks)))
+        with ThreadPoolExecutor(max_workers=workers) as executor:
+            futures = {executor.submit(send_chunk, chunk): chunk for chunk in chunks}
+            for future in as_completed(futures):
+                chunk = futures[future]
+                try:
+                    result.add_response(future.result())
+                except (ApiException, RateLimitExceeded) as e:
+                    logger.error(f"Exception when {description} a chunk of {len(chunk)} contacts in HubSpot", exc_info=True)
+                    result.add_failed_chunk(chunk, e)
+        return result
+
     def batch_create_contacts(self, contacts_properties):
         """
-        Creates multiple contacts in HubSpot in a single batch request.
+        Creates multiple contacts in HubSpot using batch requests.
+
+        The inputs are split into chunks HubSpot accepts and sent concurrently
+        (see `_run_chunked`), so any number of contacts can be passed.
 
         Args:
             contacts_properties (list): A list of dictionaries, where each
@@ -177,26 +446,141 @@ class HubspotAPI:
                                         a new contact.
 
         Returns:
-            BatchResponseSimplePublicObject or None: The response from the batch
-                                                     API call, or None if the
-                                                     call fails.
+            BatchResult: The merged response of every chunk. Its `status` is
+                         'COMPLETE', 'PARTIAL' or 'FAILED', `results` holds the
+                         created contacts and `errors` the per-row failures.
         """
         # Format the properties for the batch API
         inputs = [{"properties": props} for props in contacts_properties]
-        try:
-            # Make the batch API call to create the contacts
-            api_response = self.client.crm.contacts.batch_api.create(
-                batch_input_simple_public_object_batch_input_for_create={"inputs": inputs}
+
+        def send_chunk(chunk):
+            # Make the batch API call to create the contacts of one chunk
+            return self._call(
+                self.client.batch_api.create,
+                batch_input_simple_public_object_batch_input_for_create={"inputs": chunk}
             )
-            return api_response
-        except ApiException as e:
-            logger.error("Exception when batch creating contacts in HubSpot", exc_info=True)
-            return None
+
+        return self._run_chunked(inputs, send_chunk, "batch creating")
+
+    def batch_upsert_contacts(self, contacts_properties):
+        """
+        Creates or updates multiple contacts in HubSpot, matched by email, using
+        batch requests chunked and sent concurrently like `batch_create_contacts`.
+
+        Unlike a create, the upsert of an email HubSpot already knows updates
+        that contact and returns its ID instead of failing with a conflict, so
+        it can safely be repeated.
+
+        Args:
+            contacts_properties (list): A list of dictionaries with the
+                                        properties of each contact, including
+                                        its `email`.
+
+        Returns:
+            BatchResult: The merged response of every chunk. `results` holds the
+                         created and updated contacts, see `ids_by_email()`
+                         and `new_ids()`.
+        """
+        inputs = [
+            {"idProperty": "email", "id": props["email"], "properties": props}
+            for props in contacts_properties
+        ]
+
+        def send_chunk(chunk):
+            return self._call(
+                self.client.batch_api.upsert,
+                batch_input_simple_public_object_batch_input_upsert={"inputs": chunk}
+            )
+
+        return self._run_chunked(inputs, send_chunk, "batch upserting")
+
+    def batch_update_contacts(self, updates):
+        """
+        Updates multiple contacts in HubSpot using batch requests, chunked and
+        sent concurrently like `batch_create_contacts`.
+
+        HubSpot rejects a batch that names the same contact twice, so callers
+        pass one entry per contact.
+
+        Args:
+            updates (dict): Maps each HubSpot contact ID to the properties to set.
+
+        Returns:
+            BatchResult: The merged response of every chunk. `results` holds
+                         the updated contacts, and `failed_ids()` the contacts
+                         that were not updated.
+        """
+        inputs = [{"id": str(contact_id), "properties": properties} for contact_id, properties in updates.items()]
+
+        def send_chunk(chunk):
+            return self._call(
+                self.client.batch_api.update,
+                batch_input_simple_public_object_batch_input={"inputs": chunk}
+            )
+
+        return self._run_chunked(inputs, send_chunk, "batch updating")
+
+    def batch_archive_contacts(self, contact_ids):
+        """
+        Archives (deletes) multiple contacts in HubSpot using batch requests,
+        chunked and sent concurrently like `batch_create_contacts`.
+
+        Args:
+            contact_ids (iterable): The HubSpot IDs of the contacts to archive.
+                                    Repeated IDs are sent once.
+
+        Returns:
+            BatchResult: The merged errors of every chunk. `failed_ids()` holds
+                         the contacts that were not archived.
+        """
+        inputs = [{"id": contact_id} for contact_id in dict.fromkeys(str(contact_id) for contact_id in contact_ids)]
+
+        def send_chunk(chunk):
+            return self._call(
+                self.client.batch_api.archive,
+                batch_input_simple_public_object_id={"inputs": chunk}
+            )
+
+        return self._run_chunked(inputs, send_chunk, "batch archiving")
+
+    def search_modified_contacts(self, since, properties, after=None, limit=100):
+        """
+        Returns one page of the contacts modified at or after `since`, oldest
+        modification first, using HubSpot's search API.
+
+        HubSpot serves at most 10,000 results per search, so callers page with
+        `after` and start a new search from the latest modification time they
+        have seen before reaching that limit (see `pull.py`).
+
+        Args:
+            since (datetime): The earliest `lastmodifieddate` to return.
+            properties (list): The contact properties to retrieve.
+            after (str, optional): The paging cursor from the previous page.
+            limit (int): Contacts per page; HubSpot allows at most 100.
+
+        Returns:
+            The search response, with `results` and `paging`.
+
+        Raises:
+            ApiException, RateLimitExceeded: If the search fails, so that a
+                                             failed pull never looks empty.
+        """
+        search_request = PublicObjectSearchRequest(
+            filter_groups=[FilterGroup(filters=[
+                Filter(property_name="lastmodifieddate", operator="GTE", value=str(int(since.timestamp() * 1000)))
+            ])],
+            sorts=[{"propertyName": "lastmodifieddate", "direction": "ASCENDING"}],
+            properties=properties,
+            limit=min(limit, HUBSPOT_MAX_BATCH_INPUTS),
+            after=after,
+        )
+        return self._call(self.client.search_api.do_search, public_object_search_request=search_request)
 
     def search_contacts(self, query):
         """
         Searches for contacts by first name, last name, email, or phone in HubSpot.
-        Currently for utility or future use.
+        Currently for utility or future use. To find a local volunteer, the
+        in-memory typeahead index (`trigram.py`) is much cheaper.
 
         Args:
             query (str): The search term to look for.
@@ -231,10 +615,11 @@ class HubspotAPI:
             )
 
             # Perform the search
-            api_response = self.client.crm.contacts.search_api.do_search(
+            api_response = self._call(
+                self.client.search_api.do_search,
                 public_object_search_request=search_request
             )
             return api_response.results
-        except ApiException as e:
+        except (ApiException, RateLimitExceeded):
             logger.error(f"Exception when searching for contacts with query '{query}'", exc_info=True)
             return []
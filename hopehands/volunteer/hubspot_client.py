@@ -0,0 +1,167 @@
+# hopehands/volunteer/hubspot_client.py
+
+"""
+This file provides a process-wide registry of HubSpot API clients.
+
+Building a HubSpot client is not free: every client owns its own urllib3
+connection pool, so creating a new one per request means a fresh TCP and TLS
+handshake on every admin click. The registry below builds one contacts client
+per access token and per worker process, and hands the same warm instance to
+every `HubspotAPI` that asks for it. The client's connection pool keeps
+connections alive between calls, so consecutive approvals reuse them.
+
+The registry also keeps simple hit/miss counters, and can report how many
+connections the underlying pools have opened compared with how many requests
+they have served, which is a quick way to check that keep-alive is working.
+"""
+
+import logging
+import os
+import threading
+
+from django.conf import settings
+from hubspot.crm.contacts import ApiClient, BasicApi, BatchApi, Configuration, SearchApi
+
+# Standard logger for this module
+logger = logging.getLogger(__name__)
+
+
+class ContactsClient:
+    """
+    Groups the HubSpot contacts APIs around a single shared `ApiClient`.
+
+    The basic, batch and search APIs all use the same `ApiClient`, and therefore
+    the same connection pool, so a batch call made after a single create can
+    reuse the connection the create opened.
+    """
+    def __init__(self, access_token, pool_size, base_url=None):
+        """
+        Builds the shared `ApiClient` and the contacts APIs on top of it.
+
+        Args:
+            access_token (str): The HubSpot private app token.
+            pool_size (int): The maximum number of keep-alive connections the
+                             pool holds open per host.
+            base_url (str, optional): Sends requests to another host than
+                                      HubSpot's, such as `fake_hubspot.py`.
+        """
+        configuration = Configuration()
+        if base_url:
+            configuration.host = base_url.rstrip('/')
+        configuration.access_token = access_token
+        configuration.connection_pool_maxsize = pool_size
+        self.api_client = ApiClient(configuration=configuration)
+        self.basic_api = BasicApi(api_client=self.api_client)
+        self.batch_api = BatchApi(api_client=self.api_client)
+        self.search_api = SearchApi(api_client=self.api_client)
+
+    def connection_stats(self):
+        """
+        Returns the number of connections opened and requests served by the
+        underlying urllib3 pools.
+        """
+        connections = 0
+        requests = 0
+        try:
+            pools = self.api_client.rest_client.pool_manager.pools
+            for key in pools.keys():
+                pool = pools.get(key)
+                if pool is None:
+                    continue
+                connections += pool.num_connections
+                requests += pool.num_requests
+        except AttributeError:
+            # The generated client changed its internals; stats are best effort.
+            pass
+        return {'connections_opened': connections, 'requests_served': requests}
+
+    def close(self):
+        """Closes every connection held by the pool."""
+        try:
+            self.api_client.rest_client.pool_manager.clear()
+        except AttributeError:
+            pass
+
+
+class HubspotClientRegistry:
+    """
+    A thread-safe registry of `ContactsClient` instances.
+
+    Clients are keyed by process ID as well as access token and host: a
+    connection pool must never be shared across a fork, because the parent and
+    child would end up reading from the same sockets. When a worker process
+    forks, the first lookup in the child is simply a miss and builds a new
+    client.
+    """
+    def __init__(self):
+        self._lock = threading.Lock()
+        self._clients = {}
+        self.hits = 0
+        self.misses = 0
+
+    def get(self, access_token, pool_size=None, base_url=None):
+        """
+        Returns the shared client for the given token, building it on first use.
+
+        Args:
+            access_token (str): The HubSpot private app token.
+            pool_size (int, optional): Overrides `HUBSPOT_CONNECTION_POOL_SIZE`
+                                       for a newly built client.
+            base_url (str, optional): The API host; HubSpot's when not given.
+
+        Returns:
+            ContactsClient: The shared contacts client.
+        """
+        pid = os.getpid()
+        key = (pid, access_token, base_url)
+        with self._lock:
+            client = self._clients.get(key)
+            if client is not None:
+                self.hits += 1
+                return client
+
+            self.misses += 1
+            # Forget any clients inherited from a parent process. Their sockets
+            # belong to the parent, so they are dropped rather than closed.
+            self._clients = {k: v for k, v in self._clients.items() if k[0] == pid}
+            client = ContactsClient(
+                access_token,
+                pool_size or settings.HUBSPOT_CONNECTION_POOL_SIZE,
+                base_url=base_url,
+            )
+            self._clients[key] = client
+            logger.info("Created pooled HubSpot client for process %s", pid)
+            return client
+
+    def stats(self):
+        """
+        Returns registry hit/miss counters and connection stats for this process.
+        """
+        with self._lock:
+            clients = [c for k, c in self._clients.items() if k[0] == os.getpid()]
+            stats = {'hits': self.hits, 'misses': self.misses, 'clients': len(clients)}
+        stats['connections_opened'] = 0
+        stats['requests_served'] = 0
+        for client in clients:
+            connection_stats = client.connection_stats()
+            stats['connections_opened'] += connection_stats['connections_opened']
+            stats['requests_served'] += connection_stats['requests_served']
+        return stats
+
+    def reset(self):
+        """Closes and forgets every client. Mainly useful in tests."""
+        with self._lock:
+            for client in self._clients.values():
+                client.close()
+            self._clients = {}
+            self.hits = 0
+            self.misses = 0
+
+
+# The single registry shared by every HubspotAPI instance in this process.
+registry = HubspotClientRegistry()
+
+
+def get_contacts_client():
+    """Returns the pooled contacts client for the configured access token and host."""
+    return registry.get(settings.HUBSPOT_PRIVATE_APP_TOKEN, base_url=settings.HUBSPOT_API_BASE_URL)
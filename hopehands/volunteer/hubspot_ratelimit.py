@@ -0,0 +1,195 @@
+# hopehands/volunteer/hubspot_ratelimit.py
+
+"""
+This file provides the rate governor that paces every outbound HubSpot call.
+
+HubSpot enforces two limits on a private app: a short-window limit (a number of
+requests per second) and a daily limit. The governor models the short-window
+limit as a token bucket and the daily limit as a simple counter that resets at
+midnight UTC.
+
+Every worker process talks to the same HubSpot account, so the bucket cannot
+live in process memory. Its state is kept in a small JSON file guarded by an
+exclusive file lock, which makes the budget shared by every process on the
+host. When HubSpot answers with a 429, the governor records a "blocked until"
+time in the same file so that all processes back off together instead of each
+one discovering the limit on its own.
+"""
+
+from contextlib import contextmanager
+import datetime
+import json
+import logging
+import os
+import threading
+import time
+
+from django.conf import settings
+
+try:
+    import fcntl
+except ImportError:  # pragma: no cover - Windows development machines
+    fcntl = None
+
+# Standard logger for this module
+logger = logging.getLogger(__name__)
+
+
+class RateLimitExceeded(Exception):
+    """
+    Raised when the daily HubSpot budget is used up, or when waiting for a
+    token would take longer than the caller is willing to wait.
+    """
+
+
+class RateGovernor:
+    """
+    A token bucket with a daily cap whose state is shared through a locked file.
+
+    Args:
+        rate (float): Tokens added to the bucket per second.
+        burst (int): The bucket's capacity, i.e. the largest burst allowed.
+        daily_limit (int): The maximum number of calls per UTC day.
+        state_path (str): Path of the shared state file.
+        clock (callable): Returns the current time in seconds. Injected in tests.
+    """
+    def __init__(self, rate, burst, daily_limit, state_path, clock=time.time):
+        self.rate = float(rate)
+        self.burst = int(burst)
+        self.daily_limit = int(daily_limit)
+        self.state_path = state_path
+        self.clock = clock
+        # Threads in one process share a file descriptor table, and flock only
+        # excludes other processes, so threads also take this lock.
+        self._thread_lock = threading.Lock()
+
+    @contextmanager
+    def _locked_state(self):
+        """
+        Yields the shared state as a dictionary while holding the file lock,
+        and writes it back when the block exits.
+        """
+        with self._thread_lock:
+            with open(self.state_path, 'a+') as state_file:
+                if fcntl:
+                    fcntl.flock(state_file.fileno(), fcntl.LOCK_EX)
+                try:
+                    state_file.seek(0)
+                    try:
+                        state = json.loads(state_file.read() or '{}')
+                    except ValueError:
+                        logger.warning("Resetting unreadable HubSpot rate limit state file")
+                        state = {}
+                    self._refill(state)
+                    yield state
+                    state_file.seek(0)
+                    state_file.truncate()
+                    state_file.write(json.dumps(state))
+                    state_file.flush()
+                finally:
+                    if fcntl:
+                        fcntl.flock(state_file.fileno(), fcntl.LOCK_UN)
+
+    def _refill(self, state):
+        """Adds the tokens earned since the last update and rolls the day over."""
+        now = self.clock()
+        today = datetime.datetime.fromtimestamp(now, datetime.timezone.utc).date().isoformat()
+        if state.get('day') != today:
+            state['day'] = today
+            state['daily_used'] = 0
+        last = state.get('updated', now)
+        tokens = state.get('tokens', float(self.burst))
+        state['tokens'] = min(float(self.burst), tokens + max(0.0, now - last) * self.rate)
+        state['updated'] = now
+        state.setdefault('blocked_until', 0.0)
+
+    def try_acquire(self, tokens=1):
+        """
+        Takes tokens from the bucket if they are available.
+
+        Returns:
+            float: 0 if the tokens were taken, otherwise the number of seconds
+                   to wait before trying again.
+
+        Raises:
+            RateLimitExceeded: If the daily limit has been reached.
+        """
+        with self._locked_state() as state:
+            now = state['updated']
+            if state['daily_used'] + tokens > self.daily_limit:
+                raise RateLimitExceeded("The daily HubSpot API limit has been reached.")
+            if state['blocked_until'] > now:
+                return state['blocked_until'] - now
+            if state['tokens'] >= tokens:
+                state['tokens'] -= tokens
+                state['daily_used'] += tokens
+                return 0.0
+            return (tokens - state['tokens']) / self.rate
+
+    def acquire(self, tokens=1, timeout=None, sleep=time.sleep):
+        """
+        Blocks until tokens are available, then takes them.
+
+        Args:
+            tokens (int): The number of calls about to be made.
+            timeout (float, optional): The longest time to wait, in seconds.
+            sleep (callable): The sleep function. Injected in tests.
+
+        Raises:
+            RateLimitExceeded: If the daily limit has been reached, or if the
+                               wait would exceed the timeout.
+        """
+        waited = 0.0
+        while True:
+            wait = self.try_acquire(tokens)
+            if not wait:
+                return
+            if timeout is not None and waited + wait > timeout:
+                raise RateLimitExceeded("Timed out waiting for the HubSpot rate limit.")
+            sleep(wait)
+            waited += wait
+
+    def penalize(self, seconds):
+        """
+        Blocks every process from calling HubSpot for the given number of seconds
+        and empties the bucket. Called when HubSpot answers with a 429.
+        """
+        with self._locked_state() as state:
+            state['blocked_until'] = max(state['blocked_until'], state['updated'] + seconds)
+            state['tokens'] = 0.0
+
+    def budget(self):
+        """
+        Returns the current budget, so bulk jobs can size their work to it.
+
+        Returns:
+            dict: The tokens available now, the per-second rate, the calls left
+                  today, and how many seconds remain on any 429 back-off.
+        """
+        with self._locked_state() as state:
+            return {
+                'tokens_available': int(state['tokens']),
+                'rate_per_second': self.rate,
+                'burst': self.burst,
+                'daily_limit': self.daily_limit,
+                'daily_remaining': max(0, self.daily_limit - state['daily_used']),
+                'blocked_for_seconds': max(0.0, state['blocked_until'] - state['updated']),
+            }
+
+
+_governor = None
+_governor_lock = threading.Lock()
+
+
+def get_governor():
+    """Returns the process-wide governor built from the Django settings."""
+    global _governor
+    with _governor_lock:
+        if _governor is None:
+            _governor = RateGovernor(
+                rate=settings.HUBSPOT_RATE_LIMIT_PER_SECOND,
+                burst=settings.HUBSPOT_RATE_LIMIT_BURST,
+                daily_limit=settings.HUBSPOT_DAILY_LIMIT,
+                state_path=settings.HUBSPOT_RATE_LIMIT_STATE_FILE,
+            )
+        return _governor
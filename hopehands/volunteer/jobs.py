@@ -0,0 +1,185 @@
+# hopehands/volunteer/jobs.py
+
+"""
+This file runs CSV import jobs in the background.
+
+The upload views only store the file in an `ImportJob` and call
+`submit_import_job`, so the HTTP request returns immediately. Once the
+request's transaction commits, the job is handed to a process-wide thread pool
+of `IMPORT_JOB_WORKERS` threads, so several uploads can be imported in
+parallel. The importer reports progress after every batch, which is written to
+the job so clients can poll it.
+
+Jobs that were queued but never picked up, e.g. because the server restarted,
+can be processed with the `run_import_jobs` management command. The command
+also fails jobs left `running` by a worker that died: a running job writes
+`progress_at` after every batch, and one that has been silent for
+`IMPORT_JOB_STALE_SECONDS` is marked failed.
+"""
+
+from concurrent.futures import ThreadPoolExecutor
+from datetime import timedelta
+import logging
+import threading
+
+from django.conf import settings
+from django.db import close_old_connections, transaction
+from django.utils import timezone
+
+from .csv_import import VolunteerImporter
+from .hubspot_api import HubspotAPI
+from .models import ImportJob
+
+# Standard logger for this module
+logger = logging.getLogger(__name__)
+
+# The counters copied from an ImportReport to its ImportJob.
+PROGRESS_FIELDS = ['rows_parsed', 'rows_inserted', 'rows_updated', 'rows_skipped', 'rows_synced', 'rows_failed']
+
+_executor = None
+_executor_lock = threading.Lock()
+
+
+def get_executor():
+    """Returns the process-wide thread pool that runs import jobs."""
+    global _executor
+    with _executor_lock:
+        if _executor is None:
+            _executor = ThreadPoolExecutor(
+                max_workers=settings.IMPORT_JOB_WORKERS, thread_name_prefix='import-job'
+            )
+        return _executor
+
+
+def submit_import_job(job):
+    """
+    Schedules a job to run once the current transaction commits, so the worker
+    thread always sees the committed job row.
+
+    With `IMPORT_JOB_EXECUTOR = 'inline'` the job runs in the calling thread
+    instead, which is mainly useful in tests.
+    """
+    def dispatch():
+        if settings.IMPORT_JOB_EXECUTOR == 'inline':
+            run_import_job(job.pk)
+        else:
+            get_executor().submit(_run_in_thread, job.pk)
+
+    transaction.on_commit(dispatch)
+
+
+def _run_in_thread(job_id):
+    """Runs a job in a worker thread, which owns its own database connection."""
+    close_old_connections()
+    try:
+        run_import_job(job_id)
+    finally:
+        close_old_connections()
+
+
+def _save_progress(job, report):
+    """Writes the report's counters and errors to the job."""
+    for field in PROGRESS_FIELDS:
+        setattr(job, field, getattr(report, field))
+    job.errors = report.errors
+    job.progress_at = timezone.now()
+    job.save(update_fields=PROGRESS_FIELDS + ['errors', 'progress_at'])
+
+
+def _fail_job(job_id, message, **filters):
+    """
+    Marks a running job failed with an error and deletes its stored upload.
+
+    The update is conditional on the job still running, and on `filters`, so
+    it never overwrites a job that finished in the meantime.
+
+    Returns:
+        bool: True if the job was marked failed.
+    """
+    job = ImportJob.objects.filter(pk=job_id, status='running', **filters).first()
+    if job is None:
+        return False
+    failed = ImportJob.objects.filter(pk=job_id, status='running', **filters).update(
+        status='failed', errors=(job.errors or []) + [message], upload='', finished_at=timezone.now()
+    )
+    if failed:
+        job.upload.delete(save=False)
+    return bool(failed)
+
+
+def fail_stale_jobs(now=None):
+    """
+    Fails the running jobs that have not reported progress for
+    `IMPORT_JOB_STALE_SECONDS`, so a job whose worker died is not shown as
+    running forever.
+
+    Returns:
+        int: The number of jobs marked failed.
+    """
+    cutoff = (now or timezone.now()) - timedelta(seconds=settings.IMPORT_JOB_STALE_SECONDS)
+    job_ids = list(
+        ImportJob.objects.filter(status='running', progress_at__lt=cutoff).values_list('id', flat=True)
+    )
+    failed = 0
+    for job_id in job_ids:
+        if _fail_job(job_id, "The import stopped reporting progress and was abandoned.", progress_at__lt=cutoff):
+            logger.warning(f"Import job {job_id} was abandoned by its worker and marked failed")
+            failed += 1
+    return failed
+
+
+def run_import_job(job_id):
+    """
+    Imports the job's stored upload, unless another worker already claimed it.
+
+    Returns:
+        bool: True if this call ran the job.
+    """
+    # Claiming the job with a conditional UPDATE guarantees that only one
+    # worker runs it, even if it is submitted twice.
+    now = timezone.now()
+    claimed = ImportJob.objects.filter(pk=job_id, status='queued').update(
+        status='running', started_at=now, progress_at=now
+    )
+    if not claimed:
+        return False
+
+    try:
+        _run_claimed_job(job_id)
+    except BaseException as e:
+        # Whatever escapes, e.g. a failure while saving the result, must not
+        # leave the job running. Interrupts are re-raised once it is failed.
+        logger.error(f"Import job {job_id} stopped unexpectedly", exc_info=True)
+        _fail_job(job_id, f"Failed to process CSV file: {e}")
+        if not isinstance(e, Exception):
+            raise
+    return True
+
+
+def _run_claimed_job(job_id):
+    """Runs a job this worker has claimed and saves its outcome."""
+    job = ImportJob.objects.get(pk=job_id)
+    try:
+        importer = VolunteerImporter(
+            status=job.volunteer_status,
+            hubspot_api=HubspotAPI() if job.sync_to_hubspot else None,
+            on_conflict=job.on_conflict,
+            progress=lambda report: _save_progress(job, report),
+        )
+        with job.upload.open('rb') as upload:
+            report = importer.run(upload)
+        _save_progress(job, report)
+        if report.rows_inserted or report.rows_updated or report.rows_skipped:
+            job.status = 'completed'
+        else:
+            job.errors = job.errors + ["No valid volunteer data found in CSV."]
+            job.status = 'failed'
+    except Exception as e:
+        logger.error(f"Import job {job_id} failed", exc_info=True)
+        job.errors = (job.errors or []) + [f"Failed to process CSV file: {e}"]
+        job.status = 'failed'
+
+    # The stored upload is only needed while the job runs.
+    job.upload.delete(save=False)
+    job.finished_at = timezone.now()
+    job.save(update_fields=['status', 'errors', 'finished_at', 'upload'])
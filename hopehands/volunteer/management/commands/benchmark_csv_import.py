@@ -0,0 +1,76 @@
+# hopehands/volunteer/management/commands/benchmark_csv_import.py
+
+"""
+A management command that measures CSV import throughput against the
+configured database (MySQL in the default settings).
+
+For each requested size it writes a synthetic CSV to a temporary file, imports
+it with `VolunteerImporter` (without HubSpot sync), then imports the same file
+again so every row hits the duplicate-email path. Both passes are reported in
+rows per second, and the benchmark rows are deleted afterwards.
+
+    python manage.py benchmark_csv_import --rows 10000 100000 1000000
+"""
+
+import csv
+import io
+import tempfile
+import time
+import uuid
+
+from django.core.management.base import BaseCommand
+from django.db import connection
+
+from volunteer.csv_import import VolunteerImporter
+from volunteer.models import Volunteer
+
+
+class Command(BaseCommand):
+    help = "Benchmarks the CSV import engine in rows per second."
+
+    def add_arguments(self, parser):
+        parser.add_argument('--rows', type=int, nargs='+', default=[10000, 100000, 1000000], help="File sizes to benchmark.")
+        parser.add_argument('--batch-size', type=int, default=None, help="Rows per batch (defaults to CSV_IMPORT_BATCH_SIZE).")
+        parser.add_argument('--on-conflict', choices=['skip', 'update'], default='skip', help="Conflict mode for the second pass.")
+        parser.add_argument('--keep', action='store_true', help="Keep the benchmark rows instead of deleting them.")
+
+    def handle(self, *args, **options):
+        self.stdout.write(f"Database: {connection.vendor} ({connection.settings_dict['NAME']})")
+        for rows in options['rows']:
+            prefix = f"bench-{uuid.uuid4().hex[:8]}-"
+            with tempfile.TemporaryFile(mode='w+b') as csv_file:
+                self._write_csv(csv_file, rows, prefix)
+                try:
+                    insert_seconds, report = self._import(csv_file, options['batch_size'], 'skip')
+                    self._print('insert', rows, insert_seconds, report)
+                    conflict_seconds, report = self._import(csv_file, options['batch_size'], options['on_conflict'])
+                    self._print(options['on_conflict'], rows, conflict_seconds, report)
+                finally:
+                    if not options['keep']:
+                        Volunteer.objects.filter(email__startswith=prefix).delete()
+
+    def _write_csv(self, csv_file, rows, prefix):
+        """Writes a synthetic CSV with unique emails, streaming it to disk."""
+        text = io.TextIOWrapper(csv_file, encoding='utf-8', newline='')
+        writer = csv.writer(text)
+        writer.writerow(['First Name', 'Last Name', 'Email', 'Phone Number', 'Preferred Volunteer Role', 'Availability'])
+        roles = ['Food Distribution', 'Teaching', 'Event Support', 'Fundraising']
+        for i in range(rows):
+            writer.writerow([f'First{i}', f'Last{i}', f'{prefix}{i}@example.com', f'555{i:07d}', roles[i % len(roles)], 'Weekends'])
+        text.flush()
+        # Detach so closing the wrapper later does not close the binary file.
+        text.detach()
+
+    def _import(self, csv_file, batch_size, on_conflict):
+        csv_file.seek(0)
+        importer = VolunteerImporter(status='pending', batch_size=batch_size, on_conflict=on_conflict)
+        started = time.perf_counter()
+        report = importer.run(csv_file)
+        return time.perf_counter() - started, report
+
+    def _print(self, label, rows, seconds, report):
+        self.stdout.write(
+            f"{rows:>9} rows  {label:<7} {seconds:8.2f}s  {rows / seconds:10.0f} rows/s  "
+            f"(created {report.rows_inserted}, updated {report.rows_updated}, "
+            f"skipped {report.rows_skipped}, failed {report.rows_failed})"
+        )
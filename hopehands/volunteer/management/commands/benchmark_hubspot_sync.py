@@ -0,0 +1,146 @@
+# hopehands/volunteer/management/commands/benchmark_hubspot_sync.py
+
+"""
+A management command that measures HubSpot sync throughput end to end,
+against the local HubSpot stand-in (`volunteer/fake_hubspot.py`) rather than
+HubSpot, so it needs no network and spends no API budget.
+
+It starts the fake server in-process, creates synthetic approved volunteers,
+and times the sync outbox worker through three phases: creating their
+contacts, updating them, and archiving them. Every call goes through the real
+SDK, connection pool, retries and rate governor; the governor uses its own
+state file, so the benchmark does not touch the shared HubSpot budget.
+
+    python manage.py benchmark_hubspot_sync --volunteers 5000 --latency 0.05 --rate-limit-rate 0.02
+
+Run it against a development database with no sync worker running: the
+worker drains every pending operation, including ones the benchmark did not
+queue. The benchmark rows are deleted afterwards.
+"""
+
+import os
+import tempfile
+import time
+import uuid
+
+from django.core.management.base import BaseCommand
+from django.db import transaction
+from django.test.utils import override_settings
+
+from volunteer.fake_hubspot import FakeHubspotServer
+from volunteer.hubspot_api import HubspotAPI
+from volunteer.hubspot_ratelimit import RateGovernor
+from volunteer.models import HubspotSyncOperation, Volunteer
+from volunteer.signals import volunteers_bulk_saved
+from volunteer.sync import enqueue_creates, process_outbox
+
+
+class Command(BaseCommand):
+    help = "Benchmarks HubSpot sync throughput against a local fake HubSpot server."
+
+    def add_arguments(self, parser):
+        parser.add_argument('--volunteers', type=int, default=2000, help="Synthetic volunteers to sync.")
+        parser.add_argument('--batch-size', type=int, default=500, help="Outbox operations processed per batch.")
+        parser.add_argument('--rate', type=float, default=100.0, help="Rate governor calls per second.")
+        parser.add_argument('--burst', type=int, default=100, help="Rate governor burst size.")
+        parser.add_argument('--latency', type=float, default=0.02, help="Fake server seconds per request.")
+        parser.add_argument('--jitter', type=float, default=0.0, help="Up to this many more random seconds per request.")
+        parser.add_argument('--error-rate', type=float, default=0.0, help="Fraction of requests failed with a 500.")
+        parser.add_argument('--rate-limit-rate', type=float, default=0.0, help="Fraction of requests failed with a 429.")
+        parser.add_argument('--retry-after', type=float, default=0.2, help="Retry-After seconds sent with each 429.")
+        parser.add_argument('--seed', type=int, default=None, help="Seed for repeatable fault injection.")
+
+    def handle(self, *args, **options):
+        server = FakeHubspotServer(
+            latency=options['latency'],
+            jitter=options['jitter'],
+            error_rate=options['error_rate'],
+            rate_limit_rate=options['rate_limit_rate'],
+            retry_after=options['retry_after'],
+            seed=options['seed'],
+        ).start()
+        handle, state_path = tempfile.mkstemp(prefix='fake-hubspot-governor-')
+        os.close(handle)
+        prefix = f"syncbench-{uuid.uuid4().hex[:8]}-"
+        hubspot_ids = []
+        try:
+            with override_settings(
+                HUBSPOT_API_BASE_URL=server.url,
+                HUBSPOT_PRIVATE_APP_TOKEN='fake-benchmark-token',
+                HUBSPOT_SYNC_COALESCE_SECONDS=0,
+            ):
+                hubspot_api = HubspotAPI()
+                hubspot_api.governor = RateGovernor(
+                    rate=options['rate'], burst=options['burst'], daily_limit=10 ** 9, state_path=state_path
+                )
+                self.stdout.write(
+                    f"Fake HubSpot at {server.url}, {options['volunteers']} volunteers, "
+                    f"latency {options['latency']}s, errors {options['error_rate']:.0%}, "
+                    f"429s {options['rate_limit_rate']:.0%}"
+                )
+                volunteers = self._create_volunteers(prefix, options['volunteers'])
+                benchmark_operations = HubspotSyncOperation.objects.filter(volunteer__email__startswith=prefix)
+                enqueue_creates(volunteers)
+                self._run_phase('create', hubspot_api, server, options, benchmark_operations.filter(operation='create'))
+
+                linked = list(Volunteer.objects.filter(email__startswith=prefix).exclude(hubspot_id=None))
+                hubspot_ids = [volunteer.hubspot_id for volunteer in linked]
+                HubspotSyncOperation.objects.bulk_create([
+                    HubspotSyncOperation(volunteer=volunteer, operation='update') for volunteer in linked
+                ])
+                self._run_phase('update', hubspot_api, server, options, benchmark_operations.filter(operation='update'))
+
+                HubspotSyncOperation.objects.bulk_create([
+                    HubspotSyncOperation(operation='archive', hubspot_id=hubspot_id) for hubspot_id in hubspot_ids
+                ])
+                self._run_phase('archive', hubspot_api, server, options, HubspotSyncOperation.objects.filter(
+                    operation='archive', hubspot_id__in=hubspot_ids
+                ))
+                self.stdout.write(f"Client pool: {hubspot_api.client.connection_stats()}")
+        finally:
+            server.stop()
+            os.remove(state_path)
+            HubspotSyncOperation.objects.filter(volunteer__email__startswith=prefix).delete()
+            HubspotSyncOperation.objects.filter(operation='archive', hubspot_id__in=hubspot_ids).delete()
+            Volunteer.objects.filter(email__startswith=prefix).delete()
+
+    def _create_volunteers(self, prefix, count):
+        """Inserts approved volunteers, keeping the maintained aggregates in step."""
+        with transaction.atomic():
+            Volunteer.objects.bulk_create(
+                [
+                    Volunteer(
+                        first_name=f'First{i}', last_name=f'Last{i}', email=f'{prefix}{i}@example.com',
+                        phone_number=f'555-{i:07d}', preferred_volunteer_role='Teaching',
+                        availability='Weekends', status='approved',
+                    )
+                    for i in range(count)
+                ],
+                batch_size=1000,
+            )
+            # Bulk inserts do not return primary keys on MySQL, so the rows are read back.
+            volunteers = list(Volunteer.objects.filter(email__startswith=prefix).order_by('pk'))
+            volunteers_bulk_saved.send(sender=Volunteer, volunteers=volunteers, created=True)
+        return volunteers
+
+    def _run_phase(self, name, hubspot_api, server, options, operations):
+        """Times the outbox worker until a phase's queued operations are drained."""
+        count = operations.count()
+        before = server.stats()
+        started = time.perf_counter()
+        while process_outbox(batch_size=options['batch_size'], hubspot_api=hubspot_api):
+            pass
+        seconds = time.perf_counter() - started
+        after = server.stats()
+
+        requests = sum(after['requests'].values()) - sum(before['requests'].values())
+        statuses = {
+            status: served - before['statuses'].get(status, 0)
+            for status, served in sorted(after['statuses'].items())
+            if served > before['statuses'].get(status, 0)
+        }
+        failed = operations.filter(status='failed').count()
+        self.stdout.write(
+            f"{name:<8} {count:>6} ops  {seconds:8.2f}s  {count / max(seconds, 1e-9):9.1f} ops/s  "
+            f"{requests:>5} requests {statuses}  {failed} failed"
+        )
@@ -0,0 +1,77 @@
+# hopehands/volunteer/management/commands/benchmark_pk_lookup.py
+
+"""
+A management command that shows how the CSV import's primary key lookup
+scales with the batch size.
+
+For each batch size it imports one batch of synthetic volunteers with a fake
+HubSpot client (so the ID-linking path runs without network calls), counting
+the SQL queries and timing the import. Both should stay flat per batch as the
+batch size grows. The benchmark rows are deleted afterwards.
+
+    python manage.py benchmark_pk_lookup --batch-sizes 100 1000 5000 20000
+"""
+
+import io
+import time
+import uuid
+
+from django.core.management.base import BaseCommand
+from django.db import connection
+from django.test.utils import CaptureQueriesContext
+
+from volunteer.csv_import import VolunteerImporter
+from volunteer.models import Volunteer
+
+
+class FakeContact:
+    def __init__(self, contact_id, email):
+        self.id = contact_id
+        self.properties = {'email': email}
+
+
+class FakeBatchResult:
+    def __init__(self, results):
+        self.results = results
+        self.errors = []
+
+    def ids_by_email(self):
+        return {contact.properties['email'].lower(): contact.id for contact in self.results}
+
+
+class FakeHubspotAPI:
+    """Answers batch upserts instantly, returning one contact per input."""
+    def batch_upsert_contacts(self, contacts_properties):
+        return FakeBatchResult([
+            FakeContact(f"fake-{uuid.uuid4().hex}", props['email']) for props in contacts_properties
+        ])
+
+
+class Command(BaseCommand):
+    help = "Benchmarks query count and time of the import's primary key lookup per batch size."
+
+    def add_arguments(self, parser):
+        parser.add_argument('--batch-sizes', type=int, nargs='+', default=[100, 1000, 5000, 20000], help="Batch sizes to benchmark.")
+
+    def handle(self, *args, **options):
+        self.stdout.write(
+            f"Database: {connection.vendor}, returns bulk insert keys: "
+            f"{connection.features.can_return_rows_from_bulk_insert}"
+        )
+        for batch_size in options['batch_sizes']:
+            prefix = f"pkbench-{uuid.uuid4().hex[:8]}-"
+            lines = ['email,first_name,last_name'] + [f'{prefix}{i}@example.com,First{i},Last{i}' for i in range(batch_size)]
+            data = ('\n'.join(lines) + '\n').encode('utf-8')
+            importer = VolunteerImporter(status='approved', hubspot_api=FakeHubspotAPI(), batch_size=batch_size)
+            try:
+                with CaptureQueriesContext(connection) as queries:
+                    started = time.perf_counter()
+                    report = importer.run(io.BytesIO(data))
+                    seconds = time.perf_counter() - started
+                self.stdout.write(
+                    f"batch {batch_size:>6}: {len(queries):>3} queries  {seconds:7.3f}s  "
+                    f"({report.rows_inserted} inserted, {report.rows_synced} linked)"
+                )
+            finally:
+                Volunteer.objects.filter(email__startswith=prefix).delete()
+
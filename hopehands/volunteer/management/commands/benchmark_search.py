@@ -0,0 +1,45 @@
+# hopehands/volunteer/management/commands/benchmark_search.py
+
+"""
+A management command that measures volunteer search latency against the
+configured database and its current data.
+
+Each query is run a number of times and the median and worst latencies are
+reported in milliseconds. Load a large data set first, e.g. with
+`benchmark_csv_import --keep`, to see how search scales:
+
+    python manage.py benchmark_search --queries jane "food dist" example.com
+"""
+
+import statistics
+import time
+
+from django.core.management.base import BaseCommand
+from django.db import connection
+
+from volunteer.search import search_volunteers, uses_fulltext
+
+
+class Command(BaseCommand):
+    help = "Benchmarks volunteer search latency in milliseconds."
+
+    def add_arguments(self, parser):
+        parser.add_argument('--queries', nargs='+', default=['first1', 'last12 first12', 'teach', 'example'], help="Search queries to time.")
+        parser.add_argument('--repeat', type=int, default=20, help="Runs per query.")
+        parser.add_argument('--limit', type=int, default=50, help="Results per search.")
+
+    def handle(self, *args, **options):
+        self.stdout.write(
+            f"Database: {connection.vendor}, "
+            f"{'FULLTEXT index' if uses_fulltext() else 'search token table'}"
+        )
+        for query in options['queries']:
+            timings = []
+            for _ in range(options['repeat']):
+                started = time.perf_counter()
+                results = search_volunteers(query, limit=options['limit'])
+                timings.append((time.perf_counter() - started) * 1000)
+            self.stdout.write(
+                f"{query!r:<24} {len(results):>4} results  "
+                f"median {statistics.median(timings):7.2f}ms  max {max(timings):7.2f}ms"
+            )
@@ -0,0 +1,45 @@
+# hopehands/volunteer/management/commands/process_hubspot_webhooks.py
+
+"""
+A management command that applies the contact changes HubSpot has pushed to
+the webhook endpoint (see `volunteer/webhooks.py`).
+
+Run it once to apply everything that is pending:
+
+    python manage.py process_hubspot_webhooks
+
+or keep it running as a background worker that polls for new events:
+
+    python manage.py process_hubspot_webhooks --loop --interval 2
+"""
+
+import time
+
+from django.core.management.base import BaseCommand
+
+from volunteer.webhooks import process_events
+
+
+class Command(BaseCommand):
+    help = "Applies pending HubSpot webhook events to volunteers."
+
+    def add_arguments(self, parser):
+        parser.add_argument('--batch-size', type=int, default=1000, help="Events picked up per batch.")
+        parser.add_argument('--loop', action='store_true', help="Keep polling for new events.")
+        parser.add_argument('--interval', type=float, default=2.0, help="Seconds to wait when no events are pending.")
+
+    def handle(self, *args, **options):
+        events = updated = unlinked = 0
+        while True:
+            report = process_events(batch_size=options['batch_size'])
+            events += report.events
+            updated += report.volunteers_updated
+            unlinked += report.volunteers_unlinked
+            if report.events:
+                continue
+            if not options['loop']:
+                break
+            time.sleep(options['interval'])
+        self.stdout.write(self.style.SUCCESS(
+            f"Applied {events} HubSpot webhook event(s): {updated} volunteer(s) updated, {unlinked} unlinked."
+        ))
@@ -0,0 +1,44 @@
+# hopehands/volunteer/management/commands/pull_hubspot_changes.py
+
+"""
+A management command that applies changes made in HubSpot to the local
+volunteers, reading only the contacts modified since the last pull (see
+`volunteer/pull.py`).
+
+Run it once, e.g. from cron every minute:
+
+    python manage.py pull_hubspot_changes
+
+or keep it running as a background worker:
+
+    python manage.py pull_hubspot_changes --loop --interval 60
+"""
+
+import time
+
+from django.core.management.base import BaseCommand
+
+from volunteer.hubspot_api import HubspotAPI
+from volunteer.pull import pull_changes
+
+
+class Command(BaseCommand):
+    help = "Pulls HubSpot contact changes made since the last pull into the local volunteers."
+
+    def add_arguments(self, parser):
+        parser.add_argument('--max-pages', type=int, default=None, help="Pages of 100 contacts read per pull.")
+        parser.add_argument('--loop', action='store_true', help="Keep pulling at an interval.")
+        parser.add_argument('--interval', type=float, default=60.0, help="Seconds between pulls.")
+
+    def handle(self, *args, **options):
+        hubspot_api = HubspotAPI()
+        while True:
+            report = pull_changes(hubspot_api, max_pages=options['max_pages'])
+            self.stdout.write(self.style.SUCCESS(
+                f"Read {report.contacts_seen} changed contact(s), updated {report.volunteers_updated} "
+                f"volunteer(s), skipped {report.skipped_pending} with unsynced local edits. "
+                f"Watermark: {report.watermark}"
+            ))
+            if not options['loop']:
+                break
+            time.sleep(options['interval'])
@@ -0,0 +1,29 @@
+# hopehands/volunteer/management/commands/rebuild_analytics_cube.py
+
+"""
+A management command that recomputes the tables behind the analytics API, the
+VolunteerCubeCell cube and the VolunteerActivityBucket time series, from the
+Volunteer table.
+
+Both are maintained incrementally, so this is only needed after writes
+that bypassed the model signals, such as raw SQL or `QuerySet.update()`:
+
+    python manage.py rebuild_analytics_cube
+"""
+
+from django.core.management.base import BaseCommand
+
+from volunteer.aggregates import rebuild_activity, rebuild_cube
+from volunteer.models import VolunteerActivityBucket, VolunteerCubeCell
+
+
+class Command(BaseCommand):
+    help = "Recomputes the volunteer analytics cube and activity time series."
+
+    def handle(self, *args, **options):
+        rebuild_cube()
+        rebuild_activity()
+        self.stdout.write(self.style.SUCCESS(
+            f"Rebuilt {VolunteerCubeCell.objects.count()} cube cell(s) and "
+            f"{VolunteerActivityBucket.objects.count()} activity bucket(s)."
+        ))
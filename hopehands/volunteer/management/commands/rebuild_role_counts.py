@@ -0,0 +1,23 @@
+# hopehands/volunteer/management/commands/rebuild_role_counts.py
+
+"""
+A management command that recomputes the VolunteerRoleCount table from the
+Volunteer table.
+
+The counts are maintained incrementally, so this is only needed after writes
+that bypassed the model signals, such as raw SQL or `QuerySet.update()`:
+
+    python manage.py rebuild_role_counts
+"""
+
+from django.core.management.base import BaseCommand
+
+from volunteer.aggregates import rebuild_role_counts, role_counts
+
+
+class Command(BaseCommand):
+    help = "Recomputes the per-role volunteer counts."
+
+    def handle(self, *args, **options):
+        rebuild_role_counts()
+        self.stdout.write(self.style.SUCCESS(f"Rebuilt counts for {len(role_counts())} role(s)."))
@@ -0,0 +1,43 @@
+# hopehands/volunteer/management/commands/rebuild_search_index.py
+
+"""
+A management command that rebuilds the volunteer search token table.
+
+The token table is only used on databases without FULLTEXT indexes and is
+kept up to date by signal receivers, so this is needed only to backfill
+volunteers created before the table existed, or after writes that bypassed
+the signals (e.g. raw SQL):
+
+    python manage.py rebuild_search_index
+"""
+
+from django.core.management.base import BaseCommand
+from django.db import transaction
+
+from volunteer.models import Volunteer
+from volunteer import search
+
+
+class Command(BaseCommand):
+    help = "Rebuilds the volunteer search token table."
+
+    def add_arguments(self, parser):
+        parser.add_argument('--batch-size', type=int, default=1000, help="Volunteers indexed per transaction.")
+
+    def handle(self, *args, **options):
+        if search.uses_fulltext():
+            self.stdout.write("This database uses its FULLTEXT index; there is nothing to rebuild.")
+            return
+
+        indexed = 0
+        last_pk = 0
+        while True:
+            # Walk the table by primary key so each batch is an index range scan.
+            batch = list(Volunteer.objects.filter(pk__gt=last_pk).order_by('pk')[:options['batch_size']])
+            if not batch:
+                break
+            with transaction.atomic():
+                search.index_volunteers(batch)
+            indexed += len(batch)
+            last_pk = batch[-1].pk
+        self.stdout.write(self.style.SUCCESS(f"Indexed {indexed} volunteer(s)."))
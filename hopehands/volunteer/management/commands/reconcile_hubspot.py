@@ -0,0 +1,49 @@
+# hopehands/volunteer/management/commands/reconcile_hubspot.py
+
+"""
+A management command that compares every HubSpot contact with the local
+volunteers and queues the creates, updates and archives needed to bring
+HubSpot back in line (see `volunteer/reconcile.py`). The queued operations are
+sent by the `sync_hubspot` worker.
+
+    python manage.py reconcile_hubspot --dry-run
+    python manage.py reconcile_hubspot
+    python manage.py reconcile_hubspot --archive-orphans
+"""
+
+from django.core.management.base import BaseCommand, CommandError
+
+from volunteer.hubspot_api import HubspotAPI
+from volunteer.reconcile import ReconcileError, Reconciler
+
+
+class Command(BaseCommand):
+    help = "Finds drift between local volunteers and HubSpot contacts and queues the fixes."
+
+    def add_arguments(self, parser):
+        parser.add_argument('--dry-run', action='store_true', help="Only report the differences.")
+        parser.add_argument(
+            '--archive-orphans', action='store_true',
+            help="Also archive HubSpot contacts that no local volunteer is linked to."
+        )
+        parser.add_argument('--page-size', type=int, default=1000, help="Volunteers read per query.")
+
+    def handle(self, *args, **options):
+        reconciler = Reconciler(
+            HubspotAPI(),
+            dry_run=options['dry_run'],
+            archive_orphans=options['archive_orphans'],
+            page_size=options['page_size'],
+        )
+        try:
+            report = reconciler.run()
+        except ReconcileError as e:
+            raise CommandError(str(e))
+
+        for name, value in report.as_dict().items():
+            self.stdout.write(f"{name.replace('_', ' ')}: {value}")
+        queued = report.updates + report.relinks + report.creates + report.archives
+        if options['dry_run']:
+            self.stdout.write(self.style.WARNING(f"Dry run: {queued} operation(s) would be queued."))
+        else:
+            self.stdout.write(self.style.SUCCESS(f"Queued {queued} operation(s)."))
@@ -0,0 +1,50 @@
+# hopehands/volunteer/management/commands/run_fake_hubspot.py
+
+"""
+A management command that serves the local HubSpot stand-in
+(`volunteer/fake_hubspot.py`) until interrupted.
+
+    python manage.py run_fake_hubspot --port 8765 --latency 0.05 --rate-limit-rate 0.02
+
+Then run the app or a worker with HUBSPOT_API_BASE_URL=http://127.0.0.1:8765.
+Contacts are kept in memory and lost when the server stops.
+"""
+
+from django.core.management.base import BaseCommand
+
+from volunteer.fake_hubspot import FakeHubspotServer
+
+
+class Command(BaseCommand):
+    help = "Serves a fake HubSpot contacts API for local load and integration testing."
+
+    def add_arguments(self, parser):
+        parser.add_argument('--host', default='127.0.0.1', help="Interface to listen on.")
+        parser.add_argument('--port', type=int, default=8765, help="Port to listen on.")
+        parser.add_argument('--latency', type=float, default=0.0, help="Seconds added to every request.")
+        parser.add_argument('--jitter', type=float, default=0.0, help="Up to this many more random seconds per request.")
+        parser.add_argument('--error-rate', type=float, default=0.0, help="Fraction of requests answered with a 500.")
+        parser.add_argument('--rate-limit-rate', type=float, default=0.0, help="Fraction of requests answered with a 429.")
+        parser.add_argument('--retry-after', type=float, default=1.0, help="Retry-After seconds sent with each 429.")
+        parser.add_argument('--seed', type=int, default=None, help="Seed for repeatable fault injection.")
+        parser.add_argument('--verbose', action='store_true', help="Log every request.")
+
+    def handle(self, *args, **options):
+        server = FakeHubspotServer(
+            (options['host'], options['port']),
+            latency=options['latency'],
+            jitter=options['jitter'],
+            error_rate=options['error_rate'],
+            rate_limit_rate=options['rate_limit_rate'],
+            retry_after=options['retry_after'],
+            seed=options['seed'],
+            verbose=options['verbose'],
+        )
+        self.stdout.write(self.style.SUCCESS(f"Fake HubSpot listening on {server.url} (Ctrl+C to stop)"))
+        try:
+            server.serve_forever()
+        except KeyboardInterrupt:
+            pass
+        finally:
+            server.server_close()
+            self.stdout.write(f"Served: {server.stats()}")
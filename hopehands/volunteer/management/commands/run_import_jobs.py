@@ -0,0 +1,31 @@
+# hopehands/volunteer/management/commands/run_import_jobs.py
+
+"""
+A management command that processes queued CSV import jobs.
+
+Import jobs normally run on the web process's thread pool right after upload.
+Jobs that were queued but never picked up, for example because the server
+restarted, can be processed with:
+
+    python manage.py run_import_jobs
+
+It first fails the jobs left running by a worker that died, see
+`jobs.fail_stale_jobs`, so it is worth running periodically.
+"""
+
+from django.core.management.base import BaseCommand
+
+from volunteer.jobs import fail_stale_jobs, run_import_job
+from volunteer.models import ImportJob
+
+
+class Command(BaseCommand):
+    help = "Processes queued CSV import jobs."
+
+    def handle(self, *args, **options):
+        stale = fail_stale_jobs()
+        if stale:
+            self.stdout.write(self.style.WARNING(f"Failed {stale} abandoned import job(s)."))
+        job_ids = list(ImportJob.objects.filter(status='queued').order_by('id').values_list('id', flat=True))
+        processed = sum(1 for job_id in job_ids if run_import_job(job_id))
+        self.stdout.write(self.style.SUCCESS(f"Processed {processed} import job(s)."))
@@ -0,0 +1,42 @@
+# hopehands/volunteer/management/commands/sync_hubspot.py
+
+"""
+A management command that drains the HubSpot sync outbox.
+
+Run it once to process everything that is pending:
+
+    python manage.py sync_hubspot
+
+or keep it running as a background worker that polls for new operations:
+
+    python manage.py sync_hubspot --loop --interval 2
+"""
+
+import time
+
+from django.core.management.base import BaseCommand
+
+from volunteer.hubspot_api import HubspotAPI
+from volunteer.sync import process_outbox
+
+
+class Command(BaseCommand):
+    help = "Processes pending HubSpot sync operations from the outbox."
+
+    def add_arguments(self, parser):
+        parser.add_argument('--batch-size', type=int, default=100, help="Operations processed per batch.")
+        parser.add_argument('--loop', action='store_true', help="Keep polling for new operations.")
+        parser.add_argument('--interval', type=float, default=2.0, help="Seconds to wait when the outbox is empty.")
+
+    def handle(self, *args, **options):
+        hubspot_api = HubspotAPI()
+        total = 0
+        while True:
+            processed = process_outbox(batch_size=options['batch_size'], hubspot_api=hubspot_api)
+            total += processed
+            if processed:
+                continue
+            if not options['loop']:
+                break
+            time.sleep(options['interval'])
+        self.stdout.write(self.style.SUCCESS(f"Processed {total} HubSpot sync operation(s)."))
@@ -0,0 +1,97 @@
+# Generated by Django 5.2.5 on 2026-10-17 09:12
+
+import django.db.models.deletion
+from django.db import migrations, models
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ("volunteer", "0003_alter_volunteer_availability_alter_volunteer_email_and_more"),
+    ]
+
+    operations = [
+        migrations.CreateModel(
+            name="HubspotSyncOperation",
+            fields=[
+                (
+                    "id",
+                    models.BigAutoField(
+                        auto_created=True,
+                        primary_key=True,
+                        serialize=False,
+                        verbose_name="ID",
+                    ),
+                ),
+                (
+                    "operation",
+                    models.CharField(
+                        choices=[
+                            ("create", "Create"),
+                            ("update", "Update"),
+                            ("archive", "Archive"),
+                        ],
+                        help_text="The HubSpot operation to perform.",
+                        max_length=10,
+                    ),
+                ),
+                (
+                    "hubspot_id",
+                    models.CharField(
+                        blank=True,
+                        help_text="The HubSpot Contact ID to archive, kept because the volunteer may already be deleted.",
+                        max_length=100,
+                        null=True,
+                    ),
+                ),
+                (
+                    "status",
+                    models.CharField(
+                        choices=[
+                            ("pending", "Pending"),
+                            ("done", "Done"),
+                            ("failed", "Failed"),
+                        ],
+                        default="pending",
+                        help_text="The processing status.",
+                        max_length=10,
+                    ),
+                ),
+                (
+                    "attempts",
+                    models.PositiveIntegerField(
+                        default=0,
+                        help_text="How many times the worker has tried this operation.",
+                    ),
+                ),
+                (
+                    "last_error",
+                    models.TextField(
+                        blank=True,
+                        default="",
+                        help_text="The error from the last failed attempt.",
+                    ),
+                ),
+                ("created_at", models.DateTimeField(auto_now_add=True)),
+                ("processed_at", models.DateTimeField(blank=True, null=True)),
+                (
+                    "volunteer",
+                    models.ForeignKey(
+                        blank=True,
+                        help_text="The volunteer to sync. Cleared if the volunteer is deleted.",
+                        null=True,
+                        on_delete=django.db.models.deletion.SET_NULL,
+                        related_name="sync_operations",
+                        to="volunteer.volunteer",
+                    ),
+                ),
+            ],
+            options={
+                "indexes": [
+                    models.Index(
+                        fields=["status", "id"], name="sync_op_status_id_idx"
+                    )
+                ],
+            },
+        ),
+    ]
@@ -0,0 +1,35 @@
+# Generated by Django 5.2.5 on 2026-10-17 11:20
+
+from django.db import migrations, models
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ("volunteer", "0005_importjob"),
+    ]
+
+    operations = [
+        migrations.AddIndex(
+            model_name="volunteer",
+            index=models.Index(
+                fields=["status", "id"], name="volunteer_status_id_idx"
+            ),
+        ),
+        migrations.AddIndex(
+            model_name="volunteer",
+            index=models.Index(
+                fields=["preferred_volunteer_role"], name="volunteer_role_idx"
+            ),
+        ),
+        migrations.AddIndex(
+            model_name="volunteer",
+            index=models.Index(
+                fields=["last_name", "first_name"], name="volunteer_name_idx"
+            ),
+        ),
+        migrations.AddIndex(
+            model_name="volunteer",
+            index=models.Index(fields=["first_name"], name="volunteer_first_name_idx"),
+        ),
+    ]
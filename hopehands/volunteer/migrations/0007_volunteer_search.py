@@ -0,0 +1,80 @@
+# Generated by Django 5.2.5 on 2026-10-17 12:02
+
+import django.db.models.deletion
+from django.db import migrations, models
+
+# Django cannot declare FULLTEXT indexes, so it is created with SQL on MySQL.
+# Other databases use the VolunteerSearchToken table instead.
+FULLTEXT_INDEX_SQL = (
+    "CREATE FULLTEXT INDEX volunteer_fulltext_idx ON volunteer_volunteer "
+    "(first_name, last_name, email, phone_number, preferred_volunteer_role)"
+)
+
+
+def create_fulltext_index(apps, schema_editor):
+    if schema_editor.connection.vendor == 'mysql':
+        schema_editor.execute(FULLTEXT_INDEX_SQL)
+
+
+def drop_fulltext_index(apps, schema_editor):
+    if schema_editor.connection.vendor == 'mysql':
+        schema_editor.execute("DROP INDEX volunteer_fulltext_idx ON volunteer_volunteer")
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ("volunteer", "0006_volunteer_indexes"),
+    ]
+
+    operations = [
+        migrations.CreateModel(
+            name="VolunteerSearchToken",
+            fields=[
+                (
+                    "id",
+                    models.BigAutoField(
+                        auto_created=True,
+                        primary_key=True,
+                        serialize=False,
+                        verbose_name="ID",
+                    ),
+                ),
+                (
+                    "token",
+                    models.CharField(
+                        help_text="A lowercased word prefix.", max_length=20
+                    ),
+                ),
+                (
+                    "is_word",
+                    models.BooleanField(
+                        default=False,
+                        help_text="Whether the token is a whole word, which ranks above a prefix match.",
+                    ),
+                ),
+                (
+                    "volunteer",
+                    models.ForeignKey(
+                        on_delete=django.db.models.deletion.CASCADE,
+                        related_name="search_tokens",
+                        to="volunteer.volunteer",
+                    ),
+                ),
+            ],
+            options={
+                "indexes": [
+                    models.Index(
+                        fields=["token", "volunteer"], name="search_token_idx"
+                    )
+                ],
+                "constraints": [
+                    models.UniqueConstraint(
+                        fields=("volunteer", "token"),
+                        name="unique_volunteer_search_token",
+                    )
+                ],
+            },
+        ),
+        migrations.RunPython(create_fulltext_index, drop_fulltext_index),
+    ]
@@ -0,0 +1,50 @@
+# Generated by Django 5.2.5 on 2026-10-17 13:10
+
+from django.db import migrations, models
+from django.db.models import Count
+
+
+def backfill_role_counts(apps, schema_editor):
+    Volunteer = apps.get_model("volunteer", "Volunteer")
+    VolunteerRoleCount = apps.get_model("volunteer", "VolunteerRoleCount")
+    counts = Volunteer.objects.values("preferred_volunteer_role").annotate(count=Count("id")).order_by()
+    VolunteerRoleCount.objects.bulk_create([
+        VolunteerRoleCount(preferred_volunteer_role=row["preferred_volunteer_role"], count=row["count"])
+        for row in counts
+    ])
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ("volunteer", "0007_volunteer_search"),
+    ]
+
+    operations = [
+        migrations.CreateModel(
+            name="VolunteerRoleCount",
+            fields=[
+                (
+                    "id",
+                    models.BigAutoField(
+                        auto_created=True,
+                        primary_key=True,
+                        serialize=False,
+                        verbose_name="ID",
+                    ),
+                ),
+                (
+                    "preferred_volunteer_role",
+                    models.CharField(max_length=100, unique=True),
+                ),
+                (
+                    "count",
+                    models.IntegerField(
+                        default=0,
+                        help_text="The number of volunteers with this role.",
+                    ),
+                ),
+            ],
+        ),
+        migrations.RunPython(backfill_role_counts, migrations.RunPython.noop),
+    ]
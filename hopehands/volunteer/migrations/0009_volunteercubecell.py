@@ -0,0 +1,71 @@
+# Generated by Django 5.2.5 on 2026-10-17 14:05
+
+from collections import Counter
+
+from django.db import migrations, models
+from django.db.models import Count
+
+CUBE_FIELDS = ("preferred_volunteer_role", "availability", "status", "how_did_you_hear_about_us")
+
+
+def backfill_cube(apps, schema_editor):
+    Volunteer = apps.get_model("volunteer", "Volunteer")
+    VolunteerCubeCell = apps.get_model("volunteer", "VolunteerCubeCell")
+    cells = Counter()
+    for row in Volunteer.objects.values(*CUBE_FIELDS).annotate(count=Count("id")).order_by():
+        cells[tuple(row[field] or "" for field in CUBE_FIELDS)] += row["count"]
+    VolunteerCubeCell.objects.bulk_create(
+        [VolunteerCubeCell(count=count, **dict(zip(CUBE_FIELDS, cell))) for cell, count in cells.items()],
+        batch_size=1000,
+    )
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ("volunteer", "0008_volunteerrolecount"),
+    ]
+
+    operations = [
+        migrations.CreateModel(
+            name="VolunteerCubeCell",
+            fields=[
+                (
+                    "id",
+                    models.BigAutoField(
+                        auto_created=True,
+                        primary_key=True,
+                        serialize=False,
+                        verbose_name="ID",
+                    ),
+                ),
+                ("preferred_volunteer_role", models.CharField(max_length=100)),
+                ("availability", models.CharField(max_length=100)),
+                ("status", models.CharField(max_length=10)),
+                (
+                    "how_did_you_hear_about_us",
+                    models.CharField(blank=True, default="", max_length=200),
+                ),
+                (
+                    "count",
+                    models.IntegerField(
+                        default=0, help_text="The number of volunteers in this cell."
+                    ),
+                ),
+            ],
+            options={
+                "constraints": [
+                    models.UniqueConstraint(
+                        fields=(
+                            "preferred_volunteer_role",
+                            "availability",
+                            "status",
+                            "how_did_you_hear_about_us",
+                        ),
+                        name="unique_volunteer_cube_cell",
+                    )
+                ],
+            },
+        ),
+        migrations.RunPython(backfill_cube, migrations.RunPython.noop),
+    ]
@@ -0,0 +1,112 @@
+# Generated by Django 5.2.5 on 2026-10-17 15:20
+
+import django.utils.timezone
+from django.db import migrations, models
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ("volunteer", "0009_volunteercubecell"),
+    ]
+
+    operations = [
+        migrations.AddField(
+            model_name="volunteer",
+            name="created_at",
+            field=models.DateTimeField(
+                auto_now_add=True,
+                default=django.utils.timezone.now,
+                help_text="When the volunteer signed up.",
+            ),
+            preserve_default=False,
+        ),
+        migrations.AddField(
+            model_name="volunteer",
+            name="updated_at",
+            field=models.DateTimeField(
+                auto_now=True, help_text="When the volunteer was last changed."
+            ),
+        ),
+        migrations.AddField(
+            model_name="volunteer",
+            name="approved_at",
+            field=models.DateTimeField(
+                blank=True, help_text="When the volunteer was first approved.", null=True
+            ),
+        ),
+        migrations.AddField(
+            model_name="volunteer",
+            name="synced_at",
+            field=models.DateTimeField(
+                blank=True,
+                help_text="When the volunteer was first linked to a HubSpot contact.",
+                null=True,
+            ),
+        ),
+        migrations.AddIndex(
+            model_name="volunteer",
+            index=models.Index(fields=["created_at"], name="volunteer_created_at_idx"),
+        ),
+        migrations.AddIndex(
+            model_name="volunteer",
+            index=models.Index(fields=["updated_at"], name="volunteer_updated_at_idx"),
+        ),
+        migrations.AddIndex(
+            model_name="volunteer",
+            index=models.Index(fields=["approved_at"], name="volunteer_approved_at_idx"),
+        ),
+        migrations.AddIndex(
+            model_name="volunteer",
+            index=models.Index(fields=["synced_at"], name="volunteer_synced_at_idx"),
+        ),
+        migrations.CreateModel(
+            name="VolunteerActivityBucket",
+            fields=[
+                (
+                    "id",
+                    models.BigAutoField(
+                        auto_created=True,
+                        primary_key=True,
+                        serialize=False,
+                        verbose_name="ID",
+                    ),
+                ),
+                (
+                    "metric",
+                    models.CharField(
+                        choices=[
+                            ("signup", "Signup"),
+                            ("approved", "Approved"),
+                            ("synced", "Synced to HubSpot"),
+                        ],
+                        max_length=10,
+                    ),
+                ),
+                (
+                    "bucket_start",
+                    models.DateTimeField(help_text="The start of the hour, in UTC."),
+                ),
+                (
+                    "count",
+                    models.IntegerField(
+                        default=0, help_text="The number of events in this hour."
+                    ),
+                ),
+                (
+                    "lag_seconds",
+                    models.FloatField(
+                        default=0,
+                        help_text="The total approval-to-sync lag of synced events.",
+                    ),
+                ),
+            ],
+            options={
+                "constraints": [
+                    models.UniqueConstraint(
+                        fields=("metric", "bucket_start"), name="unique_activity_bucket"
+                    )
+                ],
+            },
+        ),
+    ]
@@ -0,0 +1,17 @@
+# Generated by Django 5.2.5 on 2026-10-17 16:10
+
+from django.db import migrations, models
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ("volunteer", "0010_volunteer_timestamps_volunteeractivitybucket"),
+    ]
+
+    operations = [
+        migrations.AddIndex(
+            model_name="volunteer",
+            index=models.Index(fields=["hubspot_id"], name="volunteer_hubspot_id_idx"),
+        ),
+    ]
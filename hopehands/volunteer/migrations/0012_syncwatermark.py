@@ -0,0 +1,44 @@
+# Generated by Django 5.2.5 on 2026-10-17 16:45
+
+from django.db import migrations, models
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ("volunteer", "0011_volunteer_hubspot_id_idx"),
+    ]
+
+    operations = [
+        migrations.CreateModel(
+            name="SyncWatermark",
+            fields=[
+                (
+                    "id",
+                    models.BigAutoField(
+                        auto_created=True,
+                        primary_key=True,
+                        serialize=False,
+                        verbose_name="ID",
+                    ),
+                ),
+                (
+                    "name",
+                    models.CharField(
+                        help_text="The sync this watermark belongs to.",
+                        max_length=50,
+                        unique=True,
+                    ),
+                ),
+                (
+                    "value",
+                    models.DateTimeField(
+                        blank=True,
+                        help_text="The latest modification time applied so far. Empty before the first run.",
+                        null=True,
+                    ),
+                ),
+                ("updated_at", models.DateTimeField(auto_now=True)),
+            ],
+        ),
+    ]
@@ -0,0 +1,90 @@
+# Generated by Django 5.2.5 on 2026-10-17 17:30
+
+from django.db import migrations, models
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ("volunteer", "0012_syncwatermark"),
+    ]
+
+    operations = [
+        migrations.CreateModel(
+            name="HubspotWebhookEvent",
+            fields=[
+                (
+                    "id",
+                    models.BigAutoField(
+                        auto_created=True,
+                        primary_key=True,
+                        serialize=False,
+                        verbose_name="ID",
+                    ),
+                ),
+                (
+                    "event_id",
+                    models.BigIntegerField(
+                        help_text="HubSpot's ID of the event, for tracing. Not guaranteed to be unique."
+                    ),
+                ),
+                (
+                    "subscription_type",
+                    models.CharField(
+                        choices=[
+                            ("contact.propertyChange", "Property change"),
+                            ("contact.deletion", "Deletion"),
+                        ],
+                        max_length=30,
+                    ),
+                ),
+                (
+                    "object_id",
+                    models.CharField(
+                        help_text="The HubSpot Contact ID the event is about.",
+                        max_length=100,
+                    ),
+                ),
+                (
+                    "property_name",
+                    models.CharField(
+                        blank=True,
+                        default="",
+                        help_text="The changed property.",
+                        max_length=100,
+                    ),
+                ),
+                (
+                    "property_value",
+                    models.TextField(
+                        blank=True, help_text="The property's new value.", null=True
+                    ),
+                ),
+                (
+                    "occurred_at",
+                    models.DateTimeField(help_text="When the change happened in HubSpot."),
+                ),
+                ("received_at", models.DateTimeField(auto_now_add=True)),
+                (
+                    "status",
+                    models.CharField(
+                        choices=[("pending", "Pending"), ("done", "Done")],
+                        default="pending",
+                        help_text="The processing status.",
+                        max_length=10,
+                    ),
+                ),
+                ("processed_at", models.DateTimeField(blank=True, null=True)),
+            ],
+            options={
+                "indexes": [
+                    models.Index(
+                        fields=["status", "id"], name="webhook_event_status_id_idx"
+                    ),
+                    models.Index(
+                        fields=["object_id", "status"], name="webhook_event_object_idx"
+                    ),
+                ],
+            },
+        ),
+    ]
@@ -0,0 +1,37 @@
+# Generated by Django 5.2.5 on 2026-10-17 18:10
+
+from django.db import migrations, models
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ("volunteer", "0013_hubspotwebhookevent"),
+    ]
+
+    operations = [
+        migrations.AddField(
+            model_name="hubspotsyncoperation",
+            name="claimed_at",
+            field=models.DateTimeField(
+                blank=True,
+                help_text="When a worker claimed the operation. Claims older than HUBSPOT_SYNC_LEASE_SECONDS are taken over.",
+                null=True,
+            ),
+        ),
+        migrations.AlterField(
+            model_name="hubspotsyncoperation",
+            name="status",
+            field=models.CharField(
+                choices=[
+                    ("pending", "Pending"),
+                    ("claimed", "Claimed"),
+                    ("done", "Done"),
+                    ("failed", "Failed"),
+                ],
+                default="pending",
+                help_text="The processing status.",
+                max_length=10,
+            ),
+        ),
+    ]
@@ -0,0 +1,22 @@
+# Generated by Django 5.2.5 on 2026-10-17 19:02
+
+from django.db import migrations, models
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ("volunteer", "0014_hubspotsyncoperation_claimed_at"),
+    ]
+
+    operations = [
+        migrations.AddField(
+            model_name="importjob",
+            name="progress_at",
+            field=models.DateTimeField(
+                blank=True,
+                help_text="When the running job last reported progress. Jobs silent for IMPORT_JOB_STALE_SECONDS are failed.",
+                null=True,
+            ),
+        ),
+    ]
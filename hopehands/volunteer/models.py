@@ -9,9 +9,18 @@ place and automatically derive things from it.
 
 In this application, the Volunteer model is used to temporarily store volunteer
 data before it is sent to HubSpot. It also serves as the basis for the
-`VolunteerForm`.
+`VolunteerForm`. The HubspotSyncOperation model is the outbox of pending
+HubSpot sync operations, drained by the `sync_hubspot` management command, and
+the ImportJob model tracks CSV uploads processed in the background.
+VolunteerSearchToken holds the search index used on databases without MySQL's
+FULLTEXT indexes (see `search.py`). VolunteerRoleCount, VolunteerCubeCell and
+VolunteerActivityBucket keep volunteer counts for the visualization and the
+analytics API (see `aggregates.py`). SyncWatermark records how far incremental
+pulls of HubSpot changes have read (see `pull.py`), and HubspotWebhookEvent
+queues the contact changes HubSpot pushes to us (see `webhooks.py`).
 """
 
+from django.conf import settings
 from django.db import models
 from django.db.models import Q
 
@@ -51,6 +60,18 @@ class Volunteer(models.Model):
         null=True,
         help_text="Stores the HubSpot Contact ID after a volunteer is approved and synced."
     )
+    created_at = models.DateTimeField(auto_now_add=True, help_text="When the volunteer signed up.")
+    updated_at = models.DateTimeField(auto_now=True, help_text="When the volunteer was last changed.")
+    approved_at = models.DateTimeField(
+        blank=True,
+        null=True,
+        help_text="When the volunteer was first approved."
+    )
+    synced_at = models.DateTimeField(
+        blank=True,
+        null=True,
+        help_text="When the volunteer was first linked to a HubSpot contact."
+    )
 
     class Meta:
         constraints = [
@@ -60,7 +81,285 @@ class Volunteer(models.Model):
                 name='unique_hubspot_id_when_not_null'
             )
         ]
+        indexes = [
+            # Filtering by status while listing newest first (the admin's status
+            # filter and the API) reads the index in order, with no filesort.
+            models.Index(fields=['status', 'id'], name='volunteer_status_id_idx'),
+            # Serves the admin's role filter and lets the visualization group by
+            # role with an index-only scan.
+            models.Index(fields=['preferred_volunteer_role'], name='volunteer_role_idx'),
+            # Name prefix searches (`istartswith`) on either name can use these
+            # ranges; `icontains` could not use any index.
+            models.Index(fields=['last_name', 'first_name'], name='volunteer_name_idx'),
+            models.Index(fields=['first_name'], name='volunteer_first_name_idx'),
+            # Time-range queries and lag reports on the lifecycle timestamps.
+            models.Index(fields=['created_at'], name='volunteer_created_at_idx'),
+            models.Index(fields=['updated_at'], name='volunteer_updated_at_idx'),
+            models.Index(fields=['approved_at'], name='volunteer_approved_at_idx'),
+            models.Index(fields=['synced_at'], name='volunteer_synced_at_idx'),
+            # Reconciliation walks volunteers in HubSpot ID order.
+            models.Index(fields=['hubspot_id'], name='volunteer_hubspot_id_idx'),
+        ]
 
     def __str__(self):
         """Returns the full name of the volunteer for display purposes."""
         return f"{self.first_name} {self.last_name}"
+
+
+class HubspotSyncOperation(models.Model):
+    """
+    An outbox entry describing one pending HubSpot sync operation.
+
+    Operations are written in the same database transaction as the Volunteer
+    change that caused them, so a committed change always has its sync queued
+    and a rolled-back change never does. The `sync_hubspot` worker drains the
+    outbox in batches; see `volunteer/sync.py`.
+    """
+    OPERATION_CHOICES = (
+        ('create', 'Create'),
+        ('update', 'Update'),
+        ('archive', 'Archive'),
+    )
+    STATUS_CHOICES = (
+        ('pending', 'Pending'),
+        ('claimed', 'Claimed'),
+        ('done', 'Done'),
+        ('failed', 'Failed'),
+    )
+
+    volunteer = models.ForeignKey(
+        Volunteer,
+        on_delete=models.SET_NULL,
+        blank=True,
+        null=True,
+        related_name='sync_operations',
+        help_text="The volunteer to sync. Cleared if the volunteer is deleted."
+    )
+    operation = models.CharField(max_length=10, choices=OPERATION_CHOICES, help_text="The HubSpot operation to perform.")
+    hubspot_id = models.CharField(
+        max_length=100,
+        blank=True,
+        null=True,
+        help_text="The HubSpot Contact ID to archive, kept because the volunteer may already be deleted."
+    )
+    status = models.CharField(max_length=10, choices=STATUS_CHOICES, default='pending', help_text="The processing status.")
+    attempts = models.PositiveIntegerField(default=0, help_text="How many times the worker has tried this operation.")
+    last_error = models.TextField(blank=True, default='', help_text="The error from the last failed attempt.")
+    created_at = models.DateTimeField(auto_now_add=True)
+    claimed_at = models.DateTimeField(
+        blank=True,
+        null=True,
+        help_text="When a worker claimed the operation. Claims older than HUBSPOT_SYNC_LEASE_SECONDS are taken over."
+    )
+    processed_at = models.DateTimeField(blank=True, null=True)
+
+    class Meta:
+        indexes = [
+            # The worker scans pending operations in insertion order.
+            models.Index(fields=['status', 'id'], name='sync_op_status_id_idx'),
+        ]
+
+    def __str__(self):
+        """Returns a short description of the operation for display purposes."""
+        return f"{self.operation} #{self.pk} ({self.status})"
+
+
+class ImportJob(models.Model):
+    """
+    A CSV upload processed in the background.
+
+    The upload is stored with the job and imported by a background executor
+    (see `volunteer/jobs.py`), which updates the counters after every batch so
+    clients can poll the job's progress. The stored file is deleted once the
+    job has finished. A running job that stops reporting progress, e.g.
+    because its process died, is failed by `jobs.fail_stale_jobs`.
+    """
+    STATUS_CHOICES = (
+        ('queued', 'Queued'),
+        ('running', 'Running'),
+        ('completed', 'Completed'),
+        ('failed', 'Failed'),
+    )
+
+    upload = models.FileField(upload_to='imports/', blank=True, help_text="The uploaded CSV file.")
+    status = models.CharField(max_length=10, choices=STATUS_CHOICES, default='queued', help_text="The processing status.")
+    volunteer_status = models.CharField(
+        max_length=10,
+        choices=Volunteer.STATUS_CHOICES,
+        default='approved',
+        help_text="The status given to the volunteers the job creates."
+    )
+    sync_to_hubspot = models.BooleanField(default=True, help_text="Whether new volunteers are synced to HubSpot.")
+    on_conflict = models.CharField(max_length=10, default='skip', help_text="'skip' or 'update' for existing emails.")
+    rows_parsed = models.PositiveIntegerField(default=0)
+    rows_inserted = models.PositiveIntegerField(default=0)
+    rows_updated = models.PositiveIntegerField(default=0)
+    rows_skipped = models.PositiveIntegerField(default=0)
+    rows_synced = models.PositiveIntegerField(default=0)
+    rows_failed = models.PositiveIntegerField(default=0)
+    errors = models.JSONField(default=list, blank=True, help_text="The first error messages of the import.")
+    created_by = models.ForeignKey(settings.AUTH_USER_MODEL, on_delete=models.SET_NULL, blank=True, null=True)
+    created_at = models.DateTimeField(auto_now_add=True)
+    started_at = models.DateTimeField(blank=True, null=True)
+    progress_at = models.DateTimeField(
+        blank=True,
+        null=True,
+        help_text="When the running job last reported progress. Jobs silent for IMPORT_JOB_STALE_SECONDS are failed."
+    )
+    finished_at = models.DateTimeField(blank=True, null=True)
+
+    def __str__(self):
+        """Returns a short description of the job for display purposes."""
+        return f"Import #{self.pk} ({self.status})"
+
+
+class VolunteerSearchToken(models.Model):
+    """
+    One searchable token of a volunteer, used by the search fallback for
+    databases without FULLTEXT indexes.
+
+    Tokens are the prefixes of every word in the volunteer's searchable fields,
+    so a search for "jan" finds "Jane" with an index lookup on `token` rather
+    than a `LIKE '%jan%'` scan. The rows are kept up to date by the receivers
+    in `signals.py`.
+    """
+    volunteer = models.ForeignKey(Volunteer, on_delete=models.CASCADE, related_name='search_tokens')
+    token = models.CharField(max_length=20, help_text="A lowercased word prefix.")
+    is_word = models.BooleanField(
+        default=False,
+        help_text="Whether the token is a whole word, which ranks above a prefix match."
+    )
+
+    class Meta:
+        constraints = [
+            models.UniqueConstraint(fields=['volunteer', 'token'], name='unique_volunteer_search_token')
+        ]
+        indexes = [
+            models.Index(fields=['token', 'volunteer'], name='search_token_idx'),
+        ]
+
+    def __str__(self):
+        return self.token
+
+
+class VolunteerRoleCount(models.Model):
+    """
+    The number of volunteers with each preferred role, maintained incrementally
+    by the receivers in `signals.py` so the visualization never has to count
+    the Volunteer table.
+    """
+    preferred_volunteer_role = models.CharField(max_length=100, unique=True)
+    count = models.IntegerField(default=0, help_text="The number of volunteers with this role.")
+
+    def __str__(self):
+        return f"{self.preferred_volunteer_role}: {self.count}"
+
+
+class VolunteerCubeCell(models.Model):
+    """
+    The number of volunteers with one combination of role, availability,
+    status and answer to "how did you hear about us", maintained incrementally
+    like VolunteerRoleCount. The analytics API sums these cells to count
+    volunteers by any combination of the four attributes.
+    """
+    preferred_volunteer_role = models.CharField(max_length=100)
+    availability = models.CharField(max_length=100)
+    status = models.CharField(max_length=10)
+    # '' stands for no answer, because a unique key would not match NULLs.
+    how_did_you_hear_about_us = models.CharField(max_length=200, blank=True, default='')
+    count = models.IntegerField(default=0, help_text="The number of volunteers in this cell.")
+
+    class Meta:
+        constraints = [
+            models.UniqueConstraint(
+                fields=['preferred_volunteer_role', 'availability', 'status', 'how_did_you_hear_about_us'],
+                name='unique_volunteer_cube_cell'
+            )
+        ]
+
+    def __str__(self):
+        return f"{self.preferred_volunteer_role} / {self.availability} / {self.status} / {self.how_did_you_hear_about_us}: {self.count}"
+
+
+class VolunteerActivityBucket(models.Model):
+    """
+    The number of volunteer lifecycle events of one kind in one hour, kept for
+    the time-series API. Day and week series are sums of hourly buckets.
+
+    For `synced` events, `lag_seconds` totals the time from approval to sync,
+    so the average sync lag of a bucket is `lag_seconds / count`.
+    """
+    METRIC_CHOICES = (
+        ('signup', 'Signup'),
+        ('approved', 'Approved'),
+        ('synced', 'Synced to HubSpot'),
+    )
+
+    metric = models.CharField(max_length=10, choices=METRIC_CHOICES)
+    bucket_start = models.DateTimeField(help_text="The start of the hour, in UTC.")
+    count = models.IntegerField(default=0, help_text="The number of events in this hour.")
+    lag_seconds = models.FloatField(default=0, help_text="The total approval-to-sync lag of synced events.")
+
+    class Meta:
+        constraints = [
+            models.UniqueConstraint(fields=['metric', 'bucket_start'], name='unique_activity_bucket')
+        ]
+
+    def __str__(self):
+        return f"{self.metric} @ {self.bucket_start:%Y-%m-%d %H:00}: {self.count}"
+
+
+class SyncWatermark(models.Model):
+    """
+    How far an incremental sync has read its source, so the next run can
+    continue from there instead of reading everything again.
+    """
+    name = models.CharField(max_length=50, unique=True, help_text="The sync this watermark belongs to.")
+    value = models.DateTimeField(
+        blank=True,
+        null=True,
+        help_text="The latest modification time applied so far. Empty before the first run."
+    )
+    updated_at = models.DateTimeField(auto_now=True)
+
+    def __str__(self):
+        return f"{self.name}: {self.value}"
+
+
+class HubspotWebhookEvent(models.Model):
+    """
+    A contact change or deletion HubSpot sent to the webhook endpoint.
+
+    Events are only stored when they arrive, so the endpoint can answer
+    HubSpot quickly. The `process_hubspot_webhooks` worker applies them to
+    volunteers in batches; see `volunteer/webhooks.py`.
+    """
+    SUBSCRIPTION_CHOICES = (
+        ('contact.propertyChange', 'Property change'),
+        ('contact.deletion', 'Deletion'),
+    )
+    STATUS_CHOICES = (
+        ('pending', 'Pending'),
+        ('done', 'Done'),
+    )
+
+    event_id = models.BigIntegerField(help_text="HubSpot's ID of the event, for tracing. Not guaranteed to be unique.")
+    subscription_type = models.CharField(max_length=30, choices=SUBSCRIPTION_CHOICES)
+    object_id = models.CharField(max_length=100, help_text="The HubSpot Contact ID the event is about.")
+    property_name = models.CharField(max_length=100, blank=True, default='', help_text="The changed property.")
+    property_value = models.TextField(blank=True, null=True, help_text="The property's new value.")
+    occurred_at = models.DateTimeField(help_text="When the change happened in HubSpot.")
+    received_at = models.DateTimeField(auto_now_add=True)
+    status = models.CharField(max_length=10, choices=STATUS_CHOICES, default='pending', help_text="The processing status.")
+    processed_at = models.DateTimeField(blank=True, null=True)
+
+    class Meta:
+        indexes = [
+            # The worker scans pending events in arrival order.
+            models.Index(fields=['status', 'id'], name='webhook_event_status_id_idx'),
+            # Pending events of the contacts in a batch are folded into it.
+            models.Index(fields=['object_id', 'status'], name='webhook_event_object_idx'),
+        ]
+
+    def __str__(self):
+        return f"{self.subscription_type} {self.object_id} #{self.pk} ({self.status})"
@@ -0,0 +1,34 @@
+# hopehands/volunteer/pagination.py
+
+"""
+This file defines the pagination used by the volunteer API.
+
+The volunteer list uses cursor (keyset) pagination on the primary key rather
+than page numbers. Each page is fetched with `WHERE id < <last id seen>
+ORDER BY id DESC LIMIT n`, which is an index range scan on the primary key, so
+fetching page 1,000 costs the same as fetching page 1, and no COUNT(*) of the
+table is ever needed. Because the cursor remembers a position rather than an
+offset, volunteers who sign up while an admin is paging do not shift rows
+between pages, so nothing is shown twice or skipped.
+"""
+
+from django.conf import settings
+from rest_framework.pagination import CursorPagination
+
+
+class VolunteerCursorPagination(CursorPagination):
+    """
+    Pages volunteers newest first, keyed on their `id`.
+
+    The page size defaults to `VOLUNTEER_API_PAGE_SIZE` and can be chosen per
+    request with `?page_size=`, up to `VOLUNTEER_API_MAX_PAGE_SIZE`.
+    """
+    # `id` is unique, so DRF can use it as a pure keyset without offsets.
+    ordering = '-id'
+    page_size_query_param = 'page_size'
+
+    def get_page_size(self, request):
+        # Read the settings per request so they can be overridden in tests.
+        self.page_size = settings.VOLUNTEER_API_PAGE_SIZE
+        self.max_page_size = settings.VOLUNTEER_API_MAX_PAGE_SIZE
+        return super().get_page_size(request)
@@ -0,0 +1,173 @@
+# hopehands/volunteer/pull.py
+
+"""
+This file pulls changes made in HubSpot back into the local volunteers.
+
+Rather than listing every contact, `pull_changes` searches HubSpot for the
+contacts modified since the `hubspot-contacts` SyncWatermark, oldest change
+first, and applies them page by page. Each page's volunteer updates and the
+advanced watermark are saved in one transaction, so an interrupted pull
+resumes where it stopped. When nothing changed, a pull costs one search call,
+so it can run every minute.
+
+Only volunteers linked to a contact are updated, and only the fields in
+PULLED_FIELDS; emails are never changed by a pull, since they identify
+volunteers locally. Volunteers with a pending create or update in the sync
+outbox are skipped: their local edit has not reached HubSpot yet and wins.
+Our own pushes also show up as HubSpot changes, but then nothing differs and
+nothing is written.
+"""
+
+import datetime
+import logging
+
+from django.conf import settings
+from django.db import transaction
+from django.db.models import Exists, OuterRef
+from django.utils import timezone
+from django.utils.dateparse import parse_datetime
+
+from .models import HubspotSyncOperation, SyncWatermark, Volunteer
+from .signals import volunteers_bulk_saved
+from .sync import UNSENT_STATUSES
+
+# Standard logger for this module
+logger = logging.getLogger(__name__)
+
+WATERMARK_NAME = 'hubspot-contacts'
+
+# HubSpot contact properties and the volunteer fields they are pulled into.
+PULLED_FIELDS = {
+    'firstname': 'first_name',
+    'lastname': 'last_name',
+    'phone': 'phone_number',
+    'preferred_volunteer_role': 'preferred_volunteer_role',
+    'availability': 'availability',
+    'how_did_you_hear_about_us': 'how_did_you_hear_about_us',
+}
+
+# HubSpot returns at most this many results for one search, however it is paged.
+HUBSPOT_SEARCH_MAX_RESULTS = 10000
+
+EPOCH = datetime.datetime(1970, 1, 1, tzinfo=datetime.timezone.utc)
+
+
+class PullReport:
+    """Counts what a pull read and changed."""
+    def __init__(self):
+        self.pages = 0
+        self.contacts_seen = 0
+        self.volunteers_updated = 0
+        self.skipped_pending = 0
+        self.watermark = None
+
+
+def modified_at(contact):
+    """Returns when HubSpot last modified a contact."""
+    value = (contact.properties or {}).get('lastmodifieddate')
+    moment = parse_datetime(value) if value else None
+    return moment or getattr(contact, 'updated_at', None)
+
+
+def pulled_value(field_name, value):
+    """Fits a HubSpot value to a volunteer field: cleared values become '' or NULL."""
+    field = Volunteer._meta.get_field(field_name)
+    if value in (None, ''):
+        return None if field.null else ''
+    return str(value)[:field.max_length]
+
+
+def pending_local_change():
+    """Returns a subquery that is true for volunteers with a local edit not yet pushed to HubSpot."""
+    return Exists(HubspotSyncOperation.objects.filter(
+        volunteer=OuterRef('pk'), status__in=UNSENT_STATUSES, operation__in=['create', 'update']
+    ))
+
+
+def apply_contacts(contacts, report):
+    """
+    Copies the pulled properties of contacts onto their linked volunteers with
+    one bulk update.
+
+    Args:
+        contacts (list): HubSpot contacts with PULLED_FIELDS properties.
+        report (PullReport): The report to count outcomes in.
+    """
+    by_id = {str(contact.id): contact for contact in contacts}
+    volunteers = Volunteer.objects.filter(hubspot_id__in=list(by_id)).annotate(pending=pending_local_change())
+
+    now = timezone.now()
+    changed = []
+    changed_fields = set()
+    for volunteer in volunteers:
+        if volunteer.pending:
+            report.skipped_pending += 1
+            continue
+        properties = by_id[volunteer.hubspot_id].properties or {}
+        fields = set()
+        for prop, field_name in PULLED_FIELDS.items():
+            if prop not in properties:
+                continue
+            value = pulled_value(field_name, properties[prop])
+            if getattr(volunteer, field_name) != value:
+                setattr(volunteer, field_name, value)
+                fields.add(field_name)
+        if fields:
+            volunteer.updated_at = now
+            changed.append(volunteer)
+            changed_fields |= fields
+
+    if changed:
+        update_fields = sorted(changed_fields) + ['updated_at']
+        Volunteer.objects.bulk_update(changed, update_fields)
+        volunteers_bulk_saved.send(sender=Volunteer, volunteers=changed, created=False, update_fields=update_fields)
+    report.volunteers_updated += len(changed)
+
+
+def pull_changes(hubspot_api, max_pages=None):
+    """
+    Applies the HubSpot contact changes made since the last pull.
+
+    Args:
+        hubspot_api (HubspotAPI): The API wrapper to use.
+        max_pages (int, optional): The most pages of 100 contacts to read.
+                                   Defaults to HUBSPOT_PULL_MAX_PAGES; the
+                                   next pull continues where this one stopped.
+
+    Returns:
+        PullReport: What was read and changed, and the new watermark.
+    """
+    max_pages = max_pages or settings.HUBSPOT_PULL_MAX_PAGES
+    watermark, _ = SyncWatermark.objects.get_or_create(name=WATERMARK_NAME)
+    report = PullReport()
+    overlap = datetime.timedelta(seconds=settings.HUBSPOT_PULL_OVERLAP_SECONDS)
+    since = max(EPOCH, (watermark.value or EPOCH) - overlap)
+    after = None
+
+    while report.pages < max_pages:
+        page = hubspot_api.search_modified_contacts(
+            since, properties=list(PULLED_FIELDS) + ['lastmodifieddate'], after=after
+        )
+        report.pages += 1
+        report.contacts_seen += len(page.results)
+        newest = max(filter(None, map(modified_at, page.results)), default=None)
+        with transaction.atomic():
+            apply_contacts(page.results, report)
+            if newest and (watermark.value is None or newest > watermark.value):
+                watermark.value = newest
+                watermark.save(update_fields=['value', 'updated_at'])
+
+        next_page = page.paging.next if page.paging else None
+        if not next_page or not next_page.after:
+            break
+        after = next_page.after
+        if str(after).isdigit() and int(after) + len(page.results) > HUBSPOT_SEARCH_MAX_RESULTS:
+            # Start a new search from the latest change seen rather than
+            # paging into HubSpot's search limit.
+            since, after = watermark.value, None
+
+    report.watermark = watermark.value
+    logger.info(
+        f"Pulled {report.contacts_seen} HubSpot change(s), updated {report.volunteers_updated} volunteer(s)"
+    )
+    return report
@@ -0,0 +1,289 @@
+# hopehands/volunteer/reconcile.py
+
+"""
+This file finds and repairs drift between local volunteers and HubSpot contacts.
+
+`Reconciler.run` pages through every HubSpot contact with the `after` cursor
+and merges them against the linked local volunteers in one pass. HubSpot lists
+contacts in ascending ID order, and the volunteers are read in the same order
+(shorter IDs first, then by value, which is numeric order for HubSpot's
+numeric IDs) in keyset-paginated pages, so only one page of each side is ever
+held in memory and the work is linear in the number of contacts.
+
+For each pair, the synced properties (see `sync.volunteer_properties`) are
+hashed on both sides and compared. Only differences become work, which is
+queued in the sync outbox in batches (see `sync.py`), where the worker sends
+it with HubSpot's batch endpoints:
+
+- A linked volunteer whose properties differ gets an `update`; the local
+  record is the source of truth.
+- A linked volunteer whose contact no longer exists is unlinked and gets a
+  `create`, as does an approved volunteer that was never linked.
+- A contact no local volunteer points at, but whose email belongs to an
+  approved volunteer that is not linked, e.g. because the response of its
+  create was lost, is relinked: the volunteer gets the contact's ID and an
+  `update`, rather than a `create` that would upsert onto the same contact.
+- Any other contact no local volunteer points at is an orphan. Orphans are
+  only reported, unless archiving them is asked for, since HubSpot may hold
+  contacts that never came from HopeHands.
+"""
+
+import hashlib
+import json
+import logging
+
+from django.db import transaction
+from django.db.models import Exists, OuterRef, Q
+from django.db.models.functions import Length
+from django.utils import timezone
+
+from .contact_cache import forget_contact_ids, remember_contact_ids
+from .models import HubspotSyncOperation, Volunteer
+from .signals import volunteers_bulk_saved
+from .sync import UNSENT_STATUSES, volunteer_properties
+
+# Standard logger for this module
+logger = logging.getLogger(__name__)
+
+# The contact properties compared between the two sides, as set by
+# `volunteer_properties` (the lifecycle stage is only set on create).
+SYNCED_PROPERTIES = (
+    'email', 'firstname', 'lastname', 'phone', 'preferred_volunteer_role', 'availability',
+    'how_did_you_hear_about_us',
+)
+
+
+class ReconcileError(Exception):
+    """Raised when HubSpot does not list contacts in ID order, so no merge is possible."""
+
+
+def property_hash(properties):
+    """
+    Hashes the synced properties of a contact or volunteer. Missing and empty
+    values hash alike, and emails are compared case-insensitively.
+    """
+    values = [str(properties.get(name) or '').strip() for name in SYNCED_PROPERTIES]
+    values[SYNCED_PROPERTIES.index('email')] = values[SYNCED_PROPERTIES.index('email')].lower()
+    return hashlib.sha256(json.dumps(values).encode('utf-8')).hexdigest()
+
+
+def merge_key(hubspot_id):
+    """Returns the sort key both sides are merged in: ID length, then value."""
+    hubspot_id = str(hubspot_id)
+    return (len(hubspot_id), hubspot_id)
+
+
+class ReconcileReport:
+    """Counts what a reconciliation found and queued."""
+    def __init__(self):
+        self.contacts_scanned = 0
+        self.volunteers_scanned = 0
+        self.in_sync = 0
+        self.updates = 0
+        self.creates = 0
+        self.relinks = 0
+        self.orphans = 0
+        self.archives = 0
+
+    def as_dict(self):
+        return dict(vars(self))
+
+
+class Reconciler:
+    """
+    Compares HubSpot contacts with local volunteers and queues the fixes.
+
+    Args:
+        hubspot_api (HubspotAPI): The API wrapper used to list contacts.
+        dry_run (bool): Only count the differences, without queueing anything.
+        archive_orphans (bool): Queue the archiving of contacts no local
+                                volunteer points at.
+        page_size (int): Volunteers read, and operations queued, at a time.
+    """
+    def __init__(self, hubspot_api, dry_run=False, archive_orphans=False, page_size=1000):
+        self.hubspot_api = hubspot_api
+        self.dry_run = dry_run
+        self.archive_orphans = archive_orphans
+        self.page_size = page_size
+        self.report = ReconcileReport()
+        self._operations = []
+        self._unlink = []
+        self._relink = []
+        self._relinked = set()
+        self._unmatched = []
+
+    def run(self):
+        """
+        Runs a full reconciliation.
+
+        Returns:
+            ReconcileReport: What was found and queued.
+        """
+        contacts = self.hubspot_api.iter_contacts(properties=list(SYNCED_PROPERTIES))
+        for contact, volunteer in self._merge(self._ordered_contacts(contacts), self._linked_volunteers()):
+            if volunteer is None:
+                self._unmatched.append(contact)
+                if len(self._unmatched) >= self.page_size:
+                    self._match_contacts()
+            elif contact is None:
+                self.report.creates += 1
+                self._unlink.append(volunteer)
+                self._queue(HubspotSyncOperation(volunteer=volunteer, operation='create'))
+            elif property_hash(contact.properties) != property_hash(volunteer_properties(volunteer)):
+                self.report.updates += 1
+                self._queue(HubspotSyncOperation(volunteer=volunteer, operation='update'))
+            else:
+                self.report.in_sync += 1
+        self._match_contacts()
+
+        for volunteer in self._unlinked_volunteers():
+            if volunteer.pk in self._relinked:
+                continue
+            self.report.creates += 1
+            self._queue(HubspotSyncOperation(volunteer=volunteer, operation='create'))
+        self._flush()
+        return self.report
+
+    def _ordered_contacts(self, contacts):
+        """Passes contacts through, counting them and checking they come in merge order."""
+        previous = None
+        for contact in contacts:
+            key = merge_key(contact.id)
+            if previous is not None and key <= previous:
+                raise ReconcileError(f"HubSpot listed contact {contact.id} out of order")
+            previous = key
+            self.report.contacts_scanned += 1
+            yield contact
+
+    def _linked_volunteers(self):
+        """
+        Yields the volunteers that have a HubSpot ID, in merge order.
+
+        Each ID length is read in its own keyset-paginated pass over the
+        `hubspot_id` index, so every page is an index range scan.
+        """
+        linked = Volunteer.objects.filter(hubspot_id__isnull=False).exclude(hubspot_id='')
+        lengths = sorted(
+            linked.annotate(id_length=Length('hubspot_id')).values_list('id_length', flat=True).distinct()
+        )
+        for length in lengths:
+            last = None
+            while True:
+                page = linked.annotate(id_length=Length('hubspot_id')).filter(id_length=length)
+                if last is not None:
+                    page = page.filter(hubspot_id__gt=last)
+                page = list(page.order_by('hubspot_id')[:self.page_size])
+                # Read before yielding: unlinking a vanished contact clears the ID.
+                last = page[-1].hubspot_id if page else None
+                for volunteer in page:
+                    self.report.volunteers_scanned += 1
+                    yield volunteer
+                if len(page) < self.page_size:
+                    break
+
+    def _unlinked_volunteers(self):
+        """Yields the approved volunteers without a HubSpot ID and without an unsent create."""
+        pending_create = HubspotSyncOperation.objects.filter(
+            volunteer=OuterRef('pk'), operation='create', status__in=UNSENT_STATUSES
+        )
+        unlinked = (
+            Volunteer.objects
+            .filter(Q(hubspot_id__isnull=True) | Q(hubspot_id=''), status='approved')
+            .filter(~Exists(pending_create))
+        )
+        last = 0
+        while True:
+            page = list(unlinked.filter(pk__gt=last).order_by('pk')[:self.page_size])
+            yield from page
+            if len(page) < self.page_size:
+                break
+            last = page[-1].pk
+
+    def _match_contacts(self):
+        """
+        Relinks the buffered contacts no volunteer points at to the approved,
+        unlinked volunteers with the same email, and handles the rest as
+        orphans. Each buffer is matched with one query.
+        """
+        contacts, self._unmatched = self._unmatched, []
+        emails = {str(contact.properties.get('email') or '').strip().lower() for contact in contacts} - {''}
+        unlinked = {}
+        if emails:
+            candidates = Volunteer.objects.filter(
+                Q(hubspot_id__isnull=True) | Q(hubspot_id=''), status='approved', email__in=emails
+            )
+            unlinked = {volunteer.email.lower(): volunteer for volunteer in candidates}
+        for contact in contacts:
+            volunteer = unlinked.get(str(contact.properties.get('email') or '').strip().lower())
+            if volunteer is not None and volunteer.pk not in self._relinked:
+                self.report.relinks += 1
+                volunteer.hubspot_id = str(contact.id)
+                self._relink.append(volunteer)
+                self._relinked.add(volunteer.pk)
+                self._queue(HubspotSyncOperation(volunteer=volunteer, operation='update'))
+                continue
+            self.report.orphans += 1
+            if self.archive_orphans:
+                self.report.archives += 1
+                self._queue(HubspotSyncOperation(operation='archive', hubspot_id=str(contact.id)))
+
+    @staticmethod
+    def _merge(contacts, volunteers):
+        """
+        Merges two iterators sorted by `merge_key`, yielding (contact, volunteer)
+        pairs. Either side is None when the other has no counterpart.
+        """
+        contact = next(contacts, None)
+        volunteer = next(volunteers, None)
+        while contact is not None or volunteer is not None:
+            if volunteer is None or (contact is not None and merge_key(contact.id) < merge_key(volunteer.hubspot_id)):
+                yield contact, None
+                contact = next(contacts, None)
+            elif contact is None or merge_key(volunteer.hubspot_id) < merge_key(contact.id):
+                yield None, volunteer
+                volunteer = next(volunteers, None)
+            else:
+                yield contact, volunteer
+                contact = next(contacts, None)
+                volunteer = next(volunteers, None)
+
+    def _queue(self, operation):
+        self._operations.append(operation)
+        if len(self._operations) >= self.page_size:
+            self._flush()
+
+    def _flush(self):
+        """
+        Writes the queued operations, unlinks vanished contacts and relinks
+        matched ones, in one transaction.
+        """
+        if not self.dry_run and self._operations:
+            now = timezone.now()
+            with transaction.atomic():
+                if self._unlink:
+                    # The outbox skips creates for volunteers that still have an ID.
+                    changes = {'hubspot_id': None, 'updated_at': now}
+                    Volunteer.objects.filter(pk__in=[volunteer.pk for volunteer in self._unlink]).update(**changes)
+                    for volunteer in self._unlink:
+                        for field, value in changes.items():
+                            setattr(volunteer, field, value)
+                    volunteers_bulk_saved.send(
+                        sender=Volunteer, volunteers=self._unlink, created=False, update_fields=list(changes)
+                    )
+                    emails = [volunteer.email for volunteer in self._unlink]
+                    transaction.on_commit(lambda: forget_contact_ids(emails))
+                if self._relink:
+                    for volunteer in self._relink:
+                        volunteer.updated_at = now
+                    Volunteer.objects.bulk_update(self._relink, ['hubspot_id', 'updated_at'])
+                    volunteers_bulk_saved.send(
+                        sender=Volunteer, volunteers=self._relink, created=False,
+                        update_fields=['hubspot_id', 'updated_at'],
+                    )
+                    ids_by_email = {volunteer.email.lower(): volunteer.hubspot_id for volunteer in self._relink}
+                    transaction.on_commit(lambda: remember_contact_ids(ids_by_email))
+                HubspotSyncOperation.objects.bulk_create(self._operations)
+            logger.info(f"Queued {len(self._operations)} reconciliation operation(s)")
+        self._operations = []
+        self._unlink = []
+        self._relink = []
@@ -0,0 +1,182 @@
+# hopehands/volunteer/search.py
+
+"""
+This file implements volunteer search over name, email, phone and role.
+
+On MySQL, the search runs against the `volunteer_fulltext_idx` FULLTEXT index
+created by migration 0007. Each search term becomes a required prefix term in
+a boolean-mode query (`+jan* +doe*`), and results are ranked by MySQL's
+relevance score. InnoDB does not index words shorter than
+`innodb_ft_min_token_size` (3 by default) or its default stopwords, and a
+required term it does not index matches nothing, so such words are left out
+of the FULLTEXT query: stopwords are dropped, and short words narrow its
+results to volunteers whose name or email starts with them.
+
+Other databases have no FULLTEXT index, so the search falls back to the
+`VolunteerSearchToken` table, which stores the prefixes of every word of every
+volunteer. A search term is then an equality lookup on the indexed `token`
+column, and volunteers matching all terms are ranked by how many terms matched
+a whole word rather than only a prefix.
+
+A query with no term either path can look up, e.g. a short surname such as
+"Li" on MySQL or a single letter anywhere, falls back to an `istartswith`
+match on the first name, last name or email, which the name indexes and the
+unique email index serve.
+
+Either way, a search is an index lookup instead of the `LIKE '%q%'` table scan
+that `icontains` produces.
+"""
+
+import re
+
+from django.db import connection
+from django.db.models import Count, Q
+from django.db.models.expressions import RawSQL
+
+from .models import Volunteer, VolunteerSearchToken
+
+# The fields covered by the FULLTEXT index and the token table.
+SEARCH_FIELDS = ('first_name', 'last_name', 'email', 'phone_number', 'preferred_volunteer_role')
+
+# Shorter terms match too many volunteers to be useful, and longer tokens are
+# truncated to the length of VolunteerSearchToken.token.
+MIN_TERM_LENGTH = 2
+MAX_TOKEN_LENGTH = 20
+# Shorter words are not in InnoDB's FULLTEXT index (innodb_ft_min_token_size).
+FULLTEXT_MIN_TERM_LENGTH = 3
+# InnoDB's default FULLTEXT stopwords (INFORMATION_SCHEMA.INNODB_FT_DEFAULT_STOPWORD),
+# which are not indexed either. "com" makes this matter for email searches.
+STOPWORDS = frozenset((
+    'a', 'about', 'an', 'are', 'as', 'at', 'be', 'by', 'com', 'de', 'en', 'for', 'from', 'how', 'i', 'in',
+    'is', 'it', 'la', 'of', 'on', 'or', 'that', 'the', 'this', 'to', 'was', 'what', 'when', 'where', 'who',
+    'will', 'with', 'und', 'www',
+))
+# Later terms of very long queries are ignored.
+MAX_TERMS = 8
+
+WORD_RE = re.compile(r'\w+')
+
+
+def uses_fulltext():
+    """Returns whether searches run against MySQL's FULLTEXT index."""
+    return connection.vendor == 'mysql'
+
+
+def search_terms(query):
+    """
+    Splits a search query into lowercased words, dropping short and repeated ones.
+
+    Words are split on punctuation the same way MySQL's FULLTEXT parser does,
+    so "jane.doe@example.com" becomes "jane", "doe", "example" and "com".
+    """
+    terms = []
+    for word in WORD_RE.findall(query.lower()):
+        if len(word) >= MIN_TERM_LENGTH and word not in terms:
+            terms.append(word)
+    return terms[:MAX_TERMS]
+
+
+def volunteer_tokens(volunteer):
+    """
+    Returns the search tokens of a volunteer.
+
+    Returns:
+        dict: Maps each word prefix to whether it is also a whole word.
+    """
+    tokens = {}
+    for field in SEARCH_FIELDS:
+        for word in WORD_RE.findall((getattr(volunteer, field) or '').lower()):
+            word = word[:MAX_TOKEN_LENGTH]
+            for length in range(MIN_TERM_LENGTH, len(word) + 1):
+                prefix = word[:length]
+                tokens[prefix] = tokens.get(prefix, False) or length == len(word)
+    return tokens
+
+
+def index_volunteers(volunteers):
+    """
+    Rebuilds the search tokens of the given saved volunteers. Does nothing on
+    MySQL, where the FULLTEXT index is maintained by the database.
+    """
+    if uses_fulltext():
+        return
+    volunteers = [v for v in volunteers if v.pk]
+    if not volunteers:
+        return
+    VolunteerSearchToken.objects.filter(volunteer__in=[v.pk for v in volunteers]).delete()
+    VolunteerSearchToken.objects.bulk_create([
+        VolunteerSearchToken(volunteer_id=volunteer.pk, token=token, is_word=is_word)
+        for volunteer in volunteers
+        for token, is_word in volunteer_tokens(volunteer).items()
+    ])
+
+
+def search_volunteers(query, limit=50):
+    """
+    Finds the volunteers matching every term of a search query, best match first.
+
+    Args:
+        query (str): The search text, e.g. "jane doe" or "teach".
+        limit (int): The maximum number of volunteers to return.
+
+    Returns:
+        list: The matching Volunteer instances, ranked by relevance.
+    """
+    query = query.strip()
+    if not query:
+        return []
+    terms = search_terms(query)
+    if uses_fulltext():
+        indexed = [term for term in terms if len(term) >= FULLTEXT_MIN_TERM_LENGTH and term not in STOPWORDS]
+        if indexed:
+            short = [term for term in terms if len(term) < FULLTEXT_MIN_TERM_LENGTH]
+            return _fulltext_search(indexed, limit, prefixes=short)
+    elif terms:
+        return _token_search(terms, limit)
+    return _prefix_search(terms or [query], limit)
+
+
+def _prefix_filter(prefixes):
+    """Matches volunteers whose first name, last name or email starts with every prefix."""
+    condition = Q()
+    for prefix in prefixes:
+        condition &= Q(first_name__istartswith=prefix) | Q(last_name__istartswith=prefix) | Q(email__istartswith=prefix)
+    return condition
+
+
+def _fulltext_search(terms, limit, prefixes=()):
+    """
+    Searches the MySQL FULLTEXT index in boolean mode, keeping only the
+    volunteers that also match the `prefixes` too short for the index.
+    """
+    # Only word characters reach the query, so it cannot contain operators.
+    boolean_query = ' '.join(f'+{term}*' for term in terms)
+    score = RawSQL(
+        f"MATCH ({', '.join(SEARCH_FIELDS)}) AGAINST (%s IN BOOLEAN MODE)",
+        (boolean_query,),
+    )
+    return list(
+        Volunteer.objects.annotate(score=score).filter(score__gt=0).filter(_prefix_filter(prefixes))
+        .order_by('-score', '-id')[:limit]
+    )
+
+
+def _prefix_search(prefixes, limit):
+    """Finds volunteers by name or email prefix, newest first, for terms no index lookup covers."""
+    return list(Volunteer.objects.filter(_prefix_filter(prefixes)).order_by('-id')[:limit])
+
+
+def _token_search(terms, limit):
+    """Searches the VolunteerSearchToken table."""
+    tokens = {term[:MAX_TOKEN_LENGTH] for term in terms}
+    matches = (
+        VolunteerSearchToken.objects
+        .filter(token__in=tokens)
+        .values('volunteer_id')
+        .annotate(matched=Count('id'), exact=Count('id', filter=Q(is_word=True)))
+        .filter(matched=len(tokens))
+        .order_by('-exact', '-volunteer_id')[:limit]
+    )
+    ranked = [match['volunteer_id'] for match in matches]
+    volunteers = Volunteer.objects.in_bulk(ranked)
+    return [volunteers[pk] for pk in ranked if pk in volunteers]
@@ -8,7 +8,7 @@ Serializers also provide deserialization, allowing parsed data to be converted
 back into complex types after first validating the incoming data.
 """
 from rest_framework import serializers
-from .models import Volunteer
+from .models import ImportJob, Volunteer
 
 class VolunteerSerializer(serializers.ModelSerializer):
     """
@@ -35,8 +35,38 @@ class VolunteerSerializer(serializers.ModelSerializer):
             'availability',
             'how_did_you_hear_about_us',
             'status',
-            'hubspot_id'
+            'hubspot_id',
+            'created_at',
+            'updated_at',
+            'approved_at',
+            'synced_at'
         ]
-        # The 'status' and 'hubspot_id' fields are managed by the backend logic
-        # (e.g., the approval workflow) and should not be directly editable by API clients.
-        read_only_fields = ['status', 'hubspot_id']
+        # The 'status' and 'hubspot_id' fields and the timestamps are managed by the
+        # backend logic (e.g., the approval workflow) and should not be directly
+        # editable by API clients.
+        read_only_fields = ['status', 'hubspot_id', 'created_at', 'updated_at', 'approved_at', 'synced_at']
+
+
+class ImportJobSerializer(serializers.ModelSerializer):
+    """
+    Serializes the progress of a background CSV import job.
+
+    Used by the job status endpoint that the upload page polls.
+    """
+    class Meta:
+        model = ImportJob
+        fields = [
+            'id',
+            'status',
+            'rows_parsed',
+            'rows_inserted',
+            'rows_updated',
+            'rows_skipped',
+            'rows_synced',
+            'rows_failed',
+            'errors',
+            'created_at',
+            'started_at',
+            'finished_at',
+        ]
+        read_only_fields = fields
@@ -0,0 +1,132 @@
+# hopehands/volunteer/signals.py
+
+"""
+This file defines the volunteer app's signals and the receivers that keep
+derived data, such as the search indexes, aggregate counts and cached
+responses, in step with the Volunteer table.
+
+Django sends `post_save` for single saves only. Code that writes volunteers
+with `bulk_create` or `bulk_update`, like the CSV importer, sends
+`volunteers_bulk_saved` instead, so the receivers see those changes too.
+The receivers are connected in `VolunteerConfig.ready`.
+"""
+
+from django.db import transaction
+from django.db.models.signals import post_delete, post_init, post_save, pre_save
+from django.dispatch import Signal, receiver
+from django.utils import timezone
+
+from .aggregates import TRACKED_FIELDS, apply_changes, deleted_changes, saved_changes, stored_keys
+from .caching import bump_data_version
+from .contact_cache import forget_contact_ids
+from .models import Volunteer
+from .search import SEARCH_FIELDS, index_volunteers
+from .trigram import INDEXED_FIELDS, shared_index, volunteer_fields
+
+# Sent after volunteers are written in bulk. Arguments: `volunteers`, the list
+# of saved instances, `created`, whether they were inserted or updated, and
+# optionally `update_fields`, the fields an update wrote (like post_save's).
+volunteers_bulk_saved = Signal()
+
+
+def _touches(update_fields, fields):
+    """Returns whether a save with these update_fields may have changed `fields`."""
+    return update_fields is None or bool(set(update_fields) & set(fields))
+
+
+@receiver(pre_save, sender=Volunteer)
+def stamp_approval(sender, instance, **kwargs):
+    """Records when a volunteer is first approved."""
+    if instance.status == 'approved' and instance.approved_at is None:
+        instance.approved_at = timezone.now()
+
+
+@receiver(post_save, sender=Volunteer)
+def index_saved_volunteer(sender, instance, update_fields=None, **kwargs):
+    """Reindexes a saved volunteer, unless only unsearched fields changed."""
+    if _touches(update_fields, SEARCH_FIELDS):
+        index_volunteers([instance])
+
+
+@receiver(volunteers_bulk_saved, sender=Volunteer)
+def index_bulk_saved_volunteers(sender, volunteers, update_fields=None, **kwargs):
+    if _touches(update_fields, SEARCH_FIELDS):
+        index_volunteers(volunteers)
+
+
+def _add_to_trigram_index(volunteers):
+    """
+    Adds volunteers to the in-memory trigram index once the transaction commits,
+    so a rolled-back change never reaches it.
+    """
+    entries = [(v.pk, volunteer_fields(v)) for v in volunteers if v.pk]
+
+    def apply(index):
+        for pk, fields in entries:
+            index.add(pk, fields)
+
+    if entries:
+        transaction.on_commit(lambda: shared_index.apply(apply))
+
+
+@receiver(post_save, sender=Volunteer)
+def update_trigram_index(sender, instance, update_fields=None, **kwargs):
+    if _touches(update_fields, INDEXED_FIELDS):
+        _add_to_trigram_index([instance])
+
+
+@receiver(volunteers_bulk_saved, sender=Volunteer)
+def update_trigram_index_in_bulk(sender, volunteers, update_fields=None, **kwargs):
+    if _touches(update_fields, INDEXED_FIELDS):
+        _add_to_trigram_index(volunteers)
+
+
+@receiver(post_delete, sender=Volunteer)
+def remove_from_trigram_index(sender, instance, **kwargs):
+    pk = instance.pk
+    transaction.on_commit(lambda: shared_index.apply(lambda index: index.remove(pk)))
+
+
+@receiver(post_init, sender=Volunteer)
+def remember_stored_keys(sender, instance, **kwargs):
+    """
+    Remembers a volunteer's aggregate keys as loaded, so a later save can tell
+    which counts it moves. If a needed field is deferred the keys are left
+    unknown rather than loaded with an extra query.
+    """
+    if instance.get_deferred_fields() & set(TRACKED_FIELDS):
+        instance._stored_keys = None
+    else:
+        instance._stored_keys = stored_keys(instance)
+
+
+@receiver(post_save, sender=Volunteer)
+def count_saved_volunteer(sender, instance, created, update_fields=None, **kwargs):
+    if _touches(update_fields, TRACKED_FIELDS):
+        apply_changes(saved_changes([instance], created))
+
+
+@receiver(volunteers_bulk_saved, sender=Volunteer)
+def count_bulk_saved_volunteers(sender, volunteers, created, update_fields=None, **kwargs):
+    if _touches(update_fields, TRACKED_FIELDS):
+        apply_changes(saved_changes(volunteers, created))
+
+
+@receiver(post_delete, sender=Volunteer)
+def count_deleted_volunteer(sender, instance, **kwargs):
+    apply_changes(deleted_changes(instance))
+
+
+@receiver(post_delete, sender=Volunteer)
+def forget_contact_id(sender, instance, **kwargs):
+    """Drops a deleted volunteer's cached HubSpot ID, as its contact is archived."""
+    email = instance.email
+    transaction.on_commit(lambda: forget_contact_ids([email]))
+
+
+@receiver(post_save, sender=Volunteer)
+@receiver(post_delete, sender=Volunteer)
+@receiver(volunteers_bulk_saved, sender=Volunteer)
+def invalidate_cached_responses(sender, **kwargs):
+    """Bumps the data version once the write commits (see `caching.py`)."""
+    transaction.on_commit(bump_data_version)
@@ -0,0 +1,369 @@
+# hopehands/volunteer/sync.py
+
+"""
+This file implements the HubSpot sync outbox.
+
+Views never call HubSpot directly when a volunteer changes. Instead they call
+one of the `enqueue_*` functions inside the same database transaction as the
+change, which records a `HubspotSyncOperation`. The `sync_hubspot` management
+command then calls `process_outbox` to drain pending operations in batches.
+This keeps HubSpot latency out of the request/response cycle, and a failed
+sync stays visible in the outbox (and the Django admin) instead of silently
+leaving `hubspot_id` empty.
+
+The worker claims a batch of operations in a short transaction and calls
+HubSpot outside it, so no row locks or open transactions span network calls.
+A claim that outlives `HUBSPOT_SYNC_LEASE_SECONDS` is taken over by another
+worker.
+
+Creates read the volunteer's data at processing time, so a volunteer edited
+between approval and sync is created with its latest details. They are sent
+as upserts keyed on email (see `upsert_contacts`), so a volunteer whose email
+HubSpot already knows is linked to that contact instead of failing.
+
+Each kind of operation is sent with HubSpot's batch endpoints, one call per
+100 contacts. Updates are also coalesced: an update is only picked up once it
+is `HUBSPOT_SYNC_COALESCE_SECONDS` old, and then every pending update of the
+same volunteer is folded into it, so a burst of edits to one volunteer becomes
+a single input carrying their latest details.
+"""
+
+import datetime
+import logging
+
+from django.conf import settings
+from django.db import transaction
+from django.db.models import Q
+from django.utils import timezone
+
+from .contact_cache import cached_contact_ids, remember_contact_ids
+from .hubspot_api import HubspotAPI
+from .models import HubspotSyncOperation, Volunteer
+from .signals import volunteers_bulk_saved
+
+# Standard logger for this module
+logger = logging.getLogger(__name__)
+
+# The volunteer fields written when a contact has been created in HubSpot.
+SYNCED_FIELDS = ['hubspot_id', 'synced_at']
+
+
+def volunteer_properties(volunteer):
+    """
+    Builds the HubSpot contact properties for a volunteer.
+
+    Args:
+        volunteer (Volunteer): The volunteer to describe.
+
+    Returns:
+        dict: The HubSpot contact properties.
+    """
+    properties = {
+        "email": volunteer.email,
+        "firstname": volunteer.first_name,
+        "lastname": volunteer.last_name,
+        "phone": volunteer.phone_number,
+        "preferred_volunteer_role": volunteer.preferred_volunteer_role,
+        "availability": volunteer.availability,
+        "how_did_you_hear_about_us": volunteer.how_did_you_hear_about_us,
+    }
+    return properties
+
+
+def enqueue_create(volunteer):
+    """Queues the creation of a HubSpot contact for an approved volunteer."""
+    return HubspotSyncOperation.objects.create(volunteer=volunteer, operation='create')
+
+
+def enqueue_creates(volunteers):
+    """Queues the creation of HubSpot contacts for many approved volunteers with one INSERT."""
+    return HubspotSyncOperation.objects.bulk_create([
+        HubspotSyncOperation(volunteer=volunteer, operation='create') for volunteer in volunteers
+    ])
+
+
+def enqueue_update(volunteer):
+    """Queues an update of the volunteer's HubSpot contact."""
+    return HubspotSyncOperation.objects.create(volunteer=volunteer, operation='update')
+
+
+def enqueue_archive(hubspot_id):
+    """Queues the archiving of a HubSpot contact, e.g. when a volunteer is deleted."""
+    return HubspotSyncOperation.objects.create(operation='archive', hubspot_id=hubspot_id)
+
+
+def upsert_contacts(hubspot_api, volunteers, now, relink=()):
+    """
+    Links volunteers to HubSpot contacts by email, creating the contacts that
+    do not exist yet, and saves the contact IDs.
+
+    Every volunteer in `volunteers` is sent with one chunked batch upsert.
+    Volunteers in `relink` were synced before, so their contacts may already
+    exist: those whose email is in the contact ID cache (see
+    `contact_cache.py`) are linked without calling HubSpot, and only the rest
+    are added to the upsert.
+
+    The upsert leaves the lifecycle stage alone, because an existing contact
+    may have moved past "lead". Only the contacts it reports as new are then
+    given the default stage, with one batch update.
+
+    Args:
+        hubspot_api (HubspotAPI): The API wrapper to use.
+        volunteers (list): Saved volunteers whose details must be sent.
+        now (datetime): Recorded as the volunteers' `synced_at`.
+        relink (list, optional): Saved volunteers that only need their contact ID.
+
+    Returns:
+        tuple: The linked volunteers, and the upsert's BatchResult, or None if
+               HubSpot was not called.
+    """
+    cached = cached_contact_ids([volunteer.email for volunteer in relink])
+    to_send = list(volunteers) + [v for v in relink if v.email.lower() not in cached]
+    ids_by_email = dict(cached)
+    result = None
+    if to_send:
+        result = hubspot_api.batch_upsert_contacts([volunteer_properties(v) for v in to_send])
+        returned = result.ids_by_email()
+        remember_contact_ids(returned)
+        ids_by_email.update(returned)
+        _set_default_lifecycle_stage(hubspot_api, result.new_ids())
+
+    linked = []
+    for volunteer in list(volunteers) + list(relink):
+        hubspot_id = ids_by_email.get(volunteer.email.lower())
+        if hubspot_id and volunteer.pk:
+            volunteer.hubspot_id = hubspot_id
+            volunteer.synced_at = volunteer.synced_at or now
+            linked.append(volunteer)
+    with transaction.atomic():
+        Volunteer.objects.bulk_update(linked, SYNCED_FIELDS)
+        volunteers_bulk_saved.send(sender=Volunteer, volunteers=linked, created=False, update_fields=SYNCED_FIELDS)
+    return linked, result
+
+
+def _set_default_lifecycle_stage(hubspot_api, contact_ids):
+    """Sets the default "lead" lifecycle stage on newly created contacts."""
+    updates = {contact_id: {"lifecyclestage": "lead"} for contact_id in contact_ids}
+    if not updates:
+        return
+    failed = hubspot_api.batch_update_contacts(updates).failed_ids()
+    if failed:
+        # The contacts exist and are linked, so this is not worth a retry.
+        logger.warning(f"Could not set the lifecycle stage of new HubSpot contacts {sorted(failed)}")
+
+
+def _mark_done(operation, now):
+    operation.status = 'done'
+    operation.processed_at = now
+    operation.last_error = ''
+
+
+def _mark_failed_attempt(operation, error, now):
+    """
+    Records a failed attempt. The operation stays pending until it has been
+    tried `HUBSPOT_SYNC_MAX_ATTEMPTS` times, after which it is marked failed.
+    """
+    operation.attempts += 1
+    operation.last_error = error
+    if operation.attempts >= settings.HUBSPOT_SYNC_MAX_ATTEMPTS:
+        operation.status = 'failed'
+        operation.processed_at = now
+        logger.error(f"Giving up on HubSpot sync operation {operation.pk}: {error}")
+
+
+def _process_creates(hubspot_api, operations, now):
+    """Upserts contacts for all create operations with a single batch call."""
+    to_create = []
+    for operation in operations:
+        volunteer = operation.volunteer
+        if volunteer is None or volunteer.hubspot_id:
+            # Deleted before the sync ran, or already synced: nothing to do.
+            _mark_done(operation, now)
+        else:
+            to_create.append(operation)
+    if not to_create:
+        return []
+
+    synced, _ = upsert_contacts(hubspot_api, [operation.volunteer for operation in to_create], now)
+    linked = {volunteer.pk for volunteer in synced}
+    for operation in to_create:
+        if operation.volunteer.pk in linked:
+            _mark_done(operation, now)
+        else:
+            _mark_failed_attempt(operation, f"HubSpot did not return a contact for {operation.volunteer.email}", now)
+    return synced
+
+
+def _process_updates(hubspot_api, operations, now):
+    """
+    Pushes the current details of each volunteer to its HubSpot contact with
+    batch calls. Operations for the same contact share one input.
+    """
+    by_contact = {}
+    for operation in operations:
+        volunteer = operation.volunteer
+        if volunteer is None or not volunteer.hubspot_id:
+            # Deleted, or not created yet: the pending create carries the latest data.
+            _mark_done(operation, now)
+        else:
+            by_contact.setdefault(str(volunteer.hubspot_id), []).append(operation)
+    if not by_contact:
+        return
+
+    result = hubspot_api.batch_update_contacts({
+        hubspot_id: volunteer_properties(contact_operations[0].volunteer)
+        for hubspot_id, contact_operations in by_contact.items()
+    })
+    updated = {str(contact.id) for contact in result.results}
+    for hubspot_id, contact_operations in by_contact.items():
+        for operation in contact_operations:
+            if hubspot_id in updated:
+                _mark_done(operation, now)
+            else:
+                _mark_failed_attempt(operation, f"Could not update HubSpot contact {hubspot_id}", now)
+
+
+def _process_archives(hubspot_api, operations, now):
+    """Archives the HubSpot contacts of deleted volunteers with batch calls."""
+    to_archive = [operation for operation in operations if operation.hubspot_id]
+    failed = hubspot_api.batch_archive_contacts([op.hubspot_id for op in to_archive]).failed_ids() if to_archive else set()
+    for operation in operations:
+        if operation.hubspot_id and str(operation.hubspot_id) in failed:
+            _mark_failed_attempt(operation, f"Could not archive HubSpot contact {operation.hubspot_id}", now)
+        else:
+            _mark_done(operation, now)
+
+
+# Outbox states in which an operation has not reached HubSpot yet.
+UNSENT_STATUSES = ('pending', 'claimed')
+
+
+def _claim_batch(batch_size, now):
+    """
+    Claims a batch of operations for this worker in one short transaction.
+
+    Pending operations are claimed, as are operations whose claim is older
+    than `HUBSPOT_SYNC_LEASE_SECONDS`: the worker holding them died, so taking
+    one over counts as a failed attempt, and an operation that keeps killing
+    workers is eventually marked failed.
+
+    Returns:
+        list: The claimed operations, with their volunteers loaded.
+    """
+    coalesce_cutoff = now - datetime.timedelta(seconds=settings.HUBSPOT_SYNC_COALESCE_SECONDS)
+    lease_cutoff = now - datetime.timedelta(seconds=settings.HUBSPOT_SYNC_LEASE_SECONDS)
+    claimable = Q(status='pending') | Q(status='claimed', claimed_at__lt=lease_cutoff)
+    with transaction.atomic():
+        operations = list(
+            HubspotSyncOperation.objects
+            .select_for_update(skip_locked=True)
+            .filter(claimable)
+            .exclude(operation='update', created_at__gt=coalesce_cutoff)
+            .order_by('id')[:batch_size]
+        )
+        if not operations:
+            return []
+
+        # Newer updates of the same volunteers are folded into this batch. The
+        # volunteers are read below, after these rows, so their details
+        # include every change these updates were queued for.
+        updated_volunteer_ids = {op.volunteer_id for op in operations if op.operation == 'update' and op.volunteer_id}
+        if updated_volunteer_ids:
+            operations += list(
+                HubspotSyncOperation.objects
+                .select_for_update(skip_locked=True)
+                .filter(claimable, operation='update', volunteer_id__in=updated_volunteer_ids)
+                .exclude(pk__in=[operation.pk for operation in operations])
+            )
+
+        for operation in operations:
+            if operation.status == 'claimed':
+                _mark_failed_attempt(operation, "The worker processing this operation stopped", now)
+            if operation.status != 'failed':
+                operation.status = 'claimed'
+                operation.claimed_at = now
+        HubspotSyncOperation.objects.bulk_update(
+            operations, ['status', 'claimed_at', 'attempts', 'last_error', 'processed_at']
+        )
+
+    operations = [operation for operation in operations if operation.status == 'claimed']
+    # Volunteers are loaded separately rather than joined, so the claim above
+    # covers outbox rows only and never blocks edits to volunteers.
+    volunteers = Volunteer.objects.in_bulk(
+        {operation.volunteer_id for operation in operations if operation.volunteer_id}
+    )
+    for operation in operations:
+        operation.volunteer = volunteers.get(operation.volunteer_id)
+    return operations
+
+
+def _record_results(operations, claimed_at):
+    """
+    Saves the outcome of claimed operations in one short transaction. Operations
+    another worker took over in the meantime are left to that worker.
+    """
+    with transaction.atomic():
+        still_claimed = set(
+            HubspotSyncOperation.objects
+            .select_for_update()
+            .filter(pk__in=[operation.pk for operation in operations], status='claimed', claimed_at=claimed_at)
+            .values_list('pk', flat=True)
+        )
+        HubspotSyncOperation.objects.bulk_update(
+            [operation for operation in operations if operation.pk in still_claimed],
+            ['status', 'attempts', 'last_error', 'claimed_at', 'processed_at'],
+        )
+
+
+def process_outbox(batch_size=100, hubspot_api=None):
+    """
+    Processes one batch of pending outbox operations.
+
+    The batch is claimed with `SELECT ... FOR UPDATE SKIP LOCKED` in a short
+    transaction, so several workers can drain the outbox concurrently without
+    picking up the same operations. HubSpot is then called outside any
+    transaction, so no row locks are held during network calls, retries or
+    rate-limit waits, and the results are saved in a second short transaction.
+
+    Args:
+        batch_size (int): The maximum number of operations to process.
+        hubspot_api (HubspotAPI, optional): The API wrapper to use.
+
+    Returns:
+        int: The number of operations picked up. 0 means the outbox is empty.
+    """
+    hubspot_api = hubspot_api or HubspotAPI()
+    now = timezone.now()
+    operations = _claim_batch(batch_size, now)
+    if not operations:
+        return 0
+
+    by_type = {'create': [], 'update': [], 'archive': []}
+    for operation in operations:
+        by_type[operation.operation].append(operation)
+
+    try:
+        _process_creates(hubspot_api, by_type['create'], now)
+        _process_updates(hubspot_api, by_type['update'], now)
+        _process_archives(hubspot_api, by_type['archive'], now)
+    except Exception as e:
+        # Unfinished operations go back to pending rather than waiting for
+        # their lease to expire. The attempt counts, as in `_mark_failed_attempt`.
+        for operation in operations:
+            if operation.status == 'claimed':
+                _mark_failed_attempt(operation, str(e) or type(e).__name__, now)
+        _release(operations)
+        _record_results(operations, now)
+        raise
+
+    _release(operations)
+    _record_results(operations, now)
+    return len(operations)
+
+
+def _release(operations):
+    """Returns operations that were neither completed nor given up on to the pending queue."""
+    for operation in operations:
+        if operation.status == 'claimed':
+            operation.status = 'pending'
+            operation.claimed_at = None
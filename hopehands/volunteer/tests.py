@@ -1,9 +1,43 @@
+import base64
+import datetime
+import hashlib
+import hmac
 import io
-from django.test import TestCase, Client
+import json
+import os
+import tempfile
+import threading
+import time
+import unittest
+from django.db import DatabaseError, connection
+from django.db.models import Count, Q
+from django.test import SimpleTestCase, TestCase, TransactionTestCase, Client, override_settings
+from django.test.utils import CaptureQueriesContext
 from django.urls import reverse
 from django.contrib.auth.models import User
-from .models import Volunteer
-from unittest.mock import patch
+from django.core.files.uploadedfile import SimpleUploadedFile
+from django.core.cache import cache
+from django.core.management import call_command
+from django.utils import timezone
+from .csv_import import VolunteerImporter, iter_csv_rows
+from .fake_hubspot import FakeHubspotServer
+from .jobs import fail_stale_jobs, run_import_job
+from .aggregates import CUBE_FIELDS, role_counts
+from .models import (
+    HubspotSyncOperation, HubspotWebhookEvent, ImportJob, SyncWatermark, Volunteer, VolunteerActivityBucket,
+    VolunteerCubeCell, VolunteerSearchToken
+)
+from .pull import WATERMARK_NAME, pull_changes
+from .reconcile import Reconciler
+from .search import search_volunteers
+from .trigram import SharedIndex, TrigramIndex, shared_index
+from .webhooks import process_events
+from .sync import enqueue_archive, enqueue_create, enqueue_update, process_outbox, volunteer_properties
+from .hubspot_api import BatchResult, HubspotAPI
+from .hubspot_client import HubspotClientRegistry
+from .hubspot_ratelimit import RateGovernor, RateLimitExceeded
+from hubspot.crm.contacts.exceptions import ApiException
+from unittest.mock import MagicMock, patch
 
 class VolunteerModelTests(TestCase):
     def test_can_create_multiple_volunteers_with_null_hubspot_id(self):
@@ -30,6 +64,38 @@ class VolunteerModelTests(TestCase):
         self.assertEqual(Volunteer.objects.count(), 2)
 
 
+class VolunteerQueryPlanTests(TestCase):
+    """
+    Guards the hot volunteer queries against regressing to full table scans by
+    checking that their query plans mention the intended indexes.
+    """
+    @classmethod
+    def setUpTestData(cls):
+        roles = ['Food Distribution', 'Teaching', 'Event Support', 'Fundraising']
+        statuses = ['pending', 'approved', 'rejected']
+        Volunteer.objects.bulk_create([
+            Volunteer(
+                first_name=f'First{i}', last_name=f'Last{i}', email=f'plan{i}@example.com',
+                preferred_volunteer_role=roles[i % len(roles)], status=statuses[i % len(statuses)],
+            )
+            for i in range(300)
+        ])
+
+    def test_status_filter_uses_status_id_index(self):
+        plan = Volunteer.objects.filter(status='pending').order_by('-id')[:50].explain()
+        self.assertIn('volunteer_status_id_idx', plan)
+
+    def test_role_aggregation_uses_role_index(self):
+        plan = Volunteer.objects.values('preferred_volunteer_role').annotate(count=Count('id')).explain()
+        self.assertIn('volunteer_role_idx', plan)
+
+    @unittest.skipUnless(connection.vendor == 'mysql', "Case-insensitive LIKE only uses indexes with MySQL's collations.")
+    def test_name_prefix_search_uses_name_indexes(self):
+        plan = Volunteer.objects.filter(Q(first_name__istartswith='First1') | Q(last_name__istartswith='Last1')).explain()
+        self.assertIn('volunteer_name_idx', plan)
+        self.assertIn('volunteer_first_name_idx', plan)
+
+
 class VolunteerAPITests(TestCase):
     def setUp(self):
         self.client = Client()
@@ -46,6 +112,9 @@ class VolunteerAPITests(TestCase):
         }
         self.signup_url = reverse('volunteer-signup-api')
         self.volunteers_url = reverse('volunteer-list')
+        # Cached responses are keyed by a data version that is only bumped on
+        # commit, which never happens inside a TestCase.
+        cache.clear()
 
     def test_public_signup_api(self):
         """
@@ -76,18 +145,42 @@ class VolunteerAPITests(TestCase):
         # Make the request with the token
         response = self.client.get(self.volunteers_url, HTTP_AUTHORIZATION=f'Bearer {token}')
         self.assertEqual(response.status_code, 200)
-        self.assertEqual(len(response.data), 1)
-        self.assertEqual(response.data[0]['first_name'], self.volunteer_data['first_name'])
+        self.assertEqual(len(response.data['results']), 1)
+        self.assertEqual(response.data['results'][0]['first_name'], self.volunteer_data['first_name'])
 
-    @patch('volunteer.api_views.HubspotAPI')
-    def test_approve_action(self, MockHubspotAPI):
+    @override_settings(VOLUNTEER_API_PAGE_SIZE=2)
+    def test_volunteer_list_cursor_pagination(self):
         """
-        Tests the custom 'approve' action on the ViewSet, mocking the HubSpot API call.
+        Tests that the volunteer list is paged newest first by cursor, and that a
+        volunteer signing up between two page fetches does not shift the pages.
         """
-        # Configure the mock to simulate a successful API call
-        mock_hubspot_instance = MockHubspotAPI.return_value
-        mock_hubspot_instance.create_contact.return_value.id = 'hs_12345'
+        for i in range(5):
+            Volunteer.objects.create(first_name=f'Page{i}', last_name='Test', email=f'page{i}@example.com')
+        token_response = self.client.post(reverse('token_obtain_pair'), {'username': self.username, 'password': self.password})
+        auth = {'HTTP_AUTHORIZATION': f"Bearer {token_response.data['access']}"}
+
+        first = self.client.get(self.volunteers_url, **auth)
+        self.assertEqual([v['email'] for v in first.data['results']], ['page4@example.com', 'page3@example.com'])
+        self.assertIsNone(first.data['previous'])
 
+        Volunteer.objects.create(first_name='Late', last_name='Signup', email='late@example.com')
+        seen = [v['email'] for v in first.data['results']]
+        next_url = first.data['next']
+        while next_url:
+            page = self.client.get(next_url, **auth)
+            seen += [v['email'] for v in page.data['results']]
+            next_url = page.data['next']
+        self.assertEqual(seen, [f'page{i}@example.com' for i in range(4, -1, -1)])
+
+        # The page size can be chosen per request.
+        response = self.client.get(self.volunteers_url, {'page_size': 4}, **auth)
+        self.assertEqual(len(response.data['results']), 4)
+
+    def test_approve_action(self):
+        """
+        Tests the custom 'approve' action on the ViewSet. Approval queues a
+        create operation in the outbox instead of calling HubSpot inline.
+        """
         volunteer = Volunteer.objects.create(**self.volunteer_data)
         approve_url = reverse('volunteer-approve', kwargs={'pk': volunteer.pk})
 
@@ -100,27 +193,149 @@ class VolunteerAPITests(TestCase):
         # Refresh the volunteer from the database to get the updated status
         volunteer.refresh_from_db()
         self.assertEqual(volunteer.status, 'approved')
-        self.assertEqual(volunteer.hubspot_id, 'hs_12345')
+        self.assertIsNone(volunteer.hubspot_id)
+
+        operation = HubspotSyncOperation.objects.get()
+        self.assertEqual(operation.operation, 'create')
+        self.assertEqual(operation.volunteer, volunteer)
+        self.assertEqual(operation.status, 'pending')
+
+    def test_bulk_approve_and_reject(self):
+        """
+        Tests that the list-level approve action reviews many volunteers with
+        one UPDATE, queues their HubSpot contacts and reports a result per ID.
+        """
+        pending = [
+            Volunteer.objects.create(
+                first_name=f'Bulk{i}', last_name='Volunteer', email=f'bulk{i}@example.com',
+                preferred_volunteer_role='Teaching' if i < 3 else 'Fundraising',
+            )
+            for i in range(5)
+        ]
+        already = Volunteer.objects.create(first_name='Done', last_name='Volunteer', email='done@example.com', status='approved')
+        token_response = self.client.post(reverse('token_obtain_pair'), {'username': self.username, 'password': self.password})
+        auth = {'HTTP_AUTHORIZATION': f"Bearer {token_response.data['access']}"}
 
-        # Verify that the mocked API was called with the correct arguments
-        mock_hubspot_instance.create_contact.assert_called_once_with(
-            email=volunteer.email,
-            first_name=volunteer.first_name,
-            last_name=volunteer.last_name,
-            phone_number=volunteer.phone_number,
-            preferred_volunteer_role=volunteer.preferred_volunteer_role,
-            availability=volunteer.availability,
-            how_did_you_hear_about_us=volunteer.how_did_you_hear_about_us,
+        ids = [pending[0].pk, pending[1].pk, already.pk, 999999]
+        with CaptureQueriesContext(connection) as queries:
+            response = self.client.post(reverse('volunteer-bulk-approve'), {'ids': ids}, content_type='application/json', **auth)
+        self.assertEqual(response.status_code, 200, response.content)
+        self.assertEqual(response.data['count'], 2)
+        self.assertEqual(
+            [result['result'] for result in response.data['results']],
+            ['approved', 'approved', 'not_pending', 'not_found'],
         )
+        self.assertEqual(len([q for q in queries.captured_queries if q['sql'].startswith('UPDATE') and 'volunteer_volunteer' in q['sql'].split('SET')[0]]), 1)
+        self.assertEqual(
+            sorted(HubspotSyncOperation.objects.values_list('volunteer_id', flat=True)), [pending[0].pk, pending[1].pk]
+        )
+        self.assertIsNotNone(Volunteer.objects.get(pk=pending[0].pk).approved_at)
+
+        # A filter selects the remaining pending volunteers with those attributes.
+        response = self.client.post(
+            reverse('volunteer-bulk-reject'), {'filter': {'role': 'Teaching'}}, content_type='application/json', **auth
+        )
+        self.assertEqual([result['id'] for result in response.data['results']], [pending[2].pk])
+        self.assertFalse(response.data['has_more'])
+        self.assertEqual(Volunteer.objects.get(pk=pending[2].pk).status, 'rejected')
+        self.assertEqual(Volunteer.objects.filter(status='pending').count(), 2)
+
+        response = self.client.post(reverse('volunteer-bulk-reject'), {'filter': {'status': 'approved'}}, content_type='application/json', **auth)
+        self.assertEqual(response.status_code, 400)
 
-    @patch('volunteer.api_views.HubspotAPI')
-    def test_reject_action(self, MockHubspotAPI):
+    @patch('volunteer.sync.HubspotAPI')
+    def test_outbox_worker_syncs_approved_volunteer(self, MockHubspotAPI):
         """
-        Tests the custom 'reject' action on the ViewSet.
-        It should change the volunteer's status and NOT call the HubSpot API.
+        Tests that the outbox worker creates the HubSpot contact for a queued
+        approval and saves the returned HubSpot ID.
         """
         mock_hubspot_instance = MockHubspotAPI.return_value
+        mock_hubspot_instance.batch_upsert_contacts.return_value.ids_by_email.return_value = {
+            self.volunteer_data['email']: 'hs_12345'
+        }
+        mock_hubspot_instance.batch_upsert_contacts.return_value.new_ids.return_value = {'hs_12345'}
+        mock_hubspot_instance.batch_update_contacts.return_value.failed_ids.return_value = set()
+        volunteer = Volunteer.objects.create(status='approved', **self.volunteer_data)
+        enqueue_create(volunteer)
+
+        self.assertEqual(process_outbox(), 1)
+        self.assertEqual(process_outbox(), 0)
+
+        volunteer.refresh_from_db()
+        self.assertEqual(volunteer.hubspot_id, 'hs_12345')
+        self.assertEqual(HubspotSyncOperation.objects.get().status, 'done')
+        mock_hubspot_instance.batch_upsert_contacts.assert_called_once_with([volunteer_properties(volunteer)])
+        self.assertNotIn('lifecyclestage', volunteer_properties(volunteer))
+        # Only the contact the upsert created is given the default lifecycle stage.
+        mock_hubspot_instance.batch_update_contacts.assert_called_once_with({'hs_12345': {'lifecyclestage': 'lead'}})
 
+    @patch('volunteer.sync.HubspotAPI')
+    def test_outbox_worker_retries_then_fails(self, MockHubspotAPI):
+        """
+        Tests that a failing archive stays pending until the attempt limit is
+        reached and is then marked failed.
+        """
+        MockHubspotAPI.return_value.batch_archive_contacts.return_value.failed_ids.return_value = {'hs_gone'}
+        enqueue_archive('hs_gone')
+
+        with self.settings(HUBSPOT_SYNC_MAX_ATTEMPTS=2):
+            process_outbox()
+            self.assertEqual(HubspotSyncOperation.objects.get().status, 'pending')
+            process_outbox()
+
+        operation = HubspotSyncOperation.objects.get()
+        self.assertEqual(operation.status, 'failed')
+        self.assertEqual(operation.attempts, 2)
+
+    @patch('volunteer.sync.HubspotAPI')
+    def test_outbox_worker_coalesces_updates(self, MockHubspotAPI):
+        """
+        Tests that updates wait for the coalescing window, and that several
+        updates of one volunteer are then sent as a single batch input.
+        """
+        mock_hubspot_instance = MockHubspotAPI.return_value
+        mock_hubspot_instance.batch_update_contacts.return_value.results = [MagicMock(id='hs_777')]
+        volunteer = Volunteer.objects.create(status='approved', hubspot_id='hs_777', **self.volunteer_data)
+        for _ in range(3):
+            enqueue_update(volunteer)
+
+        with self.settings(HUBSPOT_SYNC_COALESCE_SECONDS=60):
+            self.assertEqual(process_outbox(), 0)
+        with self.settings(HUBSPOT_SYNC_COALESCE_SECONDS=0):
+            self.assertEqual(process_outbox(), 3)
+
+        mock_hubspot_instance.batch_update_contacts.assert_called_once_with({'hs_777': volunteer_properties(volunteer)})
+        self.assertEqual(set(HubspotSyncOperation.objects.values_list('status', flat=True)), {'done'})
+
+    @patch('volunteer.sync.HubspotAPI')
+    def test_outbox_worker_takes_over_expired_claims(self, MockHubspotAPI):
+        """
+        Tests that operations claimed by a live worker are left alone, and that
+        a claim older than the lease is taken over, counting as an attempt.
+        """
+        MockHubspotAPI.return_value.batch_archive_contacts.return_value.failed_ids.return_value = set()
+        live = enqueue_archive('hs_live')
+        stale = enqueue_archive('hs_stale')
+        now = timezone.now()
+        HubspotSyncOperation.objects.filter(pk=live.pk).update(status='claimed', claimed_at=now)
+        HubspotSyncOperation.objects.filter(pk=stale.pk).update(
+            status='claimed', claimed_at=now - datetime.timedelta(hours=1)
+        )
+
+        with self.settings(HUBSPOT_SYNC_LEASE_SECONDS=600):
+            self.assertEqual(process_outbox(), 1)
+            self.assertEqual(process_outbox(), 0)
+
+        MockHubspotAPI.return_value.batch_archive_contacts.assert_called_once_with(['hs_stale'])
+        stale.refresh_from_db()
+        self.assertEqual((stale.status, stale.attempts), ('done', 1))
+        self.assertEqual(HubspotSyncOperation.objects.get(pk=live.pk).status, 'claimed')
+
+    def test_reject_action(self):
+        """
+        Tests the custom 'reject' action on the ViewSet.
+        It should change the volunteer's status and queue nothing for HubSpot.
+        """
         volunteer = Volunteer.objects.create(**self.volunteer_data)
         reject_url = reverse('volunteer-reject', kwargs={'pk': volunteer.pk})
 
@@ -134,8 +349,8 @@ class VolunteerAPITests(TestCase):
         self.assertEqual(volunteer.status, 'rejected')
         self.assertIsNone(volunteer.hubspot_id)
 
-        # Verify that the HubSpot API was NOT called
-        mock_hubspot_instance.create_contact.assert_not_called()
+        # Verify that nothing was queued for HubSpot
+        self.assertFalse(HubspotSyncOperation.objects.exists())
 
     def test_delete_action(self):
         """
@@ -179,17 +394,47 @@ class VolunteerAPITests(TestCase):
         self.assertEqual(response.data[1]['preferred_volunteer_role'], 'Teaching')
         self.assertEqual(response.data[1]['count'], 1)
 
-    @patch('volunteer.api_views.HubspotAPI')
+    def test_visualization_endpoint_is_cached_with_etag(self):
+        """
+        Tests that repeated chart loads are served from the cache, that a
+        matching If-None-Match gets a 304, and that a committed write
+        invalidates both.
+        """
+        with self.captureOnCommitCallbacks(execute=True):
+            Volunteer.objects.create(first_name='A', last_name='1', email='a1@test.com', preferred_volunteer_role='Teaching')
+        token_response = self.client.post(reverse('token_obtain_pair'), {'username': self.username, 'password': self.password})
+        auth = {'HTTP_AUTHORIZATION': f"Bearer {token_response.data['access']}"}
+        url = reverse('visualization-volunteer-roles')
+
+        first = self.client.get(url, **auth)
+        etag = first['ETag']
+        self.assertEqual(first.data, [{'preferred_volunteer_role': 'Teaching', 'count': 1}])
+
+        with CaptureQueriesContext(connection) as queries:
+            revalidated = self.client.get(url, HTTP_IF_NONE_MATCH=etag, **auth)
+        self.assertEqual(revalidated.status_code, 304)
+        self.assertEqual(revalidated.content, b'')
+        self.assertFalse([q for q in queries if 'volunteerrolecount' in q['sql']])
+
+        with self.captureOnCommitCallbacks(execute=True):
+            Volunteer.objects.create(first_name='B', last_name='2', email='b2@test.com', preferred_volunteer_role='Teaching')
+        changed = self.client.get(url, HTTP_IF_NONE_MATCH=etag, **auth)
+        self.assertEqual(changed.status_code, 200)
+        self.assertNotEqual(changed['ETag'], etag)
+        self.assertEqual(changed.data[0]['count'], 2)
+
+    @override_settings(IMPORT_JOB_EXECUTOR='inline', MEDIA_ROOT=tempfile.gettempdir())
+    @patch('volunteer.jobs.HubspotAPI')
     def test_csv_upload_and_batch_sync(self, MockHubspotAPI):
         """
-        Tests the enhanced CSV upload functionality, ensuring volunteers are
-        created, approved, and batch-synced to HubSpot.
+        Tests the enhanced CSV upload functionality, ensuring the upload is
+        accepted as a background job, and volunteers are created, approved, and
+        batch-synced to HubSpot by the job.
         """
         # Configure the mock to simulate a successful batch API call
         mock_hubspot_instance = MockHubspotAPI.return_value
-        # The mock response needs to be an object with a 'status' and 'results' attribute
-        mock_hubspot_response = type('MockResponse', (), {})()
-        mock_hubspot_response.status = 'COMPLETE'
+        # The response is a BatchResult holding the upserted contacts
+        mock_hubspot_response = BatchResult()
         # The results should be a list of objects, each with an 'id' and 'properties'
         mock_contact1 = type('MockContact', (), {})()
         mock_contact1.id = 'hs_csv_1'
@@ -198,7 +443,7 @@ class VolunteerAPITests(TestCase):
         mock_contact2.id = 'hs_csv_2'
         mock_contact2.properties = {'email': 'csv2@example.com'}
         mock_hubspot_response.results = [mock_contact1, mock_contact2]
-        mock_hubspot_instance.batch_create_contacts.return_value = mock_hubspot_response
+        mock_hubspot_instance.batch_upsert_contacts.return_value = mock_hubspot_response
 
         # Create a CSV file in memory
         csv_data = (
@@ -215,11 +460,21 @@ class VolunteerAPITests(TestCase):
 
         # Make the request
         url = reverse('upload-csv')
-        response = self.client.post(url, {'file': csv_file}, HTTP_AUTHORIZATION=f'Bearer {token}')
+        with self.captureOnCommitCallbacks(execute=True):
+            response = self.client.post(url, {'file': csv_file}, HTTP_AUTHORIZATION=f'Bearer {token}')
 
-        self.assertEqual(response.status_code, 201)
+        self.assertEqual(response.status_code, 202)
         self.assertEqual(Volunteer.objects.count(), 2)
 
+        # Verify the job's progress is reported by the status endpoint
+        job_url = reverse('import-job-detail', kwargs={'pk': response.data['job']['id']})
+        job_response = self.client.get(job_url, HTTP_AUTHORIZATION=f'Bearer {token}')
+        self.assertEqual(job_response.data['status'], 'completed')
+        self.assertEqual(job_response.data['rows_parsed'], 2)
+        self.assertEqual(job_response.data['rows_inserted'], 2)
+        self.assertEqual(job_response.data['rows_synced'], 2)
+        self.assertEqual(job_response.data['rows_failed'], 0)
+
         # Verify volunteers were created as 'approved'
         self.assertEqual(Volunteer.objects.get(email='csv1@example.com').status, 'approved')
         self.assertEqual(Volunteer.objects.get(email='csv2@example.com').status, 'approved')
@@ -229,4 +484,876 @@ class VolunteerAPITests(TestCase):
         self.assertEqual(Volunteer.objects.get(email='csv2@example.com').hubspot_id, 'hs_csv_2')
 
         # Verify that the batch API was called once
-        mock_hubspot_instance.batch_create_contacts.assert_called_once()
+        mock_hubspot_instance.batch_upsert_contacts.assert_called_once()
+
+
+class HubspotClientRegistryTests(SimpleTestCase):
+    @patch('volunteer.hubspot_client.ContactsClient')
+    def test_client_is_built_once_and_reused(self, MockContactsClient):
+        """
+        Tests that the registry builds a single client per token and counts
+        subsequent lookups as hits.
+        """
+        MockContactsClient.return_value.connection_stats.return_value = {
+            'connections_opened': 1, 'requests_served': 3,
+        }
+        registry = HubspotClientRegistry()
+
+        first = registry.get('token-a', pool_size=4)
+        second = registry.get('token-a', pool_size=4)
+        other = registry.get('token-b', pool_size=4)
+
+        self.assertIs(first, second)
+        self.assertEqual(MockContactsClient.call_count, 2)
+        stats = registry.stats()
+        self.assertEqual(stats['hits'], 1)
+        self.assertEqual(stats['misses'], 2)
+        self.assertEqual(stats['clients'], 2)
+        self.assertEqual(stats['connections_opened'], 2)
+        self.assertIs(other, MockContactsClient.return_value)
+
+
+class RateGovernorTests(SimpleTestCase):
+    def setUp(self):
+        handle, self.state_path = tempfile.mkstemp()
+        os.close(handle)
+        self.now = 1_700_000_000.0
+        self.governor = RateGovernor(
+            rate=2, burst=2, daily_limit=5, state_path=self.state_path, clock=lambda: self.now
+        )
+
+    def tearDown(self):
+        os.remove(self.state_path)
+
+    def test_bucket_paces_calls_and_refills(self):
+        """
+        Tests that the bucket allows a burst, then asks callers to wait until
+        tokens have been refilled.
+        """
+        self.assertEqual(self.governor.try_acquire(), 0)
+        self.assertEqual(self.governor.try_acquire(), 0)
+        self.assertAlmostEqual(self.governor.try_acquire(), 0.5)
+
+        self.now += 0.5
+        self.assertEqual(self.governor.try_acquire(), 0)
+        self.assertEqual(self.governor.budget()['daily_remaining'], 2)
+
+    def test_penalize_blocks_and_daily_limit_raises(self):
+        """
+        Tests that a 429 penalty blocks callers and that the daily cap is enforced.
+        """
+        self.governor.penalize(3)
+        self.assertAlmostEqual(self.governor.try_acquire(), 3)
+
+        self.now += 10
+        for _ in range(5):
+            self.governor.acquire(sleep=lambda seconds: None)
+            self.now += 1
+        with self.assertRaises(RateLimitExceeded):
+            self.governor.try_acquire()
+
+
+class HubspotAPIRetryTests(SimpleTestCase):
+    @patch('volunteer.hubspot_api.time.sleep')
+    @patch('volunteer.hubspot_api.get_governor')
+    @patch('volunteer.hubspot_api.get_contacts_client')
+    def test_429_is_retried_after_retry_after(self, mock_get_client, mock_get_governor, mock_sleep):
+        """
+        Tests that a 429 is retried after the Retry-After delay and that every
+        process is put on hold through the governor.
+        """
+        throttled = ApiException(status=429, reason='Too Many Requests')
+        throttled.headers = {'Retry-After': '2'}
+        contact = MagicMock(id='hs_retry')
+        mock_get_client.return_value.basic_api.create.side_effect = [throttled, contact]
+        governor = mock_get_governor.return_value
+
+        result = HubspotAPI().create_contact(
+            email='retry@example.com', first_name='Re', last_name='Try', phone_number='1',
+            preferred_volunteer_role='Role', availability='Mon', how_did_you_hear_about_us=None,
+        )
+
+        self.assertEqual(result.id, 'hs_retry')
+        self.assertEqual(governor.acquire.call_count, 2)
+        governor.penalize.assert_called_once_with(2.0)
+        mock_sleep.assert_called_once_with(2.0)
+
+
+class HubspotBatchChunkingTests(SimpleTestCase):
+    @patch('volunteer.hubspot_api.get_governor')
+    @patch('volunteer.hubspot_api.get_contacts_client')
+    def test_batch_create_is_chunked_and_merged(self, mock_get_client, mock_get_governor):
+        """
+        Tests that a large batch is split into chunks of 100, and that a failed
+        chunk yields a PARTIAL result that keeps the other chunks' contacts.
+        """
+        def fake_create(batch_input_simple_public_object_batch_input_for_create):
+            inputs = batch_input_simple_public_object_batch_input_for_create['inputs']
+            if inputs[0]['properties']['email'] == 'user200@example.com':
+                raise ApiException(status=400, reason='Bad Request')
+            response = MagicMock(errors=None)
+            response.results = [
+                MagicMock(id=f"hs_{item['properties']['email']}", properties={'email': item['properties']['email'].upper()})
+                for item in inputs
+            ]
+            return response
+
+        mock_get_client.return_value.batch_api.create.side_effect = fake_create
+        contacts = [{'email': f'user{i}@example.com'} for i in range(250)]
+
+        result = HubspotAPI().batch_create_contacts(contacts)
+
+        self.assertEqual(mock_get_client.return_value.batch_api.create.call_count, 3)
+        self.assertEqual(result.status, 'PARTIAL')
+        self.assertEqual(len(result.results), 200)
+        self.assertEqual(result.failed_chunks, 1)
+        self.assertEqual(len(result.errors[0]['context']['emails']), 50)
+        self.assertEqual(result.ids_by_email()['user0@example.com'], 'hs_user0@example.com')
+
+    @patch('volunteer.hubspot_api.get_governor')
+    @patch('volunteer.hubspot_api.get_contacts_client')
+    def test_batch_archive_reports_failed_ids(self, mock_get_client, mock_get_governor):
+        """
+        Tests that archives are deduplicated and chunked, and that the IDs of a
+        failed chunk are reported.
+        """
+        def fake_archive(batch_input_simple_public_object_id):
+            if batch_input_simple_public_object_id['inputs'][0]['id'] == '100':
+                raise ApiException(status=400, reason='Bad Request')
+            return None
+
+        mock_get_client.return_value.batch_api.archive.side_effect = fake_archive
+        result = HubspotAPI().batch_archive_contacts([str(i) for i in range(150)] + ['0'])
+
+        self.assertEqual(mock_get_client.return_value.batch_api.archive.call_count, 2)
+        self.assertEqual(result.failed_ids(), {str(i) for i in range(100, 150)})
+
+
+class HubspotContactPagingTests(SimpleTestCase):
+    def _pages(self, count, fail_at=None):
+        """Returns a fake get_page that serves `count` pages of two contacts."""
+        def get_page(limit, after, properties):
+            number = int(after or 0)
+            if number == fail_at:
+                raise ApiException(status=400, reason='Bad Request')
+            last = number == count - 1
+            return MagicMock(
+                results=[MagicMock(id=str(number * 2 + i)) for i in range(2)],
+                paging=None if last else MagicMock(next=MagicMock(after=str(number + 1))),
+            )
+        return get_page
+
+    @patch('volunteer.hubspot_api.get_governor')
+    @patch('volunteer.hubspot_api.get_contacts_client')
+    def test_iter_contacts_streams_every_page(self, mock_get_client, mock_get_governor):
+        """
+        Tests that every page is fetched with the previous page's cursor and
+        the requested properties, with and without prefetching.
+        """
+        get_page = mock_get_client.return_value.basic_api.get_page
+        get_page.side_effect = self._pages(3)
+        for prefetch in (0, 2):
+            get_page.reset_mock()
+            contacts = list(HubspotAPI().iter_contacts(properties=['email'], prefetch=prefetch))
+            self.assertEqual([c.id for c in contacts], [str(i) for i in range(6)])
+            self.assertEqual([call.kwargs['after'] for call in get_page.call_args_list], [None, '1', '2'])
+            self.assertEqual(get_page.call_args.kwargs['properties'], ['email'])
+
+    @patch('volunteer.hubspot_api.get_governor')
+    @patch('volunteer.hubspot_api.get_contacts_client')
+    def test_iter_contacts_raises_page_errors(self, mock_get_client, mock_get_governor):
+        """Tests that a failed page fetched in the background is raised to the caller."""
+        mock_get_client.return_value.basic_api.get_page.side_effect = self._pages(3, fail_at=1)
+        contacts = HubspotAPI().iter_contacts(prefetch=1)
+        self.assertEqual([next(contacts).id, next(contacts).id], ['0', '1'])
+        with self.assertRaises(ApiException):
+            next(contacts)
+
+
+def upsert_result(contacts_properties):
+    """Builds the BatchResult of a successful upsert, with one new contact per input."""
+    result = BatchResult()
+    result.add_response(MagicMock(errors=None, results=[
+        MagicMock(id=f"hs_{props['email']}", properties={'email': props['email']}, new=True)
+        for props in contacts_properties
+    ]))
+    return result
+
+
+class CSVStreamingTests(TestCase):
+    def _import_batch(self, size, prefix):
+        """Imports one batch of `size` rows with a HubSpot mock and returns the query count."""
+        lines = ['email,first_name'] + [f'{prefix}{i}@example.com,User{i}' for i in range(size)]
+        upload = SimpleUploadedFile('volunteers.csv', '\n'.join(lines).encode('utf-8'))
+        hubspot_api = MagicMock()
+        hubspot_api.batch_upsert_contacts.side_effect = upsert_result
+        with CaptureQueriesContext(connection) as queries:
+            report = VolunteerImporter(status='approved', hubspot_api=hubspot_api, batch_size=size).run(upload)
+        self.assertEqual(report.rows_synced, size)
+        return len(queries)
+
+    def test_pk_lookup_query_count_is_flat(self):
+        """
+        Tests that importing and linking a batch takes the same number of queries
+        regardless of the batch size, i.e. primary keys are not re-read per row.
+        """
+        small = self._import_batch(5, 'small')
+        large = self._import_batch(50, 'large')
+
+        self.assertEqual(small, large)
+        self.assertEqual(Volunteer.objects.get(email='large42@example.com').hubspot_id, 'hs_large42@example.com')
+
+    def test_rows_are_parsed_across_small_chunks(self):
+        """
+        Tests that rows are decoded correctly when chunk boundaries split lines,
+        multi-byte characters and quoted multi-line fields, and that the BOM and
+        headers are normalized.
+        """
+        csv_data = (
+            '\ufeffFirst Name,Last Name,Email,How did you hear about us?\r\n'
+            'Zoë,Ähm,zoe@example.com,"Friend,\nthen flyer"\r\n'
+            'Bob,B,bob@example.com,Web\r\n'
+        ).encode('utf-8')
+        upload = SimpleUploadedFile('volunteers.csv', csv_data)
+
+        rows = list(iter_csv_rows(upload, chunk_size=5))
+
+        self.assertEqual(len(rows), 2)
+        self.assertEqual(rows[0]['first_name'], 'Zoë')
+        self.assertEqual(rows[0]['how_did_you_hear_about_us'], 'Friend,\nthen flyer')
+        self.assertEqual(rows[1]['email'], 'bob@example.com')
+
+    def test_importer_flushes_bounded_batches(self):
+        """
+        Tests that the importer writes and syncs rows batch by batch and reports
+        rows without an email as failed.
+        """
+        lines = ['email,first_name'] + [f'batch{i}@example.com,User{i}' for i in range(5)] + [',NoEmail']
+        upload = SimpleUploadedFile('volunteers.csv', '\n'.join(lines).encode('utf-8'))
+        hubspot_api = MagicMock()
+        hubspot_api.batch_upsert_contacts.return_value = BatchResult()
+
+        report = VolunteerImporter(status='approved', hubspot_api=hubspot_api, batch_size=2).run(upload)
+
+        self.assertEqual(report.rows_parsed, 6)
+        self.assertEqual(report.rows_inserted, 5)
+        self.assertEqual(report.rows_failed, 1)
+        self.assertEqual(Volunteer.objects.filter(status='approved').count(), 5)
+        self.assertEqual(hubspot_api.batch_upsert_contacts.call_count, 3)
+
+    def test_importer_skips_or_updates_existing_emails(self):
+        """
+        Tests that existing emails are skipped by default, updated with
+        on_conflict='update', and that repeated emails in a file are skipped.
+        """
+        Volunteer.objects.create(first_name='Old', last_name='Name', email='taken@example.com', hubspot_id='hs_taken')
+        csv_data = (
+            'email,first_name,last_name\n'
+            'taken@example.com,New,Name\n'
+            'fresh@example.com,Fresh,One\n'
+            'FRESH@example.com,Fresh,Again\n'
+        ).encode('utf-8')
+
+        skip_report = VolunteerImporter(status='approved').run(SimpleUploadedFile('a.csv', csv_data))
+        self.assertEqual(skip_report.rows_inserted, 1)
+        self.assertEqual(skip_report.rows_skipped, 2)
+        self.assertEqual(
+            [o['outcome'] for o in sorted(skip_report.outcomes, key=lambda o: o['row'])],
+            ['skipped', 'created', 'skipped']
+        )
+        self.assertEqual(Volunteer.objects.get(email='taken@example.com').first_name, 'Old')
+
+        update_report = VolunteerImporter(status='approved', on_conflict='update').run(SimpleUploadedFile('a.csv', csv_data))
+        self.assertEqual(update_report.rows_inserted, 0)
+        self.assertEqual(update_report.rows_updated, 2)
+        self.assertEqual(Volunteer.objects.get(email='taken@example.com').first_name, 'New')
+        self.assertEqual(Volunteer.objects.count(), 2)
+        # Only the volunteer already synced to HubSpot gets an update queued.
+        self.assertEqual(HubspotSyncOperation.objects.filter(operation='update').count(), 1)
+
+    def test_reimport_links_unsynced_volunteers(self):
+        """
+        Tests that re-running an upload upserts the approved volunteers whose
+        first sync failed, and that contact IDs known from the local cache are
+        linked without calling HubSpot.
+        """
+        cache.clear()
+        csv_data = 'email,first_name\nrerun1@example.com,One\nrerun2@example.com,Two\n'.encode('utf-8')
+        failing_api = MagicMock()
+        failing_api.batch_upsert_contacts.return_value = BatchResult()
+        VolunteerImporter(status='approved', hubspot_api=failing_api).run(SimpleUploadedFile('a.csv', csv_data))
+        self.assertEqual(Volunteer.objects.filter(hubspot_id__isnull=True).count(), 2)
+
+        hubspot_api = MagicMock()
+        hubspot_api.batch_upsert_contacts.side_effect = upsert_result
+        report = VolunteerImporter(status='approved', hubspot_api=hubspot_api).run(SimpleUploadedFile('a.csv', csv_data))
+        self.assertEqual(report.rows_skipped, 2)
+        self.assertEqual(report.rows_synced, 2)
+        self.assertEqual(Volunteer.objects.get(email='rerun1@example.com').hubspot_id, 'hs_rerun1@example.com')
+
+        # The link is lost locally, but the cache still knows the contact IDs.
+        Volunteer.objects.update(hubspot_id=None)
+        report = VolunteerImporter(status='approved', hubspot_api=hubspot_api).run(SimpleUploadedFile('a.csv', csv_data))
+        self.assertEqual(report.rows_synced, 2)
+        self.assertEqual(hubspot_api.batch_upsert_contacts.call_count, 1)
+        self.assertEqual(Volunteer.objects.get(email='rerun2@example.com').hubspot_id, 'hs_rerun2@example.com')
+
+    @override_settings(IMPORT_JOB_EXECUTOR='inline', MEDIA_ROOT=tempfile.gettempdir())
+    def test_template_upload_uses_batched_engine(self):
+        """
+        Tests that the template CSV upload queues an import job that creates
+        pending volunteers through the shared importer and reports invalid rows
+        individually.
+        """
+        User.objects.create_user(username='templateuser', password='templatepass')
+        self.client.login(username='templateuser', password='templatepass')
+        csv_data = (
+            'first_name,last_name,email,phone_number\n'
+            'Valid,One,valid1@example.com,111\n'
+            'Bad,Email,not-an-email,222\n'
+            'Valid,Two,valid2@example.com,333\n'
+        ).encode('utf-8')
+
+        with self.captureOnCommitCallbacks(execute=True):
+            response = self.client.post(
+                reverse('volunteer_csv_upload'),
+                {'csv_file': SimpleUploadedFile('volunteers.csv', csv_data)}
+            )
+
+        job = ImportJob.objects.get()
+        self.assertRedirects(response, reverse('import_job_detail', kwargs={'job_id': job.id}))
+        response = self.client.get(reverse('import_job_detail', kwargs={'job_id': job.id}))
+        self.assertTrue(response.context['finished'])
+        self.assertEqual(response.context['job'].rows_inserted, 2)
+        self.assertEqual(len(response.context['job'].errors), 1)
+        self.assertIn('not-an-email', response.context['job'].errors[0])
+        self.assertEqual(Volunteer.objects.filter(status='pending').count(), 2)
+
+    def test_import_job_never_left_running(self):
+        """
+        Tests that a job fails when saving its outcome raises, and that jobs
+        whose worker stopped reporting progress are failed by the sweep.
+        """
+        job = ImportJob.objects.create()
+        with patch.object(ImportJob, 'save', side_effect=DatabaseError('connection lost')):
+            self.assertTrue(run_import_job(job.pk))
+        job.refresh_from_db()
+        self.assertEqual(job.status, 'failed')
+        self.assertIsNotNone(job.finished_at)
+        self.assertIn('connection lost', job.errors[-1])
+
+        now = timezone.now()
+        stale = ImportJob.objects.create(status='running', progress_at=now - datetime.timedelta(hours=2))
+        live = ImportJob.objects.create(status='running', progress_at=now)
+        with self.settings(IMPORT_JOB_STALE_SECONDS=3600):
+            self.assertEqual(fail_stale_jobs(now=now), 1)
+        self.assertEqual(ImportJob.objects.get(pk=stale.pk).status, 'failed')
+        self.assertEqual(ImportJob.objects.get(pk=live.pk).status, 'running')
+
+
+class VolunteerSearchTests(TransactionTestCase):
+    """
+    Search tests run outside a wrapping transaction, because InnoDB only adds
+    rows to a FULLTEXT index when their transaction commits.
+    """
+    def setUp(self):
+        Volunteer.objects.create(first_name='Jane', last_name='Doe', email='jane.doe@example.org', preferred_volunteer_role='Teaching')
+        Volunteer.objects.create(first_name='Janet', last_name='Smith', email='jsmith@example.org', preferred_volunteer_role='Food Distribution')
+        Volunteer.objects.create(first_name='Bob', last_name='Stone', email='bob@example.org', preferred_volunteer_role='Teaching')
+
+    def names(self, query):
+        return [v.first_name for v in search_volunteers(query)]
+
+    def test_search_matches_all_terms_across_fields(self):
+        self.assertEqual(sorted(self.names('jan')), ['Jane', 'Janet'])
+        self.assertEqual(self.names('jane doe'), ['Jane'])
+        self.assertEqual(sorted(self.names('teach')), ['Bob', 'Jane'])
+        self.assertEqual(self.names('jsmith'), ['Janet'])
+        self.assertEqual(self.names('nobody'), [])
+        self.assertEqual(self.names('%'), [])
+
+    def test_search_finds_words_fulltext_does_not_index(self):
+        # "li" is shorter than innodb_ft_min_token_size and "com" is an InnoDB
+        # stopword; as required FULLTEXT terms either would match nothing.
+        Volunteer.objects.create(first_name='Mei', last_name='Li', email='mei@example.com', preferred_volunteer_role='Teaching')
+        self.assertEqual(self.names('li'), ['Mei'])
+        self.assertEqual(self.names('Mei Li'), ['Mei'])
+        self.assertEqual(self.names('ja smith'), ['Janet'])
+        self.assertEqual(self.names('jo smith'), [])
+        self.assertEqual(sorted(self.names('j')), ['Jane', 'Janet'])
+        self.assertEqual(self.names('mei@example.com'), ['Mei'])
+
+    @patch('volunteer.search.uses_fulltext', return_value=False)
+    def test_token_fallback_ranks_and_follows_changes(self, mock_uses_fulltext):
+        # The volunteers from setUp were indexed by the database's own path.
+        call_command('rebuild_search_index', stdout=io.StringIO())
+        self.assertTrue(VolunteerSearchToken.objects.exists())
+
+        # A whole-word match ranks above a prefix match.
+        self.assertEqual(self.names('jane'), ['Jane', 'Janet'])
+
+        # Saving a volunteer reindexes it.
+        bob = Volunteer.objects.get(first_name='Bob')
+        bob.last_name = 'Janeway'
+        bob.save()
+        self.assertEqual(self.names('janeway'), ['Bob'])
+        self.assertEqual(self.names('stone'), [])
+
+        # Bulk imports are indexed through the bulk signal.
+        upload = SimpleUploadedFile('volunteers.csv', b'email,first_name,last_name\nzoe@example.org,Zoe,Quinn\n')
+        VolunteerImporter(status='pending').run(upload)
+        self.assertEqual(self.names('quinn'), ['Zoe'])
+
+
+class TrigramIndexTests(SimpleTestCase):
+    def setUp(self):
+        self.index = TrigramIndex()
+        self.index.add(1, {'first_name': 'Jane', 'last_name': 'Doe', 'email': 'jane.doe@example.org'})
+        self.index.add(2, {'first_name': 'Janet', 'last_name': 'Smith', 'email': 'jsmith@example.org'})
+        self.index.add(3, {'first_name': 'Bob', 'last_name': 'Stone', 'email': 'bob@example.org'})
+
+    def ids(self, query):
+        return [match['id'] for match in self.index.search(query)]
+
+    def test_typos_and_prefixes_match(self):
+        self.assertEqual(self.ids('jane doo')[0], 1)
+        self.assertEqual(self.ids('smtih'), [2])
+        self.assertEqual(self.ids('bob st'), [3])
+        self.assertEqual(sorted(self.ids('jan')), [1, 2])
+        self.assertEqual(self.ids('xyz'), [])
+
+    def test_add_replaces_and_remove_forgets(self):
+        self.index.add(3, {'first_name': 'Robert', 'last_name': 'Stone', 'email': 'bob@example.org'})
+        self.assertEqual(self.ids('robert'), [3])
+        self.index.remove(3)
+        self.assertEqual(self.ids('stone'), [])
+        self.assertEqual(len(self.index), 2)
+
+    def test_shared_index_loads_without_blocking(self):
+        """
+        Tests that the first use starts the load in the background instead of
+        waiting for it, and that changes made meanwhile reach the loaded index.
+        """
+        release = threading.Event()
+
+        def slow_load():
+            release.wait(5)
+            return self.index
+
+        shared = SharedIndex()
+        with patch('volunteer.trigram.load_index', side_effect=slow_load):
+            self.assertIsNone(shared.get())
+            shared.apply(lambda index: index.remove(3))
+            release.set()
+            deadline = time.monotonic() + 5
+            while shared.get() is None and time.monotonic() < deadline:
+                time.sleep(0.01)
+        self.assertIs(shared.get(), self.index)
+        self.assertEqual(self.ids('stone'), [])
+
+
+class TypeaheadTests(TestCase):
+    def setUp(self):
+        shared_index.reset()
+        self.addCleanup(shared_index.reset)
+        Volunteer.objects.create(first_name='Jane', last_name='Doe', email='jane.doe@example.org')
+        shared_index.load()
+        User.objects.create_user(username='typeahead', password='typeahead', is_staff=True)
+        token_response = self.client.post(reverse('token_obtain_pair'), {'username': 'typeahead', 'password': 'typeahead'})
+        self.auth = {'HTTP_AUTHORIZATION': f"Bearer {token_response.data['access']}"}
+
+    def test_typeahead_is_served_from_memory_and_follows_commits(self):
+        response = self.client.get(reverse('volunteer-typeahead'), {'q': 'jnae doe'}, **self.auth)
+        self.assertEqual(response.status_code, 200)
+        self.assertEqual([m['email'] for m in response.data], ['jane.doe@example.org'])
+
+        # Committed changes reach the loaded index without reloading it.
+        with self.captureOnCommitCallbacks(execute=True):
+            bob = Volunteer.objects.create(first_name='Bob', last_name='Stone', email='bob@example.org')
+        with self.assertNumQueries(0):
+            self.assertEqual([m['id'] for m in shared_index.get().search('bob ston')], [bob.pk])
+
+        with self.captureOnCommitCallbacks(execute=True):
+            bob.delete()
+        self.assertEqual(shared_index.get().search('bob ston'), [])
+
+    def test_typeahead_uses_prefix_query_while_index_loads(self):
+        with patch.object(shared_index, 'get', return_value=None):
+            response = self.client.get(reverse('volunteer-typeahead'), {'q': 'jane d'}, **self.auth)
+        self.assertEqual(response.status_code, 200)
+        self.assertEqual([m['email'] for m in response.data], ['jane.doe@example.org'])
+
+
+class RoleCountTests(TestCase):
+    def assertCountsMatchTable(self):
+        expected = {
+            row['preferred_volunteer_role']: row['count']
+            for row in Volunteer.objects.values('preferred_volunteer_role').annotate(count=Count('id'))
+        }
+        self.assertEqual({row['preferred_volunteer_role']: row['count'] for row in role_counts()}, expected)
+
+    def test_counts_follow_single_and_bulk_writes(self):
+        """
+        Tests that the maintained role counts equal a live GROUP BY after
+        inserts, role changes and deletes, both single and bulk.
+        """
+        teacher = Volunteer.objects.create(first_name='A', last_name='1', email='a1@test.com', preferred_volunteer_role='Teaching')
+        Volunteer.objects.create(first_name='B', last_name='2', email='b2@test.com', preferred_volunteer_role='Teaching')
+        Volunteer.objects.create(first_name='C', last_name='3', email='c3@test.com', preferred_volunteer_role='Fundraising')
+
+        teacher = Volunteer.objects.get(pk=teacher.pk)
+        teacher.preferred_volunteer_role = 'Fundraising'
+        teacher.save()
+        teacher.status = 'approved'
+        teacher.save(update_fields=['status'])
+        self.assertCountsMatchTable()
+
+        Volunteer.objects.get(email='b2@test.com').delete()
+        self.assertCountsMatchTable()
+
+        header = 'email,first_name,last_name,preferred_volunteer_role\n'
+        VolunteerImporter(status='pending').run(SimpleUploadedFile('new.csv', (
+            header + 'd4@test.com,D,4,Teaching\ne5@test.com,E,5,Event Support\n'
+        ).encode('utf-8')))
+        self.assertCountsMatchTable()
+
+        VolunteerImporter(status='pending', on_conflict='update').run(SimpleUploadedFile('changes.csv', (
+            header + 'c3@test.com,C,3,Teaching\ne5@test.com,E,5,Event Support\n'
+        ).encode('utf-8')))
+        self.assertCountsMatchTable()
+
+        Volunteer.objects.filter(preferred_volunteer_role='Teaching').delete()
+        self.assertCountsMatchTable()
+        self.assertEqual(
+            list(role_counts()),
+            [{'preferred_volunteer_role': 'Event Support', 'count': 1}, {'preferred_volunteer_role': 'Fundraising', 'count': 1}],
+        )
+
+
+class VolunteerAnalyticsTests(TestCase):
+    def setUp(self):
+        cache.clear()
+        User.objects.create_user(username='analyst', password='analyst', is_staff=True)
+        token_response = self.client.post(reverse('token_obtain_pair'), {'username': 'analyst', 'password': 'analyst'})
+        self.auth = {'HTTP_AUTHORIZATION': f"Bearer {token_response.data['access']}"}
+        people = [
+            ('a', 'Teaching', 'Weekends', 'approved', 'Friend'),
+            ('b', 'Teaching', 'Weekdays', 'pending', None),
+            ('c', 'Teaching', 'Weekends', 'approved', 'Friend'),
+            ('d', 'Fundraising', 'Weekends', 'pending', 'Website'),
+        ]
+        for name, role, availability, status, heard in people:
+            Volunteer.objects.create(
+                first_name=name, last_name='X', email=f'{name}@example.org', preferred_volunteer_role=role,
+                availability=availability, status=status, how_did_you_hear_about_us=heard,
+            )
+
+    def get(self, **params):
+        return self.client.get(reverse('analytics-volunteers'), params, **self.auth)
+
+    def test_pivots_and_filters_match_the_volunteer_table(self):
+        response = self.get(group_by='role,status')
+        self.assertEqual(response.status_code, 200)
+        self.assertEqual(response.data['results'], [
+            {'role': 'Teaching', 'status': 'approved', 'count': 2},
+            {'role': 'Fundraising', 'status': 'pending', 'count': 1},
+            {'role': 'Teaching', 'status': 'pending', 'count': 1},
+        ])
+
+        response = self.get(group_by='heard_from', availability='Weekends')
+        self.assertEqual(response.data['results'], [
+            {'heard_from': 'Friend', 'count': 2},
+            {'heard_from': 'Website', 'count': 1},
+        ])
+        self.assertEqual(self.get().data['results'], [{'count': 4}])
+        self.assertEqual(self.get(group_by='role,shoe_size').status_code, 400)
+
+    def test_cube_follows_changes(self):
+        volunteer = Volunteer.objects.get(email='b@example.org')
+        volunteer.status = 'approved'
+        volunteer.save()
+        Volunteer.objects.get(email='d@example.org').delete()
+        cache.clear()
+
+        self.assertEqual(self.get(group_by='status').data['results'], [{'status': 'approved', 'count': 3}])
+        # The incrementally maintained cube matches a full rebuild.
+        before = sorted(VolunteerCubeCell.objects.filter(count__gt=0).values_list(*CUBE_FIELDS, 'count'))
+        call_command('rebuild_analytics_cube', stdout=io.StringIO())
+        self.assertEqual(sorted(VolunteerCubeCell.objects.values_list(*CUBE_FIELDS, 'count')), before)
+
+
+class VolunteerTimeSeriesTests(TestCase):
+    def setUp(self):
+        cache.clear()
+        User.objects.create_user(username='analyst', password='analyst', is_staff=True)
+        token_response = self.client.post(reverse('token_obtain_pair'), {'username': 'analyst', 'password': 'analyst'})
+        self.auth = {'HTTP_AUTHORIZATION': f"Bearer {token_response.data['access']}"}
+
+    def get(self, **params):
+        return self.client.get(reverse('analytics-timeseries'), params, **self.auth)
+
+    @patch('volunteer.sync.HubspotAPI')
+    def test_counts_signups_approvals_and_syncs(self, MockHubspotAPI):
+        MockHubspotAPI.return_value.batch_upsert_contacts.return_value.ids_by_email.return_value = {
+            'a@example.org': 'hs_a'
+        }
+        for name in ('a', 'b'):
+            Volunteer.objects.create(first_name=name, last_name='X', email=f'{name}@example.org', status='pending')
+        volunteer = Volunteer.objects.get(email='a@example.org')
+        volunteer.status = 'approved'
+        volunteer.approved_at = timezone.now() - datetime.timedelta(seconds=90)
+        volunteer.save()
+        enqueue_create(volunteer)
+        process_outbox()
+
+        volunteer.refresh_from_db()
+        self.assertIsNotNone(volunteer.synced_at)
+        for metric, expected in (('signup', 2), ('approved', 1), ('synced', 1)):
+            response = self.get(metric=metric, bucket='hour')
+            self.assertEqual(response.status_code, 200)
+            self.assertEqual(len(response.data['results']), 48)
+            self.assertEqual(sum(point['count'] for point in response.data['results']), expected)
+        synced = [point for point in self.get(metric='synced', bucket='hour').data['results'] if point['count']]
+        self.assertAlmostEqual(synced[0]['average_lag_seconds'], 90, delta=5)
+
+        # The incrementally maintained buckets match a full rebuild.
+        before = sorted(VolunteerActivityBucket.objects.values_list('metric', 'bucket_start', 'count'))
+        call_command('rebuild_analytics_cube', stdout=io.StringIO())
+        self.assertEqual(sorted(VolunteerActivityBucket.objects.values_list('metric', 'bucket_start', 'count')), before)
+
+    def test_rejects_bad_parameters(self):
+        self.assertEqual(self.get(metric='logins').status_code, 400)
+        self.assertEqual(self.get(start='yesterday').status_code, 400)
+        self.assertEqual(self.get(bucket='hour', start='2020-01-01', end='2026-01-01').status_code, 400)
+        response = self.get(bucket='week', start='2026-01-07', end='2026-02-01')
+        self.assertEqual(response.data['results'][0]['bucket_start'], '2026-01-05T00:00:00+00:00')
+
+
+class ReconcileTests(TestCase):
+    def test_reconcile_queues_only_the_differences(self):
+        """
+        Tests that the merge finds changed, vanished, unlinked and orphaned
+        contacts, that a dry run queues nothing, and that orphans are only
+        archived on request.
+        """
+        def make(name, **fields):
+            return Volunteer.objects.create(
+                first_name=name, last_name='X', email=f'{name}@example.org', status='approved', **fields
+            )
+        in_sync = make('same', hubspot_id='9')
+        changed = make('changed', hubspot_id='10')
+        vanished = make('vanished', hubspot_id='100')
+        unlinked = make('unlinked')
+        queued = make('queued')
+        enqueue_create(queued)
+
+        def contact(contact_id, volunteer=None, **overrides):
+            properties = {**volunteer_properties(volunteer), **overrides} if volunteer else {'email': 'orphan@example.org'}
+            return MagicMock(id=contact_id, properties=properties)
+        hubspot_api = MagicMock()
+        hubspot_api.iter_contacts.side_effect = lambda properties: iter([
+            contact('9', in_sync, email='SAME@example.org'),
+            contact('10', changed, firstname='Old name'),
+            contact('11'),
+        ])
+
+        report = Reconciler(hubspot_api, dry_run=True, page_size=2).run()
+        self.assertEqual(
+            (report.contacts_scanned, report.volunteers_scanned, report.in_sync, report.updates, report.creates, report.orphans),
+            (3, 3, 1, 1, 2, 1),
+        )
+        self.assertEqual(HubspotSyncOperation.objects.count(), 1)
+
+        report = Reconciler(hubspot_api, archive_orphans=True, page_size=2).run()
+        self.assertEqual(report.archives, 1)
+        self.assertEqual(
+            sorted(HubspotSyncOperation.objects.values_list('operation', 'volunteer_id', 'hubspot_id')),
+            sorted([
+                ('create', queued.pk, None), ('update', changed.pk, None), ('create', vanished.pk, None),
+                ('create', unlinked.pk, None), ('archive', None, '11'),
+            ]),
+        )
+        vanished_after = Volunteer.objects.get(pk=vanished.pk)
+        self.assertIsNone(vanished_after.hubspot_id)
+        self.assertGreater(vanished_after.updated_at, vanished.updated_at)
+
+    def test_reconcile_relinks_contact_of_unlinked_volunteer(self):
+        """
+        Tests that a contact no volunteer points at, but with the email of an
+        unlinked volunteer, is linked to it instead of being archived while a
+        create upserts onto it.
+        """
+        lost = Volunteer.objects.create(first_name='Lost', last_name='X', email='lost@example.org', status='approved')
+        hubspot_api = MagicMock()
+        hubspot_api.iter_contacts.side_effect = lambda properties: iter([
+            MagicMock(id='12', properties={'email': 'lost@example.org'}),
+            MagicMock(id='13', properties={'email': 'stranger@example.org'}),
+        ])
+
+        report = Reconciler(hubspot_api, archive_orphans=True).run()
+        self.assertEqual((report.relinks, report.orphans, report.archives, report.creates), (1, 1, 1, 0))
+        self.assertEqual(
+            sorted(HubspotSyncOperation.objects.values_list('operation', 'volunteer_id', 'hubspot_id')),
+            [('archive', None, '13'), ('update', lost.pk, None)],
+        )
+        self.assertEqual(Volunteer.objects.get(pk=lost.pk).hubspot_id, '12')
+
+
+class PullChangesTests(TestCase):
+    @override_settings(HUBSPOT_PULL_OVERLAP_SECONDS=60)
+    def test_pull_applies_changes_and_advances_the_watermark(self):
+        """
+        Tests that a pull copies HubSpot changes onto linked volunteers, leaves
+        volunteers with unsynced local edits alone, and starts the next pull
+        from the saved watermark minus the overlap.
+        """
+        changed = Volunteer.objects.create(
+            first_name='Jane', last_name='Doe', email='jane@example.org', status='approved', hubspot_id='1'
+        )
+        edited = Volunteer.objects.create(
+            first_name='John', last_name='Roe', email='john@example.org', status='approved', hubspot_id='2'
+        )
+        enqueue_update(edited)
+
+        def contact(contact_id, modified, **properties):
+            return MagicMock(id=contact_id, properties={'lastmodifieddate': modified, **properties})
+        first_page = MagicMock(results=[
+            contact('1', '2026-05-01T10:00:00Z', firstname='Janet', phone=''),
+            contact('2', '2026-05-01T11:00:00Z', firstname='Johnny'),
+        ])
+        second_page = MagicMock(
+            results=[contact('99', '2026-05-01T12:00:00Z', firstname='Unknown')], paging=None
+        )
+        hubspot_api = MagicMock()
+        hubspot_api.search_modified_contacts.side_effect = [first_page, second_page]
+
+        report = pull_changes(hubspot_api)
+        self.assertEqual((report.pages, report.contacts_seen), (2, 3))
+        self.assertEqual((report.volunteers_updated, report.skipped_pending), (1, 1))
+        self.assertEqual(Volunteer.objects.get(pk=changed.pk).first_name, 'Janet')
+        self.assertEqual(Volunteer.objects.get(pk=edited.pk).first_name, 'John')
+        self.assertEqual(hubspot_api.search_modified_contacts.call_args_list[1].kwargs['after'], first_page.paging.next.after)
+
+        watermark = SyncWatermark.objects.get(name=WATERMARK_NAME).value
+        self.assertEqual(watermark, datetime.datetime(2026, 5, 1, 12, tzinfo=datetime.timezone.utc))
+
+        hubspot_api.search_modified_contacts.side_effect = [MagicMock(results=[], paging=None)]
+        pull_changes(hubspot_api)
+        since = hubspot_api.search_modified_contacts.call_args.args[0]
+        self.assertEqual(since, watermark - datetime.timedelta(seconds=60))
+
+
+@override_settings(HUBSPOT_WEBHOOK_SECRET='secret', HUBSPOT_WEBHOOK_URL=None)
+class HubspotWebhookTests(TestCase):
+    def post_events(self, events, secret='secret'):
+        """Posts events to the webhook endpoint, signed like HubSpot does."""
+        url = reverse('hubspot-webhooks')
+        body = json.dumps(events).encode('utf-8')
+        timestamp = str(int(time.time() * 1000))
+        message = f"POSThttp://testserver{url}".encode('utf-8') + body + timestamp.encode('utf-8')
+        signature = base64.b64encode(hmac.new(secret.encode('utf-8'), message, hashlib.sha256).digest()).decode()
+        return self.client.post(
+            url, body, content_type='application/json',
+            HTTP_X_HUBSPOT_SIGNATURE_V3=signature, HTTP_X_HUBSPOT_REQUEST_TIMESTAMP=timestamp,
+        )
+
+    def test_webhook_checks_the_signature_and_queues_events(self):
+        """
+        Tests that unsigned or wrongly signed requests are rejected, and that
+        signed ones store the contact events for the properties we pull.
+        """
+        event = {
+            'eventId': 1, 'subscriptionType': 'contact.propertyChange', 'objectId': 5,
+            'propertyName': 'firstname', 'propertyValue': 'Jane', 'occurredAt': 1767225600000,
+        }
+        ignored = {**event, 'eventId': 2, 'propertyName': 'hs_lead_status'}
+
+        self.assertEqual(self.client.post(reverse('hubspot-webhooks'), [event], content_type='application/json').status_code, 403)
+        self.assertEqual(self.post_events([event], secret='wrong').status_code, 403)
+        self.assertEqual(self.post_events({'not': 'a list'}).status_code, 400)
+        self.assertEqual(self.post_events([event, ignored]).status_code, 204)
+
+        stored = HubspotWebhookEvent.objects.get()
+        self.assertEqual((stored.object_id, stored.property_value, stored.status), ('5', 'Jane', 'pending'))
+        self.assertEqual(stored.occurred_at, datetime.datetime(2026, 1, 1, tzinfo=datetime.timezone.utc))
+
+    def test_events_are_coalesced_per_contact(self):
+        """
+        Tests that only the latest change of each property is applied, that
+        changes older than the volunteer's last local change are skipped, and
+        that a deleted contact unlinks its volunteer.
+        """
+        def make(name, hubspot_id):
+            return Volunteer.objects.create(
+                first_name=name, last_name='X', email=f'{name}@example.org', status='approved', hubspot_id=hubspot_id
+            )
+        changed = make('changed', '1')
+        deleted = make('deleted', '2')
+        stale = make('stale', '3')
+        later = changed.updated_at + datetime.timedelta(minutes=1)
+
+        def event(object_id, occurred_at, value=None, deletion=False):
+            return HubspotWebhookEvent.objects.create(
+                event_id=1, object_id=object_id, occurred_at=occurred_at,
+                subscription_type='contact.deletion' if deletion else 'contact.propertyChange',
+                property_name='' if deletion else 'firstname', property_value=value,
+            )
+        event('1', later + datetime.timedelta(seconds=5), 'Newest')
+        event('1', later, 'Older')
+        event('2', later, deletion=True)
+        event('3', stale.updated_at - datetime.timedelta(minutes=1), 'Outdated')
+        event('99', later, 'Unknown contact')
+
+        # The older change of the first contact is folded into its batch.
+        report = process_events(batch_size=1)
+        self.assertEqual((report.events, report.volunteers_updated), (2, 1))
+        report = process_events()
+        self.assertEqual((report.events, report.volunteers_unlinked, report.skipped_stale), (3, 1, 1))
+        self.assertEqual(process_events().events, 0)
+
+        self.assertEqual(Volunteer.objects.get(pk=changed.pk).first_name, 'Newest')
+        self.assertIsNone(Volunteer.objects.get(pk=deleted.pk).hubspot_id)
+        self.assertEqual(Volunteer.objects.get(pk=stale.pk).first_name, 'stale')
+        self.assertFalse(HubspotWebhookEvent.objects.filter(status='pending').exists())
+
+
+class FakeHubspotIntegrationTests(TestCase):
+    def setUp(self):
+        # The seed makes the first request a 429 and the next ones succeed.
+        self.server = FakeHubspotServer(rate_limit_rate=0.5, retry_after=0, seed=32).start()
+        self.addCleanup(self.server.stop)
+        handle, state_path = tempfile.mkstemp()
+        os.close(handle)
+        self.addCleanup(os.remove, state_path)
+        with override_settings(HUBSPOT_API_BASE_URL=self.server.url, HUBSPOT_PRIVATE_APP_TOKEN='test-token'):
+            self.hubspot_api = HubspotAPI()
+        self.hubspot_api.governor = RateGovernor(rate=1000, burst=1000, daily_limit=10 ** 6, state_path=state_path)
+
+    def test_outbox_syncs_through_the_real_client(self):
+        """
+        Tests that the outbox creates, lists and archives contacts over HTTP
+        with the real SDK, retrying the injected 429.
+        """
+        volunteers = [
+            Volunteer.objects.create(
+                first_name=f'First{i}', last_name='Last', email=f'fake{i}@example.org',
+                phone_number='555', preferred_volunteer_role='Teaching', availability='Weekends', status='approved',
+            )
+            for i in range(2)
+        ]
+        for volunteer in volunteers:
+            enqueue_create(volunteer)
+
+        process_outbox(hubspot_api=self.hubspot_api)
+        hubspot_ids = sorted(Volunteer.objects.values_list('hubspot_id', flat=True))
+        self.assertNotIn(None, hubspot_ids)
+        self.assertEqual(self.server.stats()['statuses'].get(429), 1)
+
+        contacts = list(self.hubspot_api.iter_contacts(properties=['email', 'firstname', 'lifecyclestage']))
+        self.assertEqual(sorted(str(contact.id) for contact in contacts), hubspot_ids)
+        self.assertEqual({contact.properties['email'] for contact in contacts}, {'fake0@example.org', 'fake1@example.org'})
+        self.assertEqual({contact.properties['lifecyclestage'] for contact in contacts}, {'lead'})
+
+        result = self.hubspot_api.batch_archive_contacts(hubspot_ids)
+        self.assertEqual(result.failed_ids(), set())
+        self.assertEqual(self.server.stats()['contacts'], 0)
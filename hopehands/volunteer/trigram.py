@@ -0,0 +1,249 @@
+# hopehands/volunteer/trigram.py
+
+"""
+This file provides an in-process trigram index over volunteer names and emails,
+used for typo-tolerant typeahead.
+
+Every word of a volunteer's first name, last name and email is split into
+trigrams (three-letter substrings, padded so word starts and ends count too).
+A query is split the same way, and volunteers are scored by the fraction of the
+query's trigrams they contain. A typo only spoils the few trigrams around it,
+so "jane doo" still finds "Jane Doe". The last word of a query is treated as a
+prefix, because the user is usually still typing it.
+
+Each worker process holds its own index in memory, so typeahead queries touch
+neither MySQL nor HubSpot. The index is loaded from the database in a
+background thread on first use, while typeahead answers with an indexed
+prefix query (`prefix_matches`), and then kept current by the receivers in
+`signals.py`, which apply changes once their transaction commits. Changes made
+by other processes are picked up when the index is rebuilt in the background
+every `TRIGRAM_INDEX_MAX_AGE` seconds.
+"""
+
+from collections import Counter, defaultdict
+import logging
+import re
+import threading
+import time
+
+from django.conf import settings
+from django.db import close_old_connections
+from django.db.models import Q
+
+from .models import Volunteer
+
+# Standard logger for this module
+logger = logging.getLogger(__name__)
+
+# The volunteer fields that are indexed and returned with each match.
+INDEXED_FIELDS = ('first_name', 'last_name', 'email')
+
+WORD_RE = re.compile(r'[^\W_]+')
+
+
+def word_trigrams(word, prefix=False):
+    """
+    Returns the trigrams of a lowercased word, padded with two spaces in front
+    and, unless `prefix` is set, one behind.
+    """
+    padded = f"  {word}" if prefix else f"  {word} "
+    return {padded[i:i + 3] for i in range(len(padded) - 2)}
+
+
+def text_trigrams(text, prefix_last=False):
+    """Returns the trigrams of every word in a text."""
+    words = WORD_RE.findall(text.lower())
+    trigrams = set()
+    for i, word in enumerate(words):
+        trigrams |= word_trigrams(word, prefix=prefix_last and i == len(words) - 1)
+    return trigrams
+
+
+class TrigramIndex:
+    """
+    An inverted index from trigrams to volunteer IDs. All methods are thread-safe.
+    """
+    def __init__(self):
+        self._lock = threading.RLock()
+        self._postings = defaultdict(set)
+        self._documents = {}
+
+    def __len__(self):
+        return len(self._documents)
+
+    def add(self, pk, fields):
+        """
+        Indexes a volunteer, replacing any previous entry for the same ID.
+
+        Args:
+            pk (int): The volunteer's ID.
+            fields (dict): The volunteer's INDEXED_FIELDS.
+        """
+        trigrams = text_trigrams(' '.join(fields[field] or '' for field in INDEXED_FIELDS))
+        with self._lock:
+            self._remove(pk)
+            self._documents[pk] = (trigrams, fields)
+            for trigram in trigrams:
+                self._postings[trigram].add(pk)
+
+    def remove(self, pk):
+        """Removes a volunteer from the index, if present."""
+        with self._lock:
+            self._remove(pk)
+
+    def _remove(self, pk):
+        document = self._documents.pop(pk, None)
+        if document is None:
+            return
+        for trigram in document[0]:
+            postings = self._postings[trigram]
+            postings.discard(pk)
+            if not postings:
+                del self._postings[trigram]
+
+    def search(self, query, limit=10, min_score=0.4):
+        """
+        Finds the volunteers whose names or emails best match a query.
+
+        Args:
+            query (str): What the user has typed so far.
+            limit (int): The maximum number of matches to return.
+            min_score (float): The minimum fraction of the query's trigrams a
+                               volunteer must contain to match.
+
+        Returns:
+            list: Dicts with the volunteer's `id`, INDEXED_FIELDS and `score`,
+                  best match first.
+        """
+        query_trigrams = text_trigrams(query, prefix_last=True)
+        if not query_trigrams:
+            return []
+        with self._lock:
+            hits = Counter()
+            for trigram in query_trigrams:
+                hits.update(self._postings.get(trigram, ()))
+            scored = []
+            for pk, count in hits.items():
+                score = count / len(query_trigrams)
+                if score >= min_score:
+                    trigrams, fields = self._documents[pk]
+                    # Among equal scores, prefer volunteers with less unmatched text.
+                    scored.append((score, count / len(trigrams), pk, fields))
+        scored.sort(key=lambda match: (match[0], match[1], match[2]), reverse=True)
+        return [
+            {'id': pk, **fields, 'score': round(score, 3)}
+            for score, _, pk, fields in scored[:limit]
+        ]
+
+
+def load_index():
+    """Builds a new index from every volunteer in the database."""
+    index = TrigramIndex()
+    rows = Volunteer.objects.values_list('pk', *INDEXED_FIELDS).iterator(chunk_size=5000)
+    for pk, *values in rows:
+        index.add(pk, dict(zip(INDEXED_FIELDS, values)))
+    return index
+
+
+def prefix_matches(query, limit=10):
+    """
+    Finds volunteers whose first name, last name or email starts with every
+    word of a query, newest first, in the shape `TrigramIndex.search` returns.
+    Typeahead uses it while the index is still loading; the name indexes and
+    the unique email index serve it, but it is not typo-tolerant.
+    """
+    words = WORD_RE.findall(query)
+    if not words:
+        return []
+    condition = Q()
+    for word in words:
+        condition &= Q(first_name__istartswith=word) | Q(last_name__istartswith=word) | Q(email__istartswith=word)
+    rows = Volunteer.objects.filter(condition).order_by('-pk').values('pk', *INDEXED_FIELDS)[:limit]
+    return [
+        {'id': row['pk'], **{field: row[field] for field in INDEXED_FIELDS}, 'score': None}
+        for row in rows
+    ]
+
+
+class SharedIndex:
+    """
+    Holds this process's index: loads it in a background thread on first use,
+    and rebuilds it the same way once it is older than `TRIGRAM_INDEX_MAX_AGE`
+    seconds, serving the previous index until the new one is ready.
+    """
+    def __init__(self, clock=time.monotonic):
+        self.clock = clock
+        self._lock = threading.Lock()
+        self._index = None
+        self._built_at = 0.0
+        self._rebuilding = False
+        # Changes applied while a rebuild runs, replayed onto the new index.
+        self._replay = []
+
+    def get(self):
+        """
+        Returns the index, or None while this process's first load is still
+        running, so no request waits for it; callers then use `prefix_matches`.
+        """
+        with self._lock:
+            stale = self._index is None or self.clock() - self._built_at > settings.TRIGRAM_INDEX_MAX_AGE
+            if stale and not self._rebuilding:
+                self._rebuilding = True
+                self._replay = []
+                threading.Thread(target=self._rebuild, name='trigram-index-rebuild', daemon=True).start()
+            return self._index
+
+    def load(self):
+        """Loads the index in the calling thread, e.g. to warm it up. Mainly useful in tests."""
+        index = load_index()
+        with self._lock:
+            self._index = index
+            self._built_at = self.clock()
+        return index
+
+    def _rebuild(self):
+        try:
+            index = load_index()
+        except Exception:
+            logger.error("Failed to rebuild the trigram index", exc_info=True)
+            index = None
+        finally:
+            close_old_connections()
+        with self._lock:
+            if index is not None:
+                # The load may have read some rows before changes that were
+                # committed while it ran. Updates are idempotent, so replaying
+                # all of them is safe.
+                for update in self._replay:
+                    update(index)
+                if self._index is None:
+                    logger.info(f"Loaded trigram index with {len(index)} volunteers")
+                self._index = index
+            self._built_at = self.clock()
+            self._rebuilding = False
+            self._replay = []
+
+    def apply(self, update):
+        """
+        Applies a change to the index if it is loaded, e.g.
+        `lambda index: index.remove(pk)`, and to the one being loaded, if any.
+        """
+        with self._lock:
+            if self._index is not None:
+                update(self._index)
+            if self._rebuilding:
+                self._replay.append(update)
+
+    def reset(self):
+        """Drops the index so the next use reloads it. Mainly useful in tests."""
+        with self._lock:
+            self._index = None
+
+
+# The index shared by every request in this process.
+shared_index = SharedIndex()
+
+
+def volunteer_fields(volunteer):
+    """Returns the indexed fields of a Volunteer instance."""
+    return {field: getattr(volunteer, field) for field in INDEXED_FIELDS}
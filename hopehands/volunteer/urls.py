@@ -33,4 +33,6 @@ urlpatterns = [
     path('volunteer/<int:volunteer_id>/reject/', views.volunteer_reject, name='volunteer_reject'),
     # URL for the CSV upload page.
     path('upload-csv/', views.volunteer_csv_upload, name='volunteer_csv_upload'),
+    # URL for the progress page of a CSV import job.
+    path('import-job/<int:job_id>/', views.import_job_detail, name='import_job_detail'),
 ]
@@ -10,13 +10,13 @@ and rendering templates.
 
 from django.shortcuts import render, redirect, get_object_or_404
 from django.contrib.auth.decorators import login_required
-from django.db.models import Q
+from django.db import transaction
 from .forms import VolunteerForm, CSVUploadForm
-from .hubspot_api import HubspotAPI
-from .models import Volunteer
+from .jobs import submit_import_job
+from .models import ImportJob, Volunteer
+from .search import search_volunteers
+from .sync import enqueue_create, enqueue_update
 import logging
-import csv
-import io
 
 # Standard logger for this module
 logger = logging.getLogger(__name__)
@@ -49,13 +49,12 @@ def success(request):
 def volunteer_list(request):
     """
     Displays a list of all volunteers from the local database.
-    If a search query is provided, it filters volunteers by first or last name.
+    If a search query is provided, it shows the best matches by name, email,
+    phone or role instead (see `search.py`).
     """
     query = request.GET.get('q')
     if query:
-        contacts = Volunteer.objects.filter(
-            Q(first_name__icontains=query) | Q(last_name__icontains=query)
-        )
+        contacts = search_volunteers(query)
     else:
         contacts = Volunteer.objects.all()
 
@@ -74,42 +73,41 @@ def volunteer_csv_upload(request):
     """
     Handles the batch upload of volunteers from a CSV file.
 
-    On POST, it processes the uploaded CSV, creates new Volunteer records
-    in the database with a 'pending' status, and displays the results.
+    On POST, it stores the uploaded CSV in an ImportJob and redirects to the
+    job's progress page. The job creates new Volunteer records with a 'pending'
+    status in the background, using the shared `VolunteerImporter`; invalid
+    rows are reported individually and rows whose email already exists are
+    skipped.
     """
     if request.method == 'POST':
         form = CSVUploadForm(request.POST, request.FILES)
         if form.is_valid():
-            csv_file = request.FILES['csv_file']
-            decoded_file = csv_file.read().decode('utf-8')
-            io_string = io.StringIO(decoded_file)
-            reader = csv.DictReader(io_string)
-
-            volunteers_created = 0
-            errors = []
-            for row in reader:
-                try:
-                    Volunteer.objects.create(
-                        first_name=row.get('first_name', ''),
-                        last_name=row.get('last_name', ''),
-                        email=row.get('email'),
-                        phone_number=row.get('phone_number'),
-                        preferred_volunteer_role=row.get('preferred_volunteer_role'),
-                        availability=row.get('availability'),
-                        how_did_you_hear_about_us=row.get('how_did_you_hear_about_us'),
-                    )
-                    volunteers_created += 1
-                except Exception as e:
-                    errors.append(f"Could not create volunteer from row: {row}. Error: {e}")
-
-            return render(request, 'volunteer/csv_upload_success.html', {
-                'volunteers_created': volunteers_created,
-                'errors': errors
-            })
+            # The upload is imported in the background by the same streaming,
+            # batched engine as the API endpoint, but volunteers stay pending.
+            job = ImportJob.objects.create(
+                upload=request.FILES['csv_file'],
+                volunteer_status='pending',
+                sync_to_hubspot=False,
+                created_by=request.user,
+            )
+            submit_import_job(job)
+            return redirect('import_job_detail', job_id=job.id)
     else:
         form = CSVUploadForm()
     return render(request, 'volunteer/volunteer_csv_upload.html', {'form': form})
 
+@login_required
+def import_job_detail(request, job_id):
+    """
+    Displays the progress of a CSV import job. The page refreshes itself until
+    the job has finished, then shows the import summary.
+    """
+    job = get_object_or_404(ImportJob, pk=job_id)
+    return render(request, 'volunteer/csv_upload_success.html', {
+        'job': job,
+        'finished': job.status in ('completed', 'failed'),
+    })
+
 @login_required
 def volunteer_update(request, volunteer_id):
     """
@@ -119,20 +117,11 @@ def volunteer_update(request, volunteer_id):
     if request.method == 'POST':
         form = VolunteerForm(request.POST, instance=volunteer)
         if form.is_valid():
-            updated_volunteer = form.save()
-
-            if updated_volunteer.status == 'approved' and updated_volunteer.hubspot_id:
-                hubspot_api = HubspotAPI()
-                properties = {
-                    "email": updated_volunteer.email,
-                    "firstname": updated_volunteer.first_name,
-                    "lastname": updated_volunteer.last_name,
-                    "phone": updated_volunteer.phone_number,
-                    "preferred_volunteer_role": updated_volunteer.preferred_volunteer_role,
-                    "availability": updated_volunteer.availability,
-                    "how_did_you_hear_about_us": updated_volunteer.how_did_you_hear_about_us,
-                }
-                hubspot_api.update_contact(updated_volunteer.hubspot_id, properties)
+            with transaction.atomic():
+                updated_volunteer = form.save()
+                # Queue the HubSpot update in the same transaction as the save.
+                if updated_volunteer.status == 'approved' and updated_volunteer.hubspot_id:
+                    enqueue_update(updated_volunteer)
 
             return redirect('volunteer_detail', volunteer_id=volunteer.id)
     else:
@@ -155,27 +144,16 @@ def volunteer_approve(request, volunteer_id):
     """
     Approves a volunteer application. This view is now primarily for
     demonstration in a template-based flow. The core approval logic
-    is handled by the API view in `api_views.py`.
+    is handled by the API view in `api_views.py`. Like the API, it queues the
+    HubSpot sync in the outbox rather than calling HubSpot directly.
     """
     if request.method == 'POST':
         volunteer = get_object_or_404(Volunteer, pk=volunteer_id)
         if volunteer.status == 'pending':
-            volunteer.status = 'approved'
-
-            hubspot_api = HubspotAPI()
-            api_response = hubspot_api.create_contact(
-                email=volunteer.email,
-                first_name=volunteer.first_name,
-                last_name=volunteer.last_name,
-                phone_number=volunteer.phone_number,
-                preferred_volunteer_role=volunteer.preferred_volunteer_role,
-                availability=volunteer.availability,
-                how_did_you_hear_about_us=volunteer.how_did_you_hear_about_us,
-            )
-            if api_response:
-                volunteer.hubspot_id = api_response.id
-
-            volunteer.save()
+            with transaction.atomic():
+                volunteer.status = 'approved'
+                volunteer.save()
+                enqueue_create(volunteer)
         return redirect('volunteer_list')
     return redirect('volunteer_list')
 
@@ -0,0 +1,249 @@
+# hopehands/volunteer/webhooks.py
+
+"""
+This file receives the contact changes HubSpot pushes to us and applies them
+to volunteers, so edits made by staff in HubSpot arrive without polling.
+
+HubSpot POSTs a JSON list of events to `api/hubspot/webhooks/`, signed with
+its v3 signature: an HMAC-SHA256 of the method, URL, body and timestamp,
+keyed with the app's client secret. `verify_signature` checks it in constant
+time and rejects stale timestamps, so a captured request cannot be replayed.
+`record_events` then stores the events with one insert and the endpoint
+answers straight away; nothing else happens while HubSpot waits.
+
+The `process_hubspot_webhooks` worker applies stored events in batches, locked
+with `SELECT ... FOR UPDATE SKIP LOCKED` like the sync outbox. A batch is
+coalesced first: every pending event of its contacts is folded in, and only
+the latest value of each property, by when it happened in HubSpot, is kept.
+The volunteers are then looked up by `hubspot_id` in one query, which the
+`volunteer_hubspot_id_idx` index from migration 0011 answers, and written with
+one bulk update.
+
+The same rules as `pull.py` apply: only PULLED_FIELDS are copied, volunteers
+with a local edit not yet pushed to HubSpot are skipped, and so are changes
+older than the volunteer's last local change, which HubSpot has already been
+sent. A deleted contact unlinks its volunteer, who is kept.
+"""
+
+import base64
+import datetime
+import hashlib
+import hmac
+import logging
+import time
+from urllib.parse import unquote
+
+from django.conf import settings
+from django.db import transaction
+from django.utils import timezone
+
+from .contact_cache import forget_contact_ids
+from .models import HubspotWebhookEvent, Volunteer
+from .pull import PULLED_FIELDS, pending_local_change, pulled_value
+from .signals import volunteers_bulk_saved
+
+# Standard logger for this module
+logger = logging.getLogger(__name__)
+
+DELETION = 'contact.deletion'
+PROPERTY_CHANGE = 'contact.propertyChange'
+
+
+def verify_signature(request, body):
+    """
+    Checks the `X-HubSpot-Signature-v3` header of a webhook request.
+
+    Args:
+        request (HttpRequest): The incoming request.
+        body (bytes): The raw request body.
+
+    Returns:
+        bool: Whether the request is signed with our client secret and recent.
+    """
+    secret = settings.HUBSPOT_WEBHOOK_SECRET
+    signature = request.headers.get('X-HubSpot-Signature-v3')
+    timestamp = request.headers.get('X-HubSpot-Request-Timestamp', '')
+    if not secret or not signature or not timestamp.isdigit():
+        return False
+    if abs(time.time() - int(timestamp) / 1000) > settings.HUBSPOT_WEBHOOK_MAX_AGE_SECONDS:
+        return False
+
+    # HubSpot signs the URL with its percent-encoded characters decoded.
+    url = unquote(settings.HUBSPOT_WEBHOOK_URL or request.build_absolute_uri())
+    message = f"{request.method}{url}".encode('utf-8') + body + timestamp.encode('utf-8')
+    expected = base64.b64encode(hmac.new(secret.encode('utf-8'), message, hashlib.sha256).digest())
+    return hmac.compare_digest(expected, signature.encode('utf-8'))
+
+
+def record_events(payload):
+    """
+    Stores the contact events of a webhook payload for the worker.
+
+    Args:
+        payload (list): The decoded request body, a list of HubSpot events.
+
+    Returns:
+        int: The number of events stored. Events of other subscriptions, and
+             changes of properties we do not pull, are dropped.
+
+    Raises:
+        ValueError: If the payload is not a list of events.
+    """
+    if not isinstance(payload, list):
+        raise ValueError("Expected a list of events")
+    events = []
+    for event in payload:
+        if not isinstance(event, dict):
+            raise ValueError("Expected a list of events")
+        subscription_type = event.get('subscriptionType')
+        if subscription_type == PROPERTY_CHANGE and event.get('propertyName') not in PULLED_FIELDS:
+            continue
+        if subscription_type not in (PROPERTY_CHANGE, DELETION):
+            continue
+        try:
+            events.append(HubspotWebhookEvent(
+                event_id=int(event['eventId']),
+                subscription_type=subscription_type,
+                object_id=str(event['objectId']),
+                property_name=event.get('propertyName') or '',
+                property_value=event.get('propertyValue'),
+                occurred_at=datetime.datetime.fromtimestamp(
+                    int(event['occurredAt']) / 1000, tz=datetime.timezone.utc
+                ),
+            ))
+        except (KeyError, TypeError, ValueError) as e:
+            raise ValueError(f"Malformed event: {e}")
+    HubspotWebhookEvent.objects.bulk_create(events)
+    return len(events)
+
+
+class WebhookReport:
+    """Counts what one batch of webhook events changed."""
+    def __init__(self):
+        self.events = 0
+        self.volunteers_updated = 0
+        self.volunteers_unlinked = 0
+        self.skipped_pending = 0
+        self.skipped_stale = 0
+
+
+def coalesce(events):
+    """
+    Reduces events to the final state of each contact.
+
+    Returns:
+        dict: Maps each contact ID to a dict with `deleted_at`, when the
+              contact was last deleted (or None), and `properties`, mapping each
+              changed property to its latest (occurred_at, value).
+    """
+    contacts = {}
+    for event in sorted(events, key=lambda event: (event.occurred_at, event.event_id)):
+        contact = contacts.setdefault(event.object_id, {'deleted_at': None, 'properties': {}})
+        if event.subscription_type == DELETION:
+            contact['deleted_at'] = event.occurred_at
+            contact['properties'] = {}
+        else:
+            contact['properties'][event.property_name] = (event.occurred_at, event.property_value)
+    return contacts
+
+
+def apply_events(events, report, now):
+    """
+    Applies coalesced events to the linked volunteers with one bulk update
+    for changes and one for unlinks.
+
+    Args:
+        events (list): HubspotWebhookEvent instances.
+        report (WebhookReport): The report to count outcomes in.
+        now (datetime): The time to record as the volunteers' update time.
+    """
+    contacts = coalesce(events)
+    volunteers = Volunteer.objects.filter(hubspot_id__in=list(contacts)).annotate(pending=pending_local_change())
+
+    changed = []
+    changed_fields = set()
+    unlinked = []
+    for volunteer in volunteers:
+        contact = contacts[volunteer.hubspot_id]
+        if contact['deleted_at'] and not contact['properties']:
+            volunteer.hubspot_id = None
+            volunteer.updated_at = now
+            unlinked.append(volunteer)
+            continue
+        if volunteer.pending:
+            report.skipped_pending += 1
+            continue
+        fields = set()
+        stale = False
+        for prop, (occurred_at, value) in contact['properties'].items():
+            field_name = PULLED_FIELDS[prop]
+            if occurred_at <= volunteer.updated_at:
+                stale = True
+                continue
+            value = pulled_value(field_name, value)
+            if getattr(volunteer, field_name) != value:
+                setattr(volunteer, field_name, value)
+                fields.add(field_name)
+        report.skipped_stale += stale
+        if fields:
+            volunteer.updated_at = now
+            changed.append(volunteer)
+            changed_fields |= fields
+
+    if changed:
+        update_fields = sorted(changed_fields) + ['updated_at']
+        Volunteer.objects.bulk_update(changed, update_fields)
+        volunteers_bulk_saved.send(sender=Volunteer, volunteers=changed, created=False, update_fields=update_fields)
+    if unlinked:
+        Volunteer.objects.bulk_update(unlinked, ['hubspot_id', 'updated_at'])
+        volunteers_bulk_saved.send(
+            sender=Volunteer, volunteers=unlinked, created=False, update_fields=['hubspot_id', 'updated_at']
+        )
+        emails = [volunteer.email for volunteer in unlinked]
+        transaction.on_commit(lambda: forget_contact_ids(emails))
+    report.volunteers_updated += len(changed)
+    report.volunteers_unlinked += len(unlinked)
+
+
+def process_events(batch_size=1000):
+    """
+    Applies one batch of pending webhook events.
+
+    Args:
+        batch_size (int): The maximum number of events picked up, before the
+                          other pending events of the same contacts are
+                          folded in.
+
+    Returns:
+        WebhookReport: What the batch changed. `events` is 0 when nothing is pending.
+    """
+    report = WebhookReport()
+    now = timezone.now()
+    with transaction.atomic():
+        events = list(
+            HubspotWebhookEvent.objects
+            .select_for_update(skip_locked=True)
+            .filter(status='pending')
+            .order_by('id')[:batch_size]
+        )
+        if not events:
+            return report
+        events += list(
+            HubspotWebhookEvent.objects
+            .select_for_update(skip_locked=True)
+            .filter(status='pending', object_id__in={event.object_id for event in events})
+            .exclude(pk__in=[event.pk for event in events])
+        )
+        report.events = len(events)
+
+        apply_events(events, report, now)
+
+        for event in events:
+            event.status = 'done'
+            event.processed_at = now
+        HubspotWebhookEvent.objects.bulk_update(events, ['status', 'processed_at'])
+    logger.info(
+        f"Applied {report.events} HubSpot webhook event(s): {report.volunteers_updated} volunteer(s) updated, "
+        f"{report.volunteers_unlinked} unlinked"
+    )
+    return report